@@ -0,0 +1,109 @@
+package com.sg.flooringmastery.benchmark;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generates throwaway data folders for the benchmarks, laid out like SampleFileData:
+ * Data/Products.txt, Data/Taxes.txt and Orders/Orders_MMddyyyy.txt. Values are random but seeded so every
+ * run sees the same files.
+ */
+public final class BenchmarkFixtures {
+
+    public static final LocalDate FIRST_DATE = LocalDate.of(2030, 1, 1);
+
+    private static final DateTimeFormatter FILE_DATE_FORMAT = DateTimeFormatter.ofPattern("MMddyyyy");
+    private static final String HEADER = "OrderNumber,CustomerName,State,TaxRate,ProductType,Area,CostPerSquareFoot,"
+            + "LaborCostPerSquareFoot,MaterialCost,LaborCost,Tax,Total";
+    private static final String[] STATES = {"TX", "WA", "KY", "CA"};
+    private static final String[] TAX_RATES = {"4.45", "9.25", "6.00", "25.00"};
+    private static final String[] PRODUCTS = {"Carpet", "Laminate", "Tile", "Wood"};
+    private static final String[] COSTS = {"2.25", "1.75", "3.50", "5.15"};
+    private static final String[] LABOUR = {"2.10", "2.10", "4.15", "4.75"};
+
+    private BenchmarkFixtures() {
+    }
+
+    public static Path createRoot() {
+        try {
+            Path root = Files.createTempDirectory("flooring-bench");
+            Files.createDirectories(root.resolve("Data"));
+            Files.createDirectories(root.resolve("Orders"));
+            writeCatalogue(root);
+            return root;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static Path productFile(Path root) {
+        return root.resolve("Data/Products.txt");
+    }
+
+    public static Path taxFile(Path root) {
+        return root.resolve("Data/Taxes.txt");
+    }
+
+    public static Path orderFolder(Path root) {
+        return root.resolve("Orders");
+    }
+
+    // Writes one order file with the given number of rows, numbered from 1.
+    public static void writeOrderFile(Path root, LocalDate date, int rows) {
+        Random random = new Random(date.toEpochDay());
+        Path file = orderFolder(root).resolve("Orders_" + date.format(FILE_DATE_FORMAT) + ".txt");
+
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            out.println(HEADER);
+            for (int i = 1; i <= rows; i++) {
+                out.println(orderRow(i, random));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // A realistic row; every twentieth customer name contains a comma and is quoted.
+    public static String orderRow(int orderNumber, Random random) {
+        int s = random.nextInt(STATES.length);
+        int p = random.nextInt(PRODUCTS.length);
+        String name = orderNumber % 20 == 0
+                ? "\"Customer, " + random.nextInt(100_000) + "\""
+                : "Customer " + random.nextInt(100_000);
+        return orderNumber + "," + name + "," + STATES[s] + "," + TAX_RATES[s] + "," + PRODUCTS[p] + ","
+                + (100 + random.nextInt(900)) + "." + (10 + random.nextInt(90)) + "," + COSTS[p] + "," + LABOUR[p]
+                + ",871.50,1033.35,476.21,2381.06";
+    }
+
+    public static void delete(Path root) {
+        try (Stream<Path> paths = Files.walk(root)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void writeCatalogue(Path root) throws IOException {
+        StringBuilder products = new StringBuilder("ProductType,CostPerSquareFoot,LaborCostPerSquareFoot\n");
+        for (int i = 0; i < PRODUCTS.length; i++) {
+            products.append(PRODUCTS[i]).append(',').append(COSTS[i]).append(',').append(LABOUR[i]).append('\n');
+        }
+        Files.writeString(productFile(root), products, StandardCharsets.UTF_8);
+
+        StringBuilder taxes = new StringBuilder("State,StateName,TaxRate\n");
+        String[] names = {"Texas", "Washington", "Kentucky", "Calfornia"};
+        for (int i = 0; i < STATES.length; i++) {
+            taxes.append(STATES[i]).append(',').append(names[i]).append(',').append(TAX_RATES[i]).append('\n');
+        }
+        Files.writeString(taxFile(root), taxes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,137 @@
+package com.sg.flooringmastery.controller;
+
+import com.sg.flooringmastery.metrics.Timer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Load test for the HTTP API. Keeps the given number of requests in flight, one virtual thread each, for a
+ * warmup and then a measured period, and reports throughput and latency percentiles for the measured part.
+ * Requests are a mix of adds (writePercent of them), quotes and order lists, spread over 30 dates starting at
+ * 2031-01-01 so adds to different dates do not all queue on one date's lock.
+ *
+ * Point it at a server started with --http, on a copy of the data as the adds are saved:
+ *   mvn -Pjmh compile
+ *   java -cp target/classes:... com.sg.flooringmastery.controller.OrderApiLoadClient
+ *        [baseUrl] [concurrency] [seconds] [writePercent]
+ * Defaults are http://127.0.0.1:8080, 1000, 30 and 10. The warmup is a fifth of the measured time.
+ */
+public final class OrderApiLoadClient {
+
+    private static final LocalDate FIRST_DATE = LocalDate.of(2031, 1, 1);
+    private static final int DATES = 30;
+    private static final String[] STATES = {"TX", "WA", "KY", "CA"};
+    private static final String[] PRODUCTS = {"Carpet", "Laminate", "Tile", "Wood"};
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final int writePercent;
+
+    // Swapped for empty ones when the warmup ends.
+    private volatile Timer latency = new Timer();
+    private volatile LongAdder errors = new LongAdder();
+    private volatile boolean running = true;
+
+    private OrderApiLoadClient(HttpClient client, String baseUrl, int writePercent) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.writePercent = writePercent;
+    }
+
+    public static void main(String[] args) throws Exception {
+        String baseUrl = args.length > 0 ? args[0] : "http://127.0.0.1:8080";
+        int concurrency = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+        int writePercent = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder().executor(threads)
+                     .connectTimeout(Duration.ofSeconds(10)).build()) {
+            OrderApiLoadClient load = new OrderApiLoadClient(client, baseUrl, writePercent);
+            System.out.printf("%d concurrent requests to %s, %d%% adds, %d s warmup then %d s measured.%n",
+                    concurrency, baseUrl, writePercent, Math.max(1, seconds / 5), seconds);
+
+            List<Thread> workers = new ArrayList<>(concurrency);
+            for (int i = 0; i < concurrency; i++) {
+                workers.add(Thread.ofVirtual().start(load::work));
+            }
+
+            Thread.sleep(Math.max(1, seconds / 5) * 1_000L);
+            load.latency = new Timer();
+            load.errors = new LongAdder();
+            long start = System.nanoTime();
+            Thread.sleep(seconds * 1_000L);
+            Timer.Snapshot measured = load.latency.snapshot();
+            long errors = load.errors.sum();
+            long elapsed = System.nanoTime() - start;
+
+            load.running = false;
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            report(measured, errors, elapsed);
+        }
+    }
+
+    private void work() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (running) {
+            LocalDate date = FIRST_DATE.plusDays(random.nextInt(DATES));
+            int pick = random.nextInt(100);
+            HttpRequest request;
+            if (pick < writePercent) {
+                request = post("/api/orders", orderBody(random, date));
+            } else if (pick < writePercent + (100 - writePercent) / 2) {
+                request = post("/api/quote", orderBody(random, date));
+            } else {
+                request = HttpRequest.newBuilder(URI.create(baseUrl + "/api/orders?date=" + date))
+                        .timeout(Duration.ofSeconds(30)).GET().build();
+            }
+
+            Timer timer = latency;
+            long start = timer.start();
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                timer.stop(start);
+                if (response.statusCode() >= 400) {
+                    errors.increment();
+                }
+            } catch (Exception e) {
+                timer.stop(start);
+                errors.increment();
+            }
+        }
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(30))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build();
+    }
+
+    private static String orderBody(ThreadLocalRandom random, LocalDate date) {
+        return "{\"date\": \"" + date + "\", \"customerName\": \"Load Test " + random.nextInt(10_000)
+                + "\", \"state\": \"" + STATES[random.nextInt(STATES.length)]
+                + "\", \"productType\": \"" + PRODUCTS[random.nextInt(PRODUCTS.length)]
+                + "\", \"area\": " + (100 + random.nextInt(900)) + "}";
+    }
+
+    private static void report(Timer.Snapshot latency, long errors, long elapsedNanos) {
+        System.out.printf("Requests:   %d (%d errors)%n", latency.count(), errors);
+        System.out.printf("Throughput: %.0f requests/s%n", latency.count() * 1e9 / elapsedNanos);
+        System.out.printf("Latency:    mean %.2f ms, p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+                latency.meanNanos() / 1e6, latency.p50Nanos() / 1e6, latency.p95Nanos() / 1e6,
+                latency.p99Nanos() / 1e6, latency.maxNanos() / 1e6);
+    }
+}
@@ -0,0 +1,98 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.benchmark.BenchmarkFixtures;
+import com.sg.flooringmastery.model.Products;
+import com.sg.flooringmastery.model.Taxes;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks product and tax lookups through the file Daos, the cached Daos and the JDBC Daos.
+ * The JDBC Daos use an in-memory H2 database, so their cost is the query, not the disk.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CatalogueLookupBenchmark {
+
+    private Path root;
+    private DataFileWatcher watcher;
+    private ProductDao productFile;
+    private ProductDao productCached;
+    private TaxDao taxFile;
+    private TaxDao taxCached;
+    private JdbcConnectionPool pool;
+    private ProductDao productJdbc;
+    private TaxDao taxJdbc;
+
+    @Setup
+    public void createDaos() {
+        root = BenchmarkFixtures.createRoot();
+        watcher = new DataFileWatcher();
+        ProductDaoFileImpl products = new ProductDaoFileImpl(BenchmarkFixtures.productFile(root));
+        TaxDaoFileImpl taxes = new TaxDaoFileImpl(BenchmarkFixtures.taxFile(root));
+        productFile = products;
+        productCached = new ProductDaoCachedImpl(products, watcher);
+        taxFile = taxes;
+        taxCached = new TaxDaoCachedImpl(taxes, watcher);
+        pool = JdbcConnectionPool.create("jdbc:h2:mem:catalogue;DB_CLOSE_DELAY=-1", "sa", "");
+        productJdbc = new ProductDaoJdbcImpl(pool, products);
+        taxJdbc = new TaxDaoJdbcImpl(pool, taxes);
+    }
+
+    @TearDown
+    public void deleteFiles() throws IOException {
+        watcher.destroy();
+        pool.dispose();
+        BenchmarkFixtures.delete(root);
+    }
+
+    @Benchmark
+    public Products productFileDao() throws FileNotFoundException, PersistenceException {
+        return productFile.getProductByType("tile");
+    }
+
+    @Benchmark
+    public Products productCachedDao() throws FileNotFoundException, PersistenceException {
+        return productCached.getProductByType("tile");
+    }
+
+    @Benchmark
+    public Products productJdbcDao() throws FileNotFoundException, PersistenceException {
+        return productJdbc.getProductByType("tile");
+    }
+
+    @Benchmark
+    public Taxes taxFileDao() throws FileNotFoundException, PersistenceException {
+        return taxFile.getTaxByState("KY");
+    }
+
+    @Benchmark
+    public Taxes taxCachedDao() throws FileNotFoundException, PersistenceException {
+        return taxCached.getTaxByState("KY");
+    }
+
+    @Benchmark
+    public Taxes taxJdbcDao() throws FileNotFoundException, PersistenceException {
+        return taxJdbc.getTaxByState("KY");
+    }
+}
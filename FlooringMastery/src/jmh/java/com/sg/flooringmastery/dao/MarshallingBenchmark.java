@@ -0,0 +1,48 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.benchmark.BenchmarkFixtures;
+import com.sg.flooringmastery.model.Orders;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks converting a single order between its text row and an Orders object.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MarshallingBenchmark {
+
+    private String row;
+    private Orders order;
+
+    @Setup
+    public void createRow() {
+        row = BenchmarkFixtures.orderRow(42, new Random(42));
+        order = OrderDaoFileImpl.unmarshallOrder(row);
+    }
+
+    @Benchmark
+    public Orders unmarshallOrder() {
+        return OrderDaoFileImpl.unmarshallOrder(row);
+    }
+
+    @Benchmark
+    public String marshallOrder() {
+        return OrderDaoFileImpl.marshallOrder(order);
+    }
+}
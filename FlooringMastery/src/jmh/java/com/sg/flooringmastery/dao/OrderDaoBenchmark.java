@@ -0,0 +1,101 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.benchmark.BenchmarkFixtures;
+import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks OrderDaoFileImpl reading and writing one date's file.
+ * rowsPerFile sets the size of the date under test; loadedDates adds that many other (100 row) dates to
+ * the Dao first, to show whether their presence changes the cost of working on the one date.
+ * layout compares holding the orders as objects with holding them in columns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderDaoBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    public int rowsPerFile;
+
+    @Param({"1", "100"})
+    public int loadedDates;
+
+    @Param({"OBJECTS", "COLUMNAR"})
+    public OrderLayout layout;
+
+    private Path root;
+    private OrderDaoFileImpl dao;
+    private LocalDate date;
+    private Orders sample;
+
+    @Setup(Level.Trial)
+    public void createFiles() throws PersistenceException {
+        root = BenchmarkFixtures.createRoot();
+        date = BenchmarkFixtures.FIRST_DATE;
+        BenchmarkFixtures.writeOrderFile(root, date, rowsPerFile);
+        for (int i = 1; i < loadedDates; i++) {
+            BenchmarkFixtures.writeOrderFile(root, date.plusDays(i), 100);
+        }
+
+        dao = newDao();
+        for (int i = 0; i < loadedDates; i++) {
+            dao.getOrdersByDate(date.plusDays(i));
+        }
+        sample = dao.getOrdersByDate(date).get(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFiles() {
+        BenchmarkFixtures.delete(root);
+    }
+
+    private OrderDaoFileImpl newDao() {
+        return new OrderDaoFileImpl(BenchmarkFixtures.orderFolder(root), ResidencyPolicy.UNLIMITED, layout);
+    }
+
+    // First lookup of a date: reads and parses its file.
+    @Benchmark
+    public List<Orders> getOrdersByDateCold() throws PersistenceException {
+        return newDao().getOrdersByDate(date);
+    }
+
+    // Lookup of a date that is already in memory.
+    @Benchmark
+    public List<Orders> getOrdersByDateWarm() throws PersistenceException {
+        return dao.getOrdersByDate(date);
+    }
+
+    // One edit followed by a save, which is what every edit from the menu costs.
+    @Benchmark
+    public void writeFile() throws PersistenceException {
+        dao.lockFor(date).lock();
+        try {
+            dao.applyEdit(date, sample.getOrderNumber(), sample);
+        } finally {
+            dao.lockFor(date).unlock();
+        }
+        dao.writeFile();
+    }
+}
@@ -0,0 +1,73 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.benchmark.BenchmarkFixtures;
+import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks loading one date's order file saved as CSV against the same orders saved in the binary format.
+ * readFile is the format on its own, loadDate is a cold lookup through OrderDaoFileImpl, which also builds
+ * the in memory snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderFileFormatBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    public int rowsPerFile;
+
+    @Param({"CSV", "BINARY"})
+    public OrderFileFormat format;
+
+    private Path root;
+    private Path file;
+    private LocalDate date;
+
+    @Setup(Level.Trial)
+    public void createFile() throws IOException {
+        root = BenchmarkFixtures.createRoot();
+        date = BenchmarkFixtures.FIRST_DATE;
+        BenchmarkFixtures.writeOrderFile(root, date, rowsPerFile);
+        OrderFileConverter.convert(BenchmarkFixtures.orderFolder(root), format);
+        file = new OrderArchive(BenchmarkFixtures.orderFolder(root)).listOrderFiles().get(date);
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteFile() {
+        BenchmarkFixtures.delete(root);
+    }
+
+    @Benchmark
+    public List<Orders> readFile() throws IOException {
+        return format.read(file);
+    }
+
+    @Benchmark
+    public List<Orders> loadDate() throws PersistenceException {
+        return new OrderDaoFileImpl(BenchmarkFixtures.orderFolder(root), ResidencyPolicy.UNLIMITED,
+                OrderLayout.OBJECTS, format).getOrdersByDate(date);
+    }
+}
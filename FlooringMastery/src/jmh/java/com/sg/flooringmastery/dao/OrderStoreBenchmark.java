@@ -0,0 +1,110 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.benchmark.BenchmarkFixtures;
+import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the daily order files (OrderDaoFileImpl) with the single file B+tree store (OrderDaoBTreeImpl)
+ * and an H2 database file through JDBC (OrderDaoJdbcImpl) on the same orders: dates days of 100 orders each. Each benchmark works on the next date in turn, so with
+ * many dates and a small buffer pool the tree has to read most pages from the file. bufferPages only applies
+ * to the tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderStoreBenchmark {
+
+    public enum Store { FILES, BTREE, JDBC }
+
+    @Param({"FILES", "BTREE", "JDBC"})
+    public Store store;
+
+    @Param({"100", "2000"})
+    public int dates;
+
+    @Param({"64", "4096"})
+    public int bufferPages;
+
+    private Path root;
+    private OrderDao dao;
+    private JdbcConnectionPool pool;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void createStore() {
+        root = BenchmarkFixtures.createRoot();
+        for (int i = 0; i < dates; i++) {
+            BenchmarkFixtures.writeOrderFile(root, BenchmarkFixtures.FIRST_DATE.plusDays(i), 100);
+        }
+        Path folder = BenchmarkFixtures.orderFolder(root);
+        dao = switch (store) {
+            case FILES -> new OrderDaoFileImpl(folder, ResidencyPolicy.UNLIMITED, OrderLayout.OBJECTS);
+            case BTREE -> new OrderDaoBTreeImpl(root.resolve("orders.btree"), folder, bufferPages);
+            case JDBC -> {
+                pool = JdbcConnectionPool.create("jdbc:h2:" + root.resolve("orders").toAbsolutePath(), "sa", "");
+                yield new OrderDaoJdbcImpl(pool, folder);
+            }
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteStore() throws IOException {
+        if (dao instanceof OrderDaoBTreeImpl btree) {
+            btree.destroy();
+        }
+        if (pool != null) {
+            pool.dispose();
+        }
+        BenchmarkFixtures.delete(root);
+    }
+
+    private LocalDate nextDate() {
+        next = (next + 1) % dates;
+        return BenchmarkFixtures.FIRST_DATE.plusDays(next);
+    }
+
+    // One date's orders, as the menu's display does.
+    @Benchmark
+    public List<Orders> getOrdersByDate() throws PersistenceException {
+        return dao.getOrdersByDate(nextDate());
+    }
+
+    // Thirty dates' orders, as a month's report does.
+    @Benchmark
+    public List<Orders> getOrdersBetween() throws PersistenceException {
+        LocalDate from = nextDate();
+        return dao.getOrdersBetween(from, from.plusDays(29));
+    }
+
+    // One edit including its save, which is what every edit from the menu costs.
+    @Benchmark
+    public void editOrder() throws PersistenceException {
+        LocalDate date = nextDate();
+        Orders order = dao.getOrdersByDate(date).get(next % 100);
+        dao.editOrder(date, order.getOrderNumber(), order);
+    }
+}
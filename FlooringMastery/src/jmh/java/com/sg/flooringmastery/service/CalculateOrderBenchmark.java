@@ -0,0 +1,114 @@
+package com.sg.flooringmastery.service;
+
+import com.sg.flooringmastery.benchmark.BenchmarkFixtures;
+import com.sg.flooringmastery.dao.AggregateDaoFileImpl;
+import com.sg.flooringmastery.dao.CustomerIndexFileImpl;
+import com.sg.flooringmastery.dao.DataFileWatcher;
+import com.sg.flooringmastery.dao.OrderDaoFileImpl;
+import com.sg.flooringmastery.dao.OrderNumberAllocatorFileImpl;
+import com.sg.flooringmastery.dao.ProductDaoCachedImpl;
+import com.sg.flooringmastery.dao.ProductDaoFileImpl;
+import com.sg.flooringmastery.dao.ResidencyPolicy;
+import com.sg.flooringmastery.dao.TaxDaoCachedImpl;
+import com.sg.flooringmastery.dao.TaxDaoFileImpl;
+import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks ServiceLayerImpl.calculateOrder, the pricing done for every add and edit,
+ * with the product and tax data served by the cached Daos and by the file Daos,
+ * and the two pricing engines on their own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CalculateOrderBenchmark {
+
+    private static final LocalDate DATE = BenchmarkFixtures.FIRST_DATE;
+    private static final BigDecimal AREA = new BigDecimal("243.50");
+
+    private Path root;
+    private DataFileWatcher watcher;
+    private ServiceLayerImpl cachedService;
+    private ServiceLayerImpl fileService;
+    private BigDecimalPricingEngine bigDecimalEngine;
+    private FixedPointPricingEngine fixedPointEngine;
+    private Orders unpriced;
+
+    @Setup
+    public void createServices() {
+        root = BenchmarkFixtures.createRoot();
+        watcher = new DataFileWatcher();
+        ProductDaoFileImpl products = new ProductDaoFileImpl(BenchmarkFixtures.productFile(root));
+        TaxDaoFileImpl taxes = new TaxDaoFileImpl(BenchmarkFixtures.taxFile(root));
+        OrderDaoFileImpl orders = new OrderDaoFileImpl(BenchmarkFixtures.orderFolder(root), ResidencyPolicy.UNLIMITED);
+        OrderNumberAllocatorFileImpl numbers = new OrderNumberAllocatorFileImpl(root.resolve("Data/OrderNumbers.txt"));
+        numbers.setOrderDao(() -> orders);
+
+        CustomerIndexFileImpl customerIndex = new CustomerIndexFileImpl(root.resolve("Index"));
+        customerIndex.setOrderDao(() -> orders);
+        AggregateDaoFileImpl aggregates = new AggregateDaoFileImpl(root.resolve("Aggregates"));
+        aggregates.setOrderDao(() -> orders);
+        bigDecimalEngine = new BigDecimalPricingEngine();
+        fixedPointEngine = new FixedPointPricingEngine(bigDecimalEngine);
+
+        cachedService = new ServiceLayerImpl(orders, new ProductDaoCachedImpl(products, watcher),
+                new TaxDaoCachedImpl(taxes, watcher), numbers, fixedPointEngine, customerIndex, aggregates);
+        fileService = new ServiceLayerImpl(orders, products, taxes, numbers, fixedPointEngine, customerIndex, aggregates);
+
+        unpriced = new Orders();
+        unpriced.setArea(AREA);
+        unpriced.setTaxRate(new BigDecimal("9.25"));
+        unpriced.setCostPerSquareFoot(new BigDecimal("5.15"));
+        unpriced.setLaborCostPerSquareFoot(new BigDecimal("4.75"));
+    }
+
+    @TearDown
+    public void deleteFiles() throws IOException {
+        watcher.destroy();
+        BenchmarkFixtures.delete(root);
+    }
+
+    @Benchmark
+    public Orders calculateOrderCached() throws PersistenceException, FileNotFoundException {
+        return cachedService.calculateOrder(DATE, 1, "Ada Lovelace", "WA", "Wood", AREA);
+    }
+
+    @Benchmark
+    public Orders calculateOrderFile() throws PersistenceException, FileNotFoundException {
+        return fileService.calculateOrder(DATE, 1, "Ada Lovelace", "WA", "Wood", AREA);
+    }
+
+    @Benchmark
+    public Orders priceBigDecimal() {
+        bigDecimalEngine.price(unpriced);
+        return unpriced;
+    }
+
+    @Benchmark
+    public Orders priceFixedPoint() {
+        fixedPointEngine.price(unpriced);
+        return unpriced;
+    }
+}
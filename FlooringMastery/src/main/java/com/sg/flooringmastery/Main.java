@@ -1,26 +1,100 @@
 package com.sg.flooringmastery;
 
 import com.sg.flooringmastery.config.AppConfig;
-import org.springframework.context.ApplicationContext;
+import com.sg.flooringmastery.config.FunctionalAppConfig;
+import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 
+import com.sg.flooringmastery.controller.BatchController;
 import com.sg.flooringmastery.controller.FlooringController;
+import com.sg.flooringmastery.controller.OrderHttpServer;
 import com.sg.flooringmastery.dao.*;
+import com.sg.flooringmastery.service.ServiceLayer;
 import com.sg.flooringmastery.service.exceptions.NoSuchOrderException;
 import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.springframework.context.support.GenericApplicationContext;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 
 public class Main {
     public static void main(String[] args) {
-        ApplicationContext ctx = new AnnotationConfigApplicationContext(AppConfig.class);
+        long started = System.nanoTime();
+        ConfigurableApplicationContext ctx = createContext();
+        ctx.registerShutdownHook(); // lets Daos save anything still held in memory when the program exits
 
         FlooringController controller = ctx.getBean(FlooringController.class);
 
         try {
+            // Opt in with -Dflooring.orders.preload=true to read every order file in the background at startup.
+            if (Boolean.getBoolean("flooring.orders.preload")) {
+                ctx.getBean(ServiceLayer.class).startPreload();
+            }
+
+            // Time from the start of main until the menu is about to be shown, e.g. to compare startup modes.
+            if (Boolean.getBoolean("flooring.startup.timing")) {
+                System.out.printf("Started in %d ms.%n", (System.nanoTime() - started) / 1_000_000);
+            }
+            // Stops once started, for timing from scripts and for the class cache training run in the pom.
+            if (Boolean.getBoolean("flooring.startup.exitWhenReady")) {
+                ctx.close();
+                return;
+            }
+
+            // --batch commandFile, or --batch - for stdin, runs commands without the menu. See BatchController.
+            if (args.length == 2 && args[0].equals("--batch")) {
+                long failed = runBatch(ctx.getBean(BatchController.class), args[1]);
+                ctx.close();
+                if (failed > 0) {
+                    System.exit(1);
+                }
+                return;
+            }
+
+            // --http [port] serves the JSON API instead of the menu. See OrderHttpServer.
+            if (args.length >= 1 && args.length <= 2 && args[0].equals("--http")) {
+                int port = args.length == 2 ? Integer.parseInt(args[1])
+                        : Integer.getInteger("flooring.http.port", 8080);
+                InetSocketAddress address = ctx.getBean(OrderHttpServer.class).start(port);
+                System.out.printf("Serving the order API on http://%s:%d/api/, Ctrl+C to stop.%n",
+                        address.getHostString(), address.getPort());
+                return; // the server's own thread keeps running until the shutdown hook closes the context
+            }
+
             controller.run();
         } catch (IOException | PersistenceException | NoSuchOrderException e) {
             throw new RuntimeException(e);
         }
     }
-}
\ No newline at end of file
+
+    // Results go to stdout. Returns how many commands failed.
+    private static long runBatch(BatchController batch, String source) throws IOException, PersistenceException {
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out,
+                StandardCharsets.UTF_8)));
+        if (source.equals("-")) {
+            return batch.run(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), out);
+        }
+        try (BufferedReader in = Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8)) {
+            return batch.run(in, out);
+        }
+    }
+
+    // -Dflooring.context=functional registers the beans directly instead of scanning the classpath for them.
+    private static ConfigurableApplicationContext createContext() {
+        if ("functional".equals(System.getProperty("flooring.context", "scan"))) {
+            GenericApplicationContext ctx = new GenericApplicationContext();
+            new FunctionalAppConfig().initialize(ctx);
+            ctx.refresh();
+            return ctx;
+        }
+        return new AnnotationConfigApplicationContext(AppConfig.class);
+    }
+}
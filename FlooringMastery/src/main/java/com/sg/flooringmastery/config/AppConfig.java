@@ -1,7 +1,10 @@
 package com.sg.flooringmastery.config;
 
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
 /**
  * Spring configuration class for component scanning.
@@ -11,5 +14,25 @@ import org.springframework.context.annotation.Configuration;
 @ComponentScan(basePackages = "com.sg.flooringmastery")
 public class AppConfig {
 
-}
+    /**
+     * The database behind the jdbc profile's Daos, an H2 file next to the order files by default.
+     * Set -Dflooring.jdbc.url, .user and .password to use another, and -Dflooring.jdbc.poolSize (default 4)
+     * for how many connections are kept open. A caller waits up to 30 seconds for a free connection. Disposed
+     * by Spring on shutdown.
+     */
+    @Bean(destroyMethod = "dispose")
+    @Profile("jdbc")
+    public JdbcConnectionPool dataSource() {
+        return jdbcPool();
+    }
 
+    static JdbcConnectionPool jdbcPool() {
+        JdbcConnectionPool pool = JdbcConnectionPool.create(
+                System.getProperty("flooring.jdbc.url", "jdbc:h2:./SampleFileData/Store/flooring"),
+                System.getProperty("flooring.jdbc.user", "sa"),
+                System.getProperty("flooring.jdbc.password", ""));
+        pool.setMaxConnections(Integer.getInteger("flooring.jdbc.poolSize", 4));
+        pool.setLoginTimeout(30);
+        return pool;
+    }
+}
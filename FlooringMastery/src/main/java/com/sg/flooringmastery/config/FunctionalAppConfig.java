@@ -0,0 +1,173 @@
+package com.sg.flooringmastery.config;
+
+import com.sg.flooringmastery.controller.BatchController;
+import com.sg.flooringmastery.controller.FlooringController;
+import com.sg.flooringmastery.controller.OrderHttpServer;
+import com.sg.flooringmastery.dao.AggregateDaoFileImpl;
+import com.sg.flooringmastery.dao.CustomerIndexFileImpl;
+import com.sg.flooringmastery.dao.DataFileWatcher;
+import com.sg.flooringmastery.dao.OrderChangeListener;
+import com.sg.flooringmastery.dao.OrderDao;
+import com.sg.flooringmastery.dao.OrderDaoBTreeImpl;
+import com.sg.flooringmastery.dao.OrderDaoFileImpl;
+import com.sg.flooringmastery.dao.OrderDaoJdbcImpl;
+import com.sg.flooringmastery.dao.OrderDaoJournalImpl;
+import com.sg.flooringmastery.dao.OrderNumberAllocatorFileImpl;
+import com.sg.flooringmastery.dao.ProductDao;
+import com.sg.flooringmastery.dao.ProductDaoCachedImpl;
+import com.sg.flooringmastery.dao.ProductDaoFileImpl;
+import com.sg.flooringmastery.dao.ProductDaoJdbcImpl;
+import com.sg.flooringmastery.dao.TaxDao;
+import com.sg.flooringmastery.dao.TaxDaoCachedImpl;
+import com.sg.flooringmastery.dao.TaxDaoFileImpl;
+import com.sg.flooringmastery.dao.TaxDaoJdbcImpl;
+import com.sg.flooringmastery.metrics.MetricsRegistry;
+import com.sg.flooringmastery.metrics.MetricsReporter;
+import com.sg.flooringmastery.service.BigDecimalPricingEngine;
+import com.sg.flooringmastery.service.FixedPointPricingEngine;
+import com.sg.flooringmastery.service.PricingEngine;
+import com.sg.flooringmastery.service.ServiceLayerImpl;
+import com.sg.flooringmastery.view.FlooringView;
+import com.sg.flooringmastery.view.UserIO;
+import com.sg.flooringmastery.view.UserIOConsoleImpl;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.core.env.Profiles;
+
+/**
+ * Registers the same beans as AppConfig by calling their constructors directly, for a faster start.
+ * Nothing is found by scanning the classpath and no annotations are read, so @Autowired setters are called
+ * here by hand and the profiles behind each @Profile/@Primary choice are checked here too.
+ * A bean added with an annotation must be added here as well. Used with -Dflooring.context=functional.
+ */
+public class FunctionalAppConfig implements ApplicationContextInitializer<GenericApplicationContext> {
+
+    @Override
+    public void initialize(GenericApplicationContext ctx) {
+        boolean fileCatalogue = ctx.getEnvironment().acceptsProfiles(Profiles.of("file-catalogue"));
+        boolean journal = ctx.getEnvironment().acceptsProfiles(Profiles.of("journal"));
+        boolean btree = ctx.getEnvironment().acceptsProfiles(Profiles.of("btree"));
+        boolean jdbc = ctx.getEnvironment().acceptsProfiles(Profiles.of("jdbc"));
+        boolean bigDecimalPricing = ctx.getEnvironment().acceptsProfiles(Profiles.of("bigdecimal-pricing"));
+
+        // ----------------------- METRICS ------------------------
+        ctx.registerBean(MetricsRegistry.class, () -> new MetricsRegistry());
+        ctx.registerBean(MetricsReporter.class, () -> new MetricsReporter(ctx.getBean(MetricsRegistry.class)));
+
+        // ----------------------- DAO ------------------------
+        ctx.registerBean(DataFileWatcher.class, () -> {
+            DataFileWatcher watcher = new DataFileWatcher();
+            watcher.setMetrics(ctx.getBean(MetricsRegistry.class));
+            return watcher;
+        });
+        ctx.registerBean(TaxDaoFileImpl.class, () -> {
+            TaxDaoFileImpl taxDao = new TaxDaoFileImpl();
+            taxDao.setMetrics(ctx.getBean(MetricsRegistry.class));
+            return taxDao;
+        });
+        ctx.registerBean(ProductDaoFileImpl.class, () -> {
+            ProductDaoFileImpl productDao = new ProductDaoFileImpl();
+            productDao.setMetrics(ctx.getBean(MetricsRegistry.class));
+            return productDao;
+        });
+        if (jdbc) {
+            ctx.registerBean(JdbcConnectionPool.class, AppConfig::jdbcPool, bd -> bd.setDestroyMethodName("dispose"));
+            ctx.registerBean(TaxDaoJdbcImpl.class, () -> {
+                TaxDaoJdbcImpl taxDao = new TaxDaoJdbcImpl(ctx.getBean(JdbcConnectionPool.class),
+                        ctx.getBean(TaxDaoFileImpl.class));
+                taxDao.setMetrics(ctx.getBean(MetricsRegistry.class));
+                return taxDao;
+            }, bd -> bd.setPrimary(true));
+            ctx.registerBean(ProductDaoJdbcImpl.class, () -> {
+                ProductDaoJdbcImpl productDao = new ProductDaoJdbcImpl(ctx.getBean(JdbcConnectionPool.class),
+                        ctx.getBean(ProductDaoFileImpl.class));
+                productDao.setMetrics(ctx.getBean(MetricsRegistry.class));
+                return productDao;
+            }, bd -> bd.setPrimary(true));
+        } else if (!fileCatalogue) {
+            ctx.registerBean(TaxDaoCachedImpl.class, () -> {
+                TaxDaoCachedImpl taxDao = new TaxDaoCachedImpl(ctx.getBean(TaxDaoFileImpl.class),
+                        ctx.getBean(DataFileWatcher.class));
+                taxDao.setMetrics(ctx.getBean(MetricsRegistry.class));
+                return taxDao;
+            }, bd -> bd.setPrimary(true));
+            ctx.registerBean(ProductDaoCachedImpl.class, () -> {
+                ProductDaoCachedImpl productDao = new ProductDaoCachedImpl(ctx.getBean(ProductDaoFileImpl.class),
+                        ctx.getBean(DataFileWatcher.class));
+                productDao.setMetrics(ctx.getBean(MetricsRegistry.class));
+                return productDao;
+            }, bd -> bd.setPrimary(true));
+        }
+
+        ctx.registerBean(CustomerIndexFileImpl.class, () -> {
+            CustomerIndexFileImpl customerIndex = new CustomerIndexFileImpl();
+            customerIndex.setMetrics(ctx.getBean(MetricsRegistry.class));
+            customerIndex.setOrderDao(ctx.getBeanProvider(OrderDao.class));
+            return customerIndex;
+        });
+        ctx.registerBean(AggregateDaoFileImpl.class, () -> {
+            AggregateDaoFileImpl aggregates = new AggregateDaoFileImpl();
+            aggregates.setMetrics(ctx.getBean(MetricsRegistry.class));
+            aggregates.setOrderDao(ctx.getBeanProvider(OrderDao.class));
+            return aggregates;
+        });
+        ctx.registerBean(OrderNumberAllocatorFileImpl.class, () -> {
+            OrderNumberAllocatorFileImpl orderNumbers = new OrderNumberAllocatorFileImpl();
+            orderNumbers.setOrderDao(ctx.getBeanProvider(OrderDao.class));
+            return orderNumbers;
+        });
+        if (btree) {
+            ctx.registerBean(OrderDaoBTreeImpl.class, () -> {
+                OrderDaoBTreeImpl orderDao = new OrderDaoBTreeImpl();
+                orderDao.setChangeListeners(ctx.getBeanProvider(OrderChangeListener.class).orderedStream().toList());
+                orderDao.setMetrics(ctx.getBean(MetricsRegistry.class));
+                return orderDao;
+            });
+        } else if (jdbc) {
+            ctx.registerBean(OrderDaoJdbcImpl.class, () -> {
+                OrderDaoJdbcImpl orderDao = new OrderDaoJdbcImpl(ctx.getBean(JdbcConnectionPool.class));
+                orderDao.setChangeListeners(ctx.getBeanProvider(OrderChangeListener.class).orderedStream().toList());
+                orderDao.setMetrics(ctx.getBean(MetricsRegistry.class));
+                return orderDao;
+            });
+        } else if (journal) {
+            ctx.registerBean(OrderDaoJournalImpl.class, () -> withSetters(ctx, new OrderDaoJournalImpl()));
+        } else {
+            ctx.registerBean(OrderDaoFileImpl.class, () -> withSetters(ctx, new OrderDaoFileImpl()));
+        }
+
+        // ----------------------- SERVICE ------------------------
+        ctx.registerBean(BigDecimalPricingEngine.class, () -> new BigDecimalPricingEngine());
+        if (!bigDecimalPricing) {
+            ctx.registerBean(FixedPointPricingEngine.class, () -> new FixedPointPricingEngine(
+                    ctx.getBean(BigDecimalPricingEngine.class)), bd -> bd.setPrimary(true));
+        }
+        ctx.registerBean(ServiceLayerImpl.class, () -> {
+            ServiceLayerImpl service = new ServiceLayerImpl(ctx.getBean(OrderDao.class),
+                    ctx.getBean(ProductDao.class), ctx.getBean(TaxDao.class),
+                    ctx.getBean(OrderNumberAllocatorFileImpl.class), ctx.getBean(PricingEngine.class),
+                    ctx.getBean(CustomerIndexFileImpl.class), ctx.getBean(AggregateDaoFileImpl.class));
+            service.setMetrics(ctx.getBean(MetricsRegistry.class));
+            return service;
+        });
+
+        // ----------------------- VIEW / CONTROLLER ------------------------
+        ctx.registerBean(UserIO.class, () -> new UserIOConsoleImpl());
+        ctx.registerBean(FlooringView.class, () -> new FlooringView(ctx.getBean(UserIO.class)));
+        ctx.registerBean(FlooringController.class, () -> new FlooringController(ctx.getBean(FlooringView.class),
+                ctx.getBean(ServiceLayerImpl.class), ctx.getBean(TaxDao.class), ctx.getBean(ProductDao.class),
+                ctx.getBean(MetricsRegistry.class)));
+        ctx.registerBean(BatchController.class, () -> new BatchController(ctx.getBean(ServiceLayerImpl.class),
+                ctx.getBean(MetricsRegistry.class)));
+        ctx.registerBean(OrderHttpServer.class, () -> new OrderHttpServer(ctx.getBean(ServiceLayerImpl.class),
+                ctx.getBean(MetricsRegistry.class)));
+    }
+
+    // What the @Autowired setters would have been given.
+    private static <T extends OrderDaoFileImpl> T withSetters(GenericApplicationContext ctx, T orderDao) {
+        orderDao.setChangeListeners(ctx.getBeanProvider(OrderChangeListener.class).orderedStream().toList());
+        orderDao.setMetrics(ctx.getBean(MetricsRegistry.class));
+        return orderDao;
+    }
+}
@@ -0,0 +1,324 @@
+package com.sg.flooringmastery.controller;
+
+import com.sg.flooringmastery.metrics.MetricsRegistry;
+import com.sg.flooringmastery.metrics.Timer;
+import com.sg.flooringmastery.model.ExportSummary;
+import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.service.CsvFields;
+import com.sg.flooringmastery.service.OrderInput;
+import com.sg.flooringmastery.service.ServiceLayerImpl;
+import com.sg.flooringmastery.service.exceptions.NoSuchOrderException;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Runs order commands read from a file or stdin without any prompts, for scripts and bulk changes.
+ * Started with --batch commandFile, or --batch - to read stdin. One command per line, fields as CSV:
+ *
+ *   ADD,date,CustomerName,State,ProductType,Area
+ *   EDIT,date,orderNumber,CustomerName,State,ProductType,Area   (a blank field keeps the current value)
+ *   REMOVE,date,orderNumber
+ *   QUERY,date[,toDate]
+ *   EXPORT
+ *
+ * Dates are yyyy-MM-dd and blank lines or lines starting with # are skipped. Values are checked by OrderInput.
+ *
+ * Each command prints one JSON line with ok true or false, and a bad command does not stop the ones after it.
+ * A final summary line gives the counts and operations per second.
+ *
+ * Writes are grouped. A run of ADDs is priced one by one but added per date in one call when the run ends,
+ * and changes are saved together every -Dflooring.batch.saveEvery commands (1000 by default) and at the end,
+ * instead of one file write per change. Results are held until the save that follows them, so ok true for an
+ * ADD, EDIT or REMOVE means the change is on disk. If that save fails, each of those changes is reported with
+ * ok false and the save's error, and the batch stops.
+ */
+@Component
+public class BatchController {
+
+    private static final int SAVE_EVERY = Integer.getInteger("flooring.batch.saveEvery", 1_000);
+
+    private final ServiceLayerImpl service;
+    private final OrderInput input;
+
+    private final Timer addTimer;
+    private final Timer editTimer;
+    private final Timer removeTimer;
+    private final Timer queryTimer;
+    private final Timer exportTimer;
+    private final Timer saveTimer;
+
+    private long operations;
+    private long failed;
+
+    // ADDs priced but not yet added, in line order.
+    private final List<PendingAdd> pendingAdds = new ArrayList<>();
+
+    // Result lines waiting for the next save, in line order.
+    private final List<Result> results = new ArrayList<>();
+
+    private record PendingAdd(String result, LocalDate date, Orders order) {
+    }
+
+    // One command's result line. change holds the start of the line for a change that succeeded, so a failed
+    // save can be reported against it, and is null otherwise.
+    private record Result(String line, String change) {
+    }
+
+    @Autowired
+    public BatchController(ServiceLayerImpl service, MetricsRegistry metrics) {
+        this.service = service;
+        this.input = new OrderInput(service);
+        this.addTimer = metrics.timer("batch.add");
+        this.editTimer = metrics.timer("batch.edit");
+        this.removeTimer = metrics.timer("batch.remove");
+        this.queryTimer = metrics.timer("batch.query");
+        this.exportTimer = metrics.timer("batch.export");
+        this.saveTimer = metrics.timer("batch.save");
+    }
+
+    /**
+     * Runs every command from in, writing the results to out. Returns how many commands failed.
+     * A failure to save the changes stops the batch and is thrown, as later results could not be trusted.
+     */
+    public long run(BufferedReader in, PrintWriter out) throws IOException, PersistenceException {
+        operations = 0;
+        pendingAdds.clear();
+        results.clear();
+        failed = 0;
+        long start = System.nanoTime();
+
+        service.setDeferredWrites(true);
+        try {
+            String line;
+            long lineNumber = 0;
+            long unsaved = 0;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                String trimmed = line.trim();
+                if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                    continue;
+                }
+
+                List<String> fields = CsvFields.split(trimmed);
+                if (!isAdd(fields)) {
+                    addPending(); // later commands must see the orders added before them
+                }
+                execute(lineNumber, fields);
+                if (++unsaved >= SAVE_EVERY) {
+                    addPending();
+                    save(out);
+                    unsaved = 0;
+                }
+            }
+            addPending();
+            save(out);
+        } finally {
+            service.setDeferredWrites(false);
+        }
+
+        long elapsed = System.nanoTime() - start;
+        out.println("{\"summary\": true, \"operations\": " + operations + ", \"failed\": " + failed
+                + ", \"elapsedMillis\": " + elapsed / 1_000_000
+                + ", \"opsPerSecond\": " + (elapsed == 0 ? operations : operations * 1_000_000_000L / elapsed) + "}");
+        out.flush();
+        return failed;
+    }
+
+    // Runs one command and queues its result line, or for an ADD queues the order to be added.
+    private void execute(long lineNumber, List<String> fields) {
+        String op = fields.get(0).trim().toUpperCase(Locale.ROOT);
+        String result = "{\"line\": " + lineNumber + ", \"op\": " + Json.quote(op) + ", ";
+        operations++;
+
+        Timer timer = switch (op) {
+            case "ADD" -> addTimer;
+            case "EDIT" -> editTimer;
+            case "REMOVE" -> removeTimer;
+            case "QUERY" -> queryTimer;
+            case "EXPORT" -> exportTimer;
+            default -> null;
+        };
+        long start = timer == null ? 0 : timer.start();
+        try {
+            if (op.equals("ADD")) {
+                add(result, fields);
+                return;
+            }
+            String data = switch (op) {
+                case "EDIT" -> edit(fields);
+                case "REMOVE" -> remove(fields);
+                case "QUERY" -> query(fields);
+                case "EXPORT" -> export(fields);
+                default -> throw new IllegalArgumentException("Unknown command '" + fields.get(0).trim()
+                        + "', expected ADD, EDIT, REMOVE, QUERY or EXPORT.");
+            };
+            boolean change = op.equals("EDIT") || op.equals("REMOVE");
+            results.add(new Result(result + "\"ok\": true" + data + "}", change ? result : null));
+        } catch (RuntimeException | NoSuchOrderException | PersistenceException | IOException e) {
+            failed++;
+            results.add(new Result(result + "\"ok\": false, \"error\": " + Json.quote(message(e)) + "}", null));
+        } finally {
+            if (timer != null) {
+                timer.stop(start);
+            }
+        }
+    }
+
+    // ----------------------- COMMANDS ------------------------
+
+    // Prices the order, taking its number, and queues it for addPending().
+    private void add(String result, List<String> fields) throws PersistenceException, IOException {
+        expectFields(fields, 6);
+        LocalDate date = OrderInput.date(fields.get(1));
+        String customerName = OrderInput.customerName(fields.get(2));
+        String state = input.state(fields.get(3));
+        String productType = input.productType(fields.get(4));
+        BigDecimal area = OrderInput.area(fields.get(5));
+
+        Orders order = service.calculateOrder(date, customerName, state, productType, area);
+        pendingAdds.add(new PendingAdd(result, date, order));
+    }
+
+    /**
+     * Adds the queued ADDs with one call per date and queues their results in line order. If a date's orders
+     * cannot be added its ADDs are reported as failed, and the order numbers they were given are not reused.
+     */
+    private void addPending() {
+        if (pendingAdds.isEmpty()) {
+            return;
+        }
+
+        Map<LocalDate, List<Orders>> byDate = new LinkedHashMap<>();
+        for (PendingAdd add : pendingAdds) {
+            byDate.computeIfAbsent(add.date(), date -> new ArrayList<>()).add(add.order());
+        }
+        Map<LocalDate, String> errors = new HashMap<>();
+        for (Map.Entry<LocalDate, List<Orders>> date : byDate.entrySet()) {
+            try {
+                service.addOrders(date.getKey(), date.getValue());
+            } catch (PersistenceException | RuntimeException e) {
+                errors.put(date.getKey(), message(e));
+            }
+        }
+
+        for (PendingAdd add : pendingAdds) {
+            String error = errors.get(add.date());
+            if (error == null) {
+                results.add(new Result(add.result() + "\"ok\": true, \"date\": " + Json.quote(add.date().toString())
+                        + ", \"order\": " + Json.order(add.order()) + "}", add.result()));
+            } else {
+                failed++;
+                results.add(new Result(add.result() + "\"ok\": false, \"error\": " + Json.quote(error) + "}", null));
+            }
+        }
+        pendingAdds.clear();
+    }
+
+    private String edit(List<String> fields) throws PersistenceException, IOException, NoSuchOrderException {
+        expectFields(fields, 7);
+        LocalDate date = OrderInput.date(fields.get(1));
+        Orders current = service.getOrderByDateAndNumber(date, OrderInput.orderNumber(fields.get(2)));
+
+        String customerName = fields.get(3).isBlank() ? current.getCustomerName()
+                : OrderInput.customerName(fields.get(3));
+        String state = fields.get(4).isBlank() ? current.getState() : input.state(fields.get(4));
+        String productType = fields.get(5).isBlank() ? current.getProductType() : input.productType(fields.get(5));
+        BigDecimal area = fields.get(6).isBlank() ? current.getArea() : OrderInput.area(fields.get(6));
+
+        Orders updated = service.calculateOrder(date, current.getOrderNumber(), customerName, state, productType,
+                area);
+        service.editOrder(date, updated.getOrderNumber(), updated);
+        return ", \"date\": " + Json.quote(date.toString()) + ", \"order\": " + Json.order(updated);
+    }
+
+    private String remove(List<String> fields) throws PersistenceException, NoSuchOrderException {
+        expectFields(fields, 3);
+        LocalDate date = OrderInput.date(fields.get(1));
+        int orderNumber = OrderInput.orderNumber(fields.get(2));
+
+        service.getOrderByDateAndNumber(date, orderNumber); // reports a missing order rather than ignoring it
+        service.removeOrder(date, orderNumber);
+        return ", \"date\": " + Json.quote(date.toString()) + ", \"orderNumber\": " + orderNumber;
+    }
+
+    private String query(List<String> fields) throws PersistenceException {
+        if (fields.size() != 2 && fields.size() != 3) {
+            throw new IllegalArgumentException("Expected QUERY,date or QUERY,date,toDate.");
+        }
+        LocalDate from = OrderInput.date(fields.get(1));
+        LocalDate to = fields.size() == 3 ? OrderInput.date(fields.get(2)) : from;
+
+        List<Orders> orders = service.getOrdersBetween(from, to);
+        return ", \"from\": " + Json.quote(from.toString()) + ", \"to\": " + Json.quote(to.toString())
+                + ", \"count\": " + orders.size() + ", \"orders\": " + Json.array(orders, Json::order);
+    }
+
+    // Exports read the order files, so anything still unsaved is written first.
+    private String export(List<String> fields) throws PersistenceException {
+        expectFields(fields, 1);
+        ExportSummary summary = service.exportData();
+        return ", \"dates\": " + summary.dates() + ", \"rows\": " + summary.rows()
+                + ", \"elapsedMillis\": " + summary.elapsedMillis();
+    }
+
+    /**
+     * Saves every change so far, then prints the results held since the last save. If the save fails, each
+     * change among them is printed as failed with the save's error, and the error is thrown to stop the batch.
+     */
+    private void save(PrintWriter out) throws PersistenceException {
+        long start = saveTimer.start();
+        try {
+            service.saveOrders();
+        } catch (PersistenceException | RuntimeException e) {
+            String error = Json.quote("Not saved: " + message(e));
+            for (Result result : results) {
+                if (result.change() == null) {
+                    out.println(result.line());
+                } else {
+                    failed++;
+                    out.println(result.change() + "\"ok\": false, \"error\": " + error + "}");
+                }
+            }
+            results.clear();
+            out.flush();
+            throw e;
+        } finally {
+            saveTimer.stop(start);
+        }
+
+        for (Result result : results) {
+            out.println(result.line());
+        }
+        results.clear();
+    }
+
+    private static String message(Throwable e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    private static boolean isAdd(List<String> fields) {
+        return fields.get(0).trim().equalsIgnoreCase("ADD");
+    }
+
+    // ----------------------- VALIDATION ------------------------
+    // Problems are thrown as IllegalArgumentException and reported against the command's line.
+
+    private static void expectFields(List<String> fields, int count) {
+        if (fields.size() != count) {
+            throw new IllegalArgumentException("Expected " + count + " fields but found " + fields.size() + ".");
+        }
+    }
+}
@@ -3,7 +3,10 @@ package com.sg.flooringmastery.controller;
 // Import necessary classes and interfaces
 import com.sg.flooringmastery.dao.ProductDao;
 import com.sg.flooringmastery.dao.TaxDao;
+import com.sg.flooringmastery.metrics.MetricsRegistry;
+import com.sg.flooringmastery.metrics.Timer;
 import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.model.PreloadProgress;
 import com.sg.flooringmastery.service.ServiceLayerImpl;
 import com.sg.flooringmastery.service.exceptions.NoSuchOrderException;
 import com.sg.flooringmastery.service.exceptions.PersistenceException;
@@ -29,16 +32,28 @@ public class FlooringController {
     private final ServiceLayerImpl service;
     private final TaxDao taxDao;
     private final ProductDao productDao;
+    private final MetricsRegistry metrics;
+
+    // Time spent in each menu option, user input included, indexed by the option's number. Quit has none.
+    private final Timer[] menuTimers;
+
+    // Set once the finished preload has been reported, so it is not shown above every menu.
+    private boolean preloadReported;
 
     /**
      * Constructor - initializes controller with necessary components.
      */
     @Autowired
-    public FlooringController(FlooringView view, ServiceLayerImpl service, TaxDao taxDao, ProductDao productDao) {
+    public FlooringController(FlooringView view, ServiceLayerImpl service, TaxDao taxDao, ProductDao productDao,
+                              MetricsRegistry metrics) {
         this.view = view;
         this.service = service;
         this.taxDao = taxDao;
         this.productDao = productDao;
+        this.metrics = metrics;
+        this.menuTimers = new Timer[] {null, metrics.timer("menu.displayOrders"), metrics.timer("menu.addOrder"),
+                metrics.timer("menu.editOrder"), metrics.timer("menu.removeOrder"), metrics.timer("menu.exportData"),
+                null, metrics.timer("menu.displayMetrics")};
     }
 
     /**
@@ -51,7 +66,9 @@ public class FlooringController {
         view.displayMessage("== WELCOME ==\n");
 
         while (keepGoing) {
+            displayPreloadProgress();
             int choice = view.printMenuAndAnswer(); // Display menu and get user input
+            long start = System.nanoTime();
 
             switch (choice) {
                 case 1:
@@ -72,17 +89,48 @@ public class FlooringController {
                 case 6:
                     keepGoing = false; // Exit loop
                     break;
+                case 7:
+                    displayMetrics();
+                    break;
                 default:
                     unknownCommand(); // Handle invalid input
             }
+
+            if (choice > 0 && choice < menuTimers.length && menuTimers[choice] != null) {
+                menuTimers[choice].stop(start);
+            }
         }
         exitMessage();
     }
 
 
-    // Placeholder for export functionality.
+    // Shows how far the background preload has got above the menu, and its result once, when it finishes.
+    private void displayPreloadProgress() {
+        PreloadProgress progress = service.getPreloadProgress();
+        if (progress == null || preloadReported) {
+            return;
+        }
+        view.displayPreloadProgress(progress);
+        preloadReported = progress.finished();
+    }
+
+    // Shows every counter, gauge and timer recorded since the program started.
+    private void displayMetrics() {
+        view.displayMetrics(metrics.snapshot());
+        view.backToMainMenu();
+    }
+
+    // Writes every order from every date into the DataExport backup file.
     private void exportData() {
-        System.out.println("not yet implemented");
+        view.displayExportBanner();
+
+        try {
+            view.displayExportSummary(service.exportData());
+        } catch (PersistenceException e) {
+            view.displayErrorMessage(e.getMessage());
+        }
+
+        view.backToMainMenu();
     }
 
     //Removes an existing order after user confirmation from main menu.
@@ -128,9 +176,9 @@ public class FlooringController {
         String newProduct = view.getEditedProductType(foundOrder.getProductType(), service);
         BigDecimal newArea = view.getEditedArea(foundOrder.getArea());
 
-        // Recalculate the order with the new information
-        Orders newOrder = service.calculateOrder(orderDate, newName, newState, newProduct, newArea);
-        newOrder.setOrderNumber(foundOrder.getOrderNumber());
+        // Recalculate the order with the new information, keeping its order number
+        Orders newOrder = service.calculateOrder(orderDate, foundOrder.getOrderNumber(), newName, newState,
+                newProduct, newArea);
 
         // Show user the updated order entry.
         view.displayOrderSummary(newOrder);
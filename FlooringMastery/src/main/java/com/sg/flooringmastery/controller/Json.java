@@ -0,0 +1,199 @@
+package com.sg.flooringmastery.controller;
+
+import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.model.Products;
+import com.sg.flooringmastery.model.Taxes;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * The JSON written by batch mode and the HTTP API, and the flat objects the HTTP API accepts.
+ * Money and rates are written as strings so no precision is lost to a reader's floating point.
+ */
+final class Json {
+
+    private Json() {
+    }
+
+    static String order(Orders order) {
+        return "{\"orderNumber\": " + order.getOrderNumber()
+                + ", \"customerName\": " + quote(order.getCustomerName())
+                + ", \"state\": " + quote(order.getState())
+                + ", \"taxRate\": " + quote(order.getTaxRate().toPlainString())
+                + ", \"productType\": " + quote(order.getProductType())
+                + ", \"area\": " + quote(order.getArea().toPlainString())
+                + ", \"costPerSquareFoot\": " + quote(order.getCostPerSquareFoot().toPlainString())
+                + ", \"laborCostPerSquareFoot\": " + quote(order.getLaborCostPerSquareFoot().toPlainString())
+                + ", \"materialCost\": " + quote(order.getMaterialCost().toPlainString())
+                + ", \"laborCost\": " + quote(order.getLaborCost().toPlainString())
+                + ", \"tax\": " + quote(order.getTax().toPlainString())
+                + ", \"total\": " + quote(order.getTotal().toPlainString()) + "}";
+    }
+
+    static String product(Products product) {
+        return "{\"productType\": " + quote(product.getProductType())
+                + ", \"costPerSquareFoot\": " + quote(product.getCostPerSquareFoot().toPlainString())
+                + ", \"laborCostPerSquareFoot\": " + quote(product.getLabourCostPerSquareFoot().toPlainString())
+                + "}";
+    }
+
+    static String tax(Taxes tax) {
+        return "{\"state\": " + quote(tax.getStateAbbreviation())
+                + ", \"stateName\": " + quote(tax.getStateName())
+                + ", \"taxRate\": " + quote(tax.getTaxRate().toPlainString()) + "}";
+    }
+
+    static <T> String array(List<T> values, Function<T, String> toJson) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < values.size(); i++) {
+            json.append(i == 0 ? "" : ", ").append(toJson.apply(values.get(i)));
+        }
+        return json.append(']').toString();
+    }
+
+    static String quote(String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> json.append("\\\"");
+                case '\\' -> json.append("\\\\");
+                default -> {
+                    if (c < 0x20) {
+                        json.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        json.append(c);
+                    }
+                }
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    /**
+     * Reads one object whose values are strings, numbers, true, false or null, e.g. a request body.
+     * Every value is returned as its text and null values are left out. Nested objects and arrays are not
+     * accepted. Throws IllegalArgumentException if the text is not such an object.
+     */
+    static Map<String, String> parseObject(String text) {
+        Parser parser = new Parser(text);
+        Map<String, String> fields = new LinkedHashMap<>();
+
+        parser.expect('{');
+        if (!parser.skip('}')) {
+            do {
+                String name = parser.string();
+                parser.expect(':');
+                String value = parser.value();
+                if (value != null) {
+                    fields.put(name, value);
+                }
+            } while (parser.skip(','));
+            parser.expect('}');
+        }
+        parser.end();
+        return fields;
+    }
+
+    private static final class Parser {
+
+        private static final String NUMBER = "-?\\d+(\\.\\d+)?([eE][-+]?\\d+)?";
+
+        private final String text;
+        private int at;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        void expect(char c) {
+            if (!skip(c)) {
+                throw error("Expected '" + c + "'");
+            }
+        }
+
+        boolean skip(char c) {
+            whitespace();
+            if (at < text.length() && text.charAt(at) == c) {
+                at++;
+                return true;
+            }
+            return false;
+        }
+
+        void end() {
+            whitespace();
+            if (at != text.length()) {
+                throw error("Unexpected text after the object");
+            }
+        }
+
+        String value() {
+            whitespace();
+            if (at < text.length() && text.charAt(at) == '"') {
+                return string();
+            }
+            int start = at;
+            while (at < text.length() && "-+.eE0123456789truefalsn".indexOf(text.charAt(at)) >= 0) {
+                at++;
+            }
+            String literal = text.substring(start, at);
+            if (literal.equals("null")) {
+                return null;
+            }
+            if (literal.equals("true") || literal.equals("false") || literal.matches(NUMBER)) {
+                return literal;
+            }
+            throw error("Expected a string, number, true, false or null");
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder value = new StringBuilder();
+            while (at < text.length()) {
+                char c = text.charAt(at++);
+                if (c == '"') {
+                    return value.toString();
+                }
+                if (c != '\\') {
+                    value.append(c);
+                } else if (at < text.length()) {
+                    char escaped = text.charAt(at++);
+                    switch (escaped) {
+                        case 'n' -> value.append('\n');
+                        case 't' -> value.append('\t');
+                        case 'r' -> value.append('\r');
+                        case 'b' -> value.append('\b');
+                        case 'f' -> value.append('\f');
+                        case 'u' -> {
+                            if (at + 4 > text.length()) {
+                                throw error("Incomplete \\u escape");
+                            }
+                            try {
+                                value.append((char) Integer.parseInt(text.substring(at, at + 4), 16));
+                            } catch (NumberFormatException e) {
+                                throw error("Invalid \\u escape");
+                            }
+                            at += 4;
+                        }
+                        default -> value.append(escaped);
+                    }
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        private void whitespace() {
+            while (at < text.length() && Character.isWhitespace(text.charAt(at))) {
+                at++;
+            }
+        }
+
+        private IllegalArgumentException error(String message) {
+            return new IllegalArgumentException("Invalid JSON: " + message + " at character " + at + ".");
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.sg.flooringmastery.controller;
+
+import com.sg.flooringmastery.metrics.Counter;
+import com.sg.flooringmastery.metrics.MetricsRegistry;
+import com.sg.flooringmastery.metrics.Timer;
+import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.service.OrderInput;
+import com.sg.flooringmastery.service.ServiceLayerImpl;
+import com.sg.flooringmastery.service.exceptions.NoSuchOrderException;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * A JSON API over the service layer, so many clients can use one running copy of the order archive at once.
+ * Started with --http [port]. Built on the JDK's HTTP server, with every request handled on its own virtual
+ * thread, so a request waiting on a date's lock or file does not hold up any other.
+ *
+ *   GET    /api/orders?date=yyyy-MM-dd[&to=yyyy-MM-dd]   orders for a date or date range
+ *   POST   /api/orders                                   add an order, returns it with its number (201)
+ *   GET    /api/orders/{date}/{orderNumber}              one order
+ *   PUT    /api/orders/{date}/{orderNumber}              edit an order, fields left out keep their value
+ *   DELETE /api/orders/{date}/{orderNumber}              remove an order (204)
+ *   POST   /api/quote                                    price an order without saving it
+ *   GET    /api/products, /api/taxes                     what can be ordered, and where
+ *
+ * Request bodies are JSON objects with date, customerName, state, productType and area, checked by OrderInput.
+ * Errors come back as {"error": message} with 400 for bad input, 404 for a missing order and 500 when the
+ * order files cannot be read or written. Listens on 127.0.0.1 unless -Dflooring.http.host is set.
+ */
+@Component
+public class OrderHttpServer implements DisposableBean {
+
+    private static final String HOST = System.getProperty("flooring.http.host", "127.0.0.1");
+
+    // Connections the operating system queues while the server is busy accepting others.
+    private static final int BACKLOG = Integer.getInteger("flooring.http.backlog", 4096);
+
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    private static final String ORDERS = "/api/orders";
+
+    private final ServiceLayerImpl service;
+    private final OrderInput input;
+    private final MetricsRegistry metrics;
+    private final Counter clientErrors;
+    private final Counter serverErrors;
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    // Thrown by a handler to answer with a status other than 400, 404 or 500.
+    private static final class HttpStatusException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        HttpStatusException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    // One route. Returns the status and JSON body to send, with a null body for no content.
+    @FunctionalInterface
+    private interface Route {
+        Response handle(HttpExchange exchange) throws IOException, PersistenceException, NoSuchOrderException;
+    }
+
+    // The work behind a route, timed separately from reading the request and sending the response.
+    @FunctionalInterface
+    private interface Action {
+        Response run() throws IOException, PersistenceException, NoSuchOrderException;
+    }
+
+    private record Response(int status, String json) {
+    }
+
+    @Autowired
+    public OrderHttpServer(ServiceLayerImpl service, MetricsRegistry metrics) {
+        this.service = service;
+        this.input = new OrderInput(service);
+        this.metrics = metrics;
+        this.clientErrors = metrics.counter("http.errors.client");
+        this.serverErrors = metrics.counter("http.errors.server");
+    }
+
+    // Starts listening and returns the address actually bound, e.g. when port 0 picked a free port.
+    public synchronized InetSocketAddress start(int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("The HTTP server is already running.");
+        }
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server = HttpServer.create(new InetSocketAddress(HOST, port), BACKLOG);
+        server.setExecutor(executor);
+        server.createContext(ORDERS, exchange -> respond(exchange, this::orders));
+        server.createContext("/api/quote", exchange -> respond(exchange, this::quote));
+        server.createContext("/api/products", exchange -> respond(exchange, this::products));
+        server.createContext("/api/taxes", exchange -> respond(exchange, this::taxes));
+        server.start();
+        return server.getAddress();
+    }
+
+    // Stops accepting connections and gives requests already being handled a second to finish.
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdown();
+            server = null;
+        }
+    }
+
+    // Called by Spring on shutdown.
+    @Override
+    public void destroy() {
+        stop();
+    }
+
+    // ----------------------- ROUTES ------------------------
+
+    private Response orders(HttpExchange exchange) throws IOException, PersistenceException, NoSuchOrderException {
+        String[] path = exchange.getRequestURI().getPath().substring(ORDERS.length()).split("/");
+        String method = exchange.getRequestMethod();
+
+        // "" for /api/orders, then "", date and number for /api/orders/{date}/{orderNumber}
+        if (path.length <= 1 && (path.length == 0 || path[0].isEmpty())) {
+            return switch (method) {
+                case "GET" -> timed("http.orders.list", () -> listOrders(query(exchange)));
+                case "POST" -> timed("http.orders.add", () -> addOrder(body(exchange)));
+                default -> throw new HttpStatusException(405, "Use GET or POST for " + ORDERS + ".");
+            };
+        }
+        if (path.length != 3 || !path[0].isEmpty()) {
+            throw new HttpStatusException(404, "No such resource, expected " + ORDERS + "/{date}/{orderNumber}.");
+        }
+
+        LocalDate date = OrderInput.date(path[1]);
+        int orderNumber = OrderInput.orderNumber(path[2]);
+        return switch (method) {
+            case "GET" -> timed("http.orders.get", () ->
+                    new Response(200, Json.order(service.getOrderByDateAndNumber(date, orderNumber))));
+            case "PUT" -> timed("http.orders.edit", () -> editOrder(date, orderNumber, body(exchange)));
+            case "DELETE" -> timed("http.orders.remove", () -> removeOrder(date, orderNumber));
+            default -> throw new HttpStatusException(405, "Use GET, PUT or DELETE for an order.");
+        };
+    }
+
+    private Response listOrders(Map<String, String> query) throws PersistenceException {
+        String from = query.get("date");
+        if (from == null) {
+            throw new IllegalArgumentException("The date query parameter is required, e.g. ?date=2013-06-01.");
+        }
+        LocalDate fromDate = OrderInput.date(from);
+        LocalDate toDate = query.containsKey("to") ? OrderInput.date(query.get("to")) : fromDate;
+
+        List<Orders> orders = service.getOrdersBetween(fromDate, toDate);
+        return new Response(200, "{\"from\": " + Json.quote(fromDate.toString()) + ", \"to\": "
+                + Json.quote(toDate.toString()) + ", \"count\": " + orders.size()
+                + ", \"orders\": " + Json.array(orders, Json::order) + "}");
+    }
+
+    private Response addOrder(Map<String, String> body) throws IOException, PersistenceException {
+        LocalDate date = OrderInput.date(required(body, "date"));
+        Orders order = service.calculateOrder(date, OrderInput.customerName(required(body, "customerName")),
+                input.state(required(body, "state")), input.productType(required(body, "productType")),
+                OrderInput.area(required(body, "area")));
+        service.addOrderFile(date, order);
+        return new Response(201, "{\"date\": " + Json.quote(date.toString()) + ", \"order\": " + Json.order(order)
+                + "}");
+    }
+
+    private Response editOrder(LocalDate date, int orderNumber, Map<String, String> body)
+            throws IOException, PersistenceException, NoSuchOrderException {
+        Orders current = service.getOrderByDateAndNumber(date, orderNumber);
+        String customerName = body.containsKey("customerName") ? OrderInput.customerName(body.get("customerName"))
+                : current.getCustomerName();
+        String state = body.containsKey("state") ? input.state(body.get("state")) : current.getState();
+        String productType = body.containsKey("productType") ? input.productType(body.get("productType"))
+                : current.getProductType();
+        BigDecimal area = body.containsKey("area") ? OrderInput.area(body.get("area")) : current.getArea();
+
+        Orders updated = service.calculateOrder(date, orderNumber, customerName, state, productType, area);
+        service.editOrder(date, orderNumber, updated);
+        return new Response(200, "{\"date\": " + Json.quote(date.toString()) + ", \"order\": "
+                + Json.order(updated) + "}");
+    }
+
+    private Response removeOrder(LocalDate date, int orderNumber) throws PersistenceException, NoSuchOrderException {
+        service.getOrderByDateAndNumber(date, orderNumber); // a missing order is a 404 rather than ignored
+        service.removeOrder(date, orderNumber);
+        return new Response(204, null);
+    }
+
+    // Prices an order with number 0, so no order number is used up.
+    private Response quote(HttpExchange exchange) throws IOException, PersistenceException, NoSuchOrderException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            throw new HttpStatusException(405, "Use POST for /api/quote.");
+        }
+        return timed("http.quote", () -> {
+            Map<String, String> body = body(exchange);
+            LocalDate date = OrderInput.date(required(body, "date"));
+            Orders order = service.calculateOrder(date, 0, OrderInput.customerName(required(body, "customerName")),
+                    input.state(required(body, "state")), input.productType(required(body, "productType")),
+                    OrderInput.area(required(body, "area")));
+            return new Response(200, Json.order(order));
+        });
+    }
+
+    private Response products(HttpExchange exchange) throws IOException, PersistenceException, NoSuchOrderException {
+        requireGet(exchange);
+        return timed("http.products", () -> new Response(200, Json.array(service.getProducts(), Json::product)));
+    }
+
+    private Response taxes(HttpExchange exchange) throws IOException, PersistenceException, NoSuchOrderException {
+        requireGet(exchange);
+        return timed("http.taxes", () -> new Response(200, Json.array(service.getTaxes(), Json::tax)));
+    }
+
+    // ----------------------- REQUESTS ------------------------
+
+    // Runs a route and sends what it returns, turning an exception into an error response.
+    private void respond(HttpExchange exchange, Route route) throws IOException {
+        Response response;
+        try {
+            response = route.handle(exchange);
+        } catch (HttpStatusException e) {
+            response = error(e.status, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            response = error(400, e.getMessage());
+        } catch (NoSuchOrderException e) {
+            response = error(404, e.getMessage());
+        } catch (PersistenceException | IOException | RuntimeException e) {
+            System.err.println("HTTP " + exchange.getRequestMethod() + " " + exchange.getRequestURI()
+                    + " failed: " + e);
+            response = error(500, e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName());
+        }
+
+        try (exchange) {
+            if (response.json() == null) {
+                exchange.sendResponseHeaders(response.status(), -1);
+                return;
+            }
+            byte[] bytes = response.json().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(response.status(), bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+
+    private Response error(int status, String message) {
+        (status >= 500 ? serverErrors : clientErrors).increment();
+        return new Response(status, "{\"error\": " + Json.quote(message) + "}");
+    }
+
+    private Response timed(String name, Action action) throws IOException, PersistenceException, NoSuchOrderException {
+        Timer timer = metrics.timer(name);
+        long start = timer.start();
+        try {
+            return action.run();
+        } finally {
+            timer.stop(start);
+        }
+    }
+
+    private static void requireGet(HttpExchange exchange) {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            throw new HttpStatusException(405, "Use GET for " + exchange.getRequestURI().getPath() + ".");
+        }
+    }
+
+    private static Map<String, String> body(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] bytes = in.readNBytes(MAX_BODY_BYTES + 1);
+            if (bytes.length > MAX_BODY_BYTES) {
+                throw new HttpStatusException(413, "Request body is larger than " + MAX_BODY_BYTES + " bytes.");
+            }
+            return Json.parseObject(new String(bytes, StandardCharsets.UTF_8));
+        }
+    }
+
+    private static Map<String, String> query(HttpExchange exchange) {
+        Map<String, String> query = new HashMap<>();
+        String raw = exchange.getRequestURI().getRawQuery();
+        if (raw != null) {
+            for (String pair : raw.split("&")) {
+                int split = pair.indexOf('=');
+                if (split > 0) {
+                    query.put(URLDecoder.decode(pair.substring(0, split), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(split + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return query;
+    }
+
+    private static String required(Map<String, String> body, String field) {
+        String value = body.get(field);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing field '" + field + "'.");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,31 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.model.AggregateDrift;
+import com.sg.flooringmastery.model.OrderTotals;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.SortedMap;
+
+/**
+ * This interface allows the ServiceLayer to read order totals without reading the order files.
+ * Every query covers the dates from to to inclusive and leaves out groups with no orders.
+ */
+
+public interface AggregateDao {
+
+    NavigableMap<LocalDate, OrderTotals> getDailyTotals(LocalDate from, LocalDate to) throws PersistenceException;
+
+    NavigableMap<YearMonth, OrderTotals> getMonthlyTotals(LocalDate from, LocalDate to) throws PersistenceException;
+
+    SortedMap<String, OrderTotals> getTotalsByState(LocalDate from, LocalDate to) throws PersistenceException;
+
+    SortedMap<String, OrderTotals> getTotalsByProduct(LocalDate from, LocalDate to) throws PersistenceException;
+
+    // Recounts every order the order Dao holds and lists where the stored totals differ. Replaces them with the
+    // recount if repair.
+    List<AggregateDrift> verify(boolean repair) throws PersistenceException;
+}
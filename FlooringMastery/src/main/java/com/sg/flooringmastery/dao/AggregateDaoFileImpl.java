@@ -0,0 +1,831 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.metrics.Counter;
+import com.sg.flooringmastery.metrics.MetricsRegistry;
+import com.sg.flooringmastery.model.AggregateDrift;
+import com.sg.flooringmastery.model.DailyOrders;
+import com.sg.flooringmastery.model.OrderTotals;
+import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Keeps running totals of orders, area, costs, tax and revenue for every date, state and product, so daily,
+ * monthly, per state and per product totals are added up from a few hundred groups per month instead of
+ * from every order.
+ *
+ * The order Dao reports every change (see OrderChangeListener) while it holds the date's lock, so
+ * ordersChanged only works out the change to each group's totals and queues it (see ChangeQueue). A background
+ * thread adds up what has queued and takes it in with one log append, and a query takes in anything still
+ * queued first. On disk the totals are one Aggregates_yyyyMM.txt file per month plus Aggregates.log,
+ * which holds the change to each group's totals since the month files were last written, one line per group.
+ * A change only appends its lines to the log. Once the log is long enough, and when the application closes,
+ * the months changed since are rewritten ("checkpoint") and the log is emptied. Amounts are kept as whole
+ * hundredths, rounded the same way as when an order is written to its file, so the totals always match what
+ * the files hold. The first time the program runs without the folder, the totals are counted from the orders
+ * the order Dao holds, whichever profile provides it.
+ *
+ * Each checkpoint starts a new log generation. A month file records the generation it was written in and the
+ * log records its own, so the lines of a log whose checkpoint was cut short by a crash are only replayed onto
+ * the months that checkpoint had not written yet, and are never counted twice.
+ *
+ * Several copies of the program sharing SampleFileData share these files too. Every read and change holds the
+ * lock file Aggregates.lock and first adds the lines other copies have appended to the log since, or loads
+ * the files again if another copy has checkpointed, so each copy's changes are counted once, by the copy that
+ * made them. Changes another copy made to an order file are therefore not taken from the order Dao.
+ *
+ * The log is handed to the operating system with every append and forced to disk at each checkpoint, so a
+ * power cut, or the program being killed while changes are queued, can lose the last few changes. Changes
+ * that cannot be taken in because the totals cannot be loaded stay queued for the next try. Changes that
+ * cannot be logged are counted in orders.aggregates.updateFailures and their months are written at the next
+ * checkpoint, which then runs with the next append. If the totals have to be loaded again before that, those
+ * months are counted again from the order Dao instead. verify() recounts the orders the order Dao holds and
+ * reports every group whose stored totals differ, and can replace the stored totals with the recount. For an
+ * exact answer run it while no orders are being changed.
+ */
+@Repository
+public class AggregateDaoFileImpl implements AggregateDao, OrderChangeListener, SmartInitializingSingleton,
+        DisposableBean {
+
+    private static final Path AGGREGATE_FOLDER = Paths.get("SampleFileData/Aggregates");
+    private static final String FILE_PREFIX = "Aggregates_";
+    private static final String FILE_SUFFIX = ".txt";
+    private static final String LOG_NAME = "Aggregates.log";
+    private static final String LOCK_NAME = "Aggregates.lock";
+    private static final DateTimeFormatter MONTH_FORMAT = DateTimeFormatter.ofPattern("yyyyMM");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("MMddyyyy");
+    private static final String DELIMITER = ",";
+    private static final String HEADER = "Date,State,ProductType,Orders,Area,MaterialCost,LaborCost,Tax,Total";
+    private static final String GENERATION = "Generation";
+
+    // Number of logged lines after which the changed months are rewritten and the log emptied.
+    private static final int MAX_LOG_ENTRIES = Integer.getInteger("flooring.aggregates.maxLogEntries", 10_000);
+
+    private static final Comparator<Group> GROUP_ORDER = Comparator.comparing(Group::date)
+            .thenComparing(Group::state, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Group::productType, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final Path aggregateFolder;
+    private final Path logFile;
+    private final Path lockFile;
+
+    // Totals per month, then per group. Null until loaded. Everything below is read and changed holding lock.
+    private NavigableMap<YearMonth, Map<Group, Sums>> months;
+    private final Object lock = new Object();
+
+    // The log's generation, and the months whose totals have changed since their files were last written.
+    // logLength is how much of the log, every copy's lines included, the totals in memory hold.
+    private long generation;
+    private final Set<YearMonth> changedMonths = new HashSet<>();
+    private FileChannel log;
+    private long logLength;
+    private int logEntries;
+
+    // Months holding a change that could not be logged, or whose checkpoint failed. The next change checkpoints,
+    // which puts them on disk from memory, or the next load counts them again from the order Dao.
+    private final Set<YearMonth> unsavedMonths = new HashSet<>();
+    private Counter updateFailures = new Counter();
+
+    // The order Dao the totals are counted from. Looked up when first needed, as it is created after its
+    // listeners.
+    private ObjectFactory<OrderDao> orderDao;
+
+    // Each reported change's difference to the totals of its groups, not yet taken in.
+    private final ChangeQueue<Map<Group, Sums>> pending = new ChangeQueue<>("aggregates-writer", this::drain);
+
+    public AggregateDaoFileImpl() {
+        this(AGGREGATE_FOLDER);
+    }
+
+    public AggregateDaoFileImpl(Path aggregateFolder) {
+        this.aggregateFolder = aggregateFolder;
+        this.logFile = aggregateFolder.resolve(LOG_NAME);
+        this.lockFile = aggregateFolder.resolve(LOCK_NAME);
+    }
+
+    private record Group(LocalDate date, String state, String productType) {
+    }
+
+    @Autowired(required = false)
+    public void setMetrics(MetricsRegistry metrics) {
+        updateFailures = metrics.counter("orders.aggregates.updateFailures");
+    }
+
+    @Autowired
+    public void setOrderDao(ObjectFactory<OrderDao> orderDao) {
+        this.orderDao = orderDao;
+    }
+
+    // Loads the totals once every bean is created, since a first count reads the order Dao, so the first query
+    // does not wait for it. If that fails the application still starts, and the first query tries again.
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            locked(() -> {
+            });
+        } catch (IOException | PersistenceException e) {
+            // reported by the first query that needs the totals
+        }
+    }
+
+    // Runs body holding lock and the lock file, once the totals are caught up with every change reported here
+    // and logged by other copies.
+    private void locked(FileLocks.Locked body) throws IOException, PersistenceException {
+        synchronized (lock) {
+            FileLocks.withLock(lockFile, () -> {
+                caughtUp();
+                body.run();
+            });
+        }
+    }
+
+    // ----------------------- QUERIES ------------------------
+
+    @Override
+    public NavigableMap<LocalDate, OrderTotals> getDailyTotals(LocalDate from, LocalDate to)
+            throws PersistenceException {
+        return rollUp(from, to, Group::date, new TreeMap<>());
+    }
+
+    @Override
+    public NavigableMap<YearMonth, OrderTotals> getMonthlyTotals(LocalDate from, LocalDate to)
+            throws PersistenceException {
+        return rollUp(from, to, group -> YearMonth.from(group.date()), new TreeMap<>());
+    }
+
+    @Override
+    public SortedMap<String, OrderTotals> getTotalsByState(LocalDate from, LocalDate to) throws PersistenceException {
+        return rollUp(from, to, Group::state, new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder())));
+    }
+
+    @Override
+    public SortedMap<String, OrderTotals> getTotalsByProduct(LocalDate from, LocalDate to)
+            throws PersistenceException {
+        return rollUp(from, to, Group::productType,
+                new TreeMap<>(Comparator.nullsFirst(Comparator.naturalOrder())));
+    }
+
+    // Adds up every group in the date range under the key it maps to. Only the months in the range are visited.
+    private <K, M extends SortedMap<K, OrderTotals>> M rollUp(LocalDate from, LocalDate to, Function<Group, K> key,
+                                                             M totals) throws PersistenceException {
+        Map<K, Sums> sums = new HashMap<>();
+        if (to.isBefore(from)) {
+            return totals;
+        }
+        try {
+            locked(() -> {
+                for (Map<Group, Sums> month : months.subMap(YearMonth.from(from), true, YearMonth.from(to), true)
+                        .values()) {
+                    for (Map.Entry<Group, Sums> group : month.entrySet()) {
+                        LocalDate date = group.getKey().date();
+                        if (!date.isBefore(from) && !date.isAfter(to)) {
+                            sums.computeIfAbsent(key.apply(group.getKey()), k -> new Sums()).add(group.getValue());
+                        }
+                    }
+                }
+            });
+        } catch (IOException e) {
+            throw new PersistenceException("Could not lock the order totals.", e);
+        }
+
+        for (Map.Entry<K, Sums> entry : sums.entrySet()) {
+            totals.put(entry.getKey(), entry.getValue().toTotals());
+        }
+        return totals;
+    }
+
+    // ----------------------- CHANGES ------------------------
+
+    // Only works out and queues the change, the order Dao holds the date's lock.
+    @Override
+    public void ordersChanged(LocalDate date, Collection<Orders> removed, Collection<Orders> added) {
+        Map<Group, Sums> delta = new HashMap<>();
+        for (Orders order : removed) {
+            apply(delta, date, order, -1);
+        }
+        for (Orders order : added) {
+            apply(delta, date, order, 1);
+        }
+        if (!delta.isEmpty()) {
+            pending.add(delta);
+        }
+    }
+
+    // Run by the queue's thread. If the totals cannot be loaded the changes stay queued for the next try.
+    private void drain() {
+        try {
+            locked(() -> {
+            });
+        } catch (IOException | PersistenceException e) {
+            updateFailures.increment();
+        }
+    }
+
+    /**
+     * Adds the queued changes to the totals in memory and appends them to the log as one line per group. The
+     * month files are left alone. If the append fails the changed months are written at the next checkpoint
+     * instead. Caller holds lock and the lock file.
+     */
+    private void takeInQueued() {
+        List<Map<Group, Sums>> changes = pending.takeAll();
+        if (changes.isEmpty()) {
+            return;
+        }
+        Map<Group, Sums> delta = new HashMap<>();
+        for (Map<Group, Sums> change : changes) {
+            for (Map.Entry<Group, Sums> group : change.entrySet()) {
+                delta.merge(group.getKey(), group.getValue(), Sums::plus);
+            }
+        }
+        delta.values().removeIf(Sums::isZero);
+        add(delta);
+        try {
+            appendToLog(delta);
+            if (!unsavedMonths.isEmpty() || logEntries >= MAX_LOG_ENTRIES) {
+                checkpoint();
+            }
+        } catch (IOException e) {
+            // The totals in memory have the changes, so writing their months at a checkpoint saves them.
+            updateFailures.increment();
+            for (Group group : delta.keySet()) {
+                unsavedMonths.add(YearMonth.from(group.date()));
+            }
+        }
+    }
+
+    // The copy that made a change to a shared order file logged it here itself, and caughtUp() reads it.
+    @Override
+    public void ordersChangedElsewhere(LocalDate date, Collection<Orders> removed, Collection<Orders> added) {
+    }
+
+    private static void apply(Map<Group, Sums> groups, LocalDate date, Orders order, int sign) {
+        Group group = new Group(date, order.getState(), order.getProductType());
+        Sums sums = groups.computeIfAbsent(group, g -> new Sums());
+        sums.add(order, sign);
+        if (sums.isZero()) {
+            groups.remove(group);
+        }
+    }
+
+    // Adds each group's change to the totals in memory. Caller holds lock.
+    private void add(Map<Group, Sums> delta) {
+        for (Map.Entry<Group, Sums> change : delta.entrySet()) {
+            YearMonth month = YearMonth.from(change.getKey().date());
+            Map<Group, Sums> groups = months.computeIfAbsent(month, m -> new HashMap<>());
+            Sums sums = groups.computeIfAbsent(change.getKey(), g -> new Sums());
+            sums.add(change.getValue());
+            if (sums.isZero()) {
+                groups.remove(change.getKey());
+            }
+            changedMonths.add(month);
+        }
+    }
+
+    // ----------------------- VERIFY ------------------------
+
+    @Override
+    public List<AggregateDrift> verify(boolean repair) throws PersistenceException {
+        List<AggregateDrift> drift = new ArrayList<>();
+        try {
+            locked(() -> {
+                NavigableMap<YearMonth, Map<Group, Sums>> recounted = recount(null);
+
+                Set<YearMonth> driftedMonths = new HashSet<>();
+                Set<YearMonth> allMonths = new HashSet<>(months.keySet());
+                allMonths.addAll(recounted.keySet());
+                for (YearMonth month : allMonths) {
+                    Map<Group, Sums> stored = months.getOrDefault(month, Map.of());
+                    Map<Group, Sums> counted = recounted.getOrDefault(month, Map.of());
+                    Set<Group> groups = new HashSet<>(stored.keySet());
+                    groups.addAll(counted.keySet());
+                    for (Group group : groups) {
+                        Sums storedSums = stored.get(group);
+                        Sums countedSums = counted.get(group);
+                        if (storedSums == null || !storedSums.equals(countedSums)) {
+                            drift.add(new AggregateDrift(group.date(), group.state(), group.productType(),
+                                    storedSums == null ? null : storedSums.toTotals(),
+                                    countedSums == null ? null : countedSums.toTotals()));
+                            driftedMonths.add(month);
+                        }
+                    }
+                }
+
+                if (repair) {
+                    months = recounted;
+                    changedMonths.addAll(driftedMonths);
+                    try {
+                        checkpoint();
+                    } catch (IOException e) {
+                        unsavedMonths.addAll(driftedMonths);
+                        throw new PersistenceException("Could not save the recounted order totals.", e);
+                    }
+                }
+            });
+        } catch (IOException e) {
+            throw new PersistenceException("Could not lock the order totals.", e);
+        }
+        drift.sort(Comparator.comparing(d -> new Group(d.date(), d.state(), d.productType()), GROUP_ORDER));
+        return drift;
+    }
+
+    // ----------------------- LOADING ------------------------
+
+    /**
+     * Brings the totals in memory up to date with the files, which other copies sharing them may have changed:
+     * the first time by loading them, after that by adding the lines appended to the log since, or by loading
+     * them again if another copy has checkpointed meanwhile. Then takes in this copy's queued changes.
+     * Caller holds lock and the lock file.
+     */
+    private void caughtUp() throws PersistenceException {
+        try {
+            if (months == null) {
+                load();
+            } else if (!Long.valueOf(generation).equals(logGeneration())) {
+                load();
+            } else if (log.size() > logLength) {
+                readLog(Map.of());
+            }
+        } catch (IOException e) {
+            months = null;
+            throw new PersistenceException("Could not load the order totals.", e);
+        } catch (PersistenceException e) {
+            months = null;
+            throw e;
+        }
+        takeInQueued();
+    }
+
+    /**
+     * Reads every month file and replays the log, or counts the orders if the totals have never been saved.
+     * Months whose changes only the totals in memory held are counted again and written straight away. The
+     * order Dao already holds every change queued for the months counted, so those are dropped.
+     */
+    private void load() throws IOException, PersistenceException {
+        months = null;
+        changedMonths.clear();
+        if (!Files.exists(logFile)) {
+            // The log is only created once every month has been written, so a count cut short starts again.
+            closeLog();
+            pending.takeAll();
+            NavigableMap<YearMonth, Map<Group, Sums>> counted = recount(null);
+            months = counted;
+            generation = 1;
+            changedMonths.addAll(counted.keySet());
+            checkpoint();
+            return;
+        }
+        openLog();
+
+        NavigableMap<YearMonth, Map<Group, Sums>> read = new TreeMap<>();
+        Map<YearMonth, Long> written = new HashMap<>();
+        long newest = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(aggregateFolder,
+                FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            for (Path file : files) {
+                YearMonth month = monthOf(file);
+                if (month != null) {
+                    Map<Group, Sums> groups = new HashMap<>();
+                    long fileGeneration = readMonth(file, groups);
+                    written.put(month, fileGeneration);
+                    newest = Math.max(newest, fileGeneration);
+                    if (!groups.isEmpty()) {
+                        read.put(month, groups);
+                    }
+                }
+            }
+        }
+        months = read;
+
+        // A log with no generation line was being started when a checkpoint was cut short, after every month
+        // had been written, so it holds nothing and a new generation starts after the newest month.
+        Long logGeneration = logGeneration();
+        if (logGeneration == null) {
+            generation = newest + 1;
+            startLog();
+        } else {
+            generation = logGeneration;
+            logLength = lineLength(generationLine());
+            logEntries = 0;
+            readLog(written);
+        }
+
+        if (!unsavedMonths.isEmpty()) {
+            List<Map<Group, Sums>> queued = pending.takeAll();
+            queued.removeIf(change -> change.keySet().stream()
+                    .anyMatch(group -> unsavedMonths.contains(YearMonth.from(group.date()))));
+            pending.putBack(queued);
+            NavigableMap<YearMonth, Map<Group, Sums>> recounted = recount(unsavedMonths);
+            for (YearMonth month : unsavedMonths) {
+                Map<Group, Sums> groups = recounted.get(month);
+                if (groups == null) {
+                    months.remove(month);
+                } else {
+                    months.put(month, groups);
+                }
+                changedMonths.add(month);
+            }
+            checkpoint();
+        }
+    }
+
+    /**
+     * Adds the complete lines appended to the log since logLength, apart from those of months whose files were
+     * written in this generation already. A line that cannot be read can only be the last, cut short by a
+     * crash, and is cut off so the next line appended is not hidden behind it. Caller holds the lock file.
+     */
+    private void readLog(Map<YearMonth, Long> written) throws IOException {
+        long size = log.size();
+        ByteBuffer bytes = ByteBuffer.allocate((int) (size - logLength));
+        while (bytes.hasRemaining() && log.read(bytes, logLength + bytes.position()) > 0) {
+            // keep reading
+        }
+        byte[] data = bytes.array();
+        Map<Group, Sums> delta = new HashMap<>();
+        int lineStart = 0;
+        for (int i = 0; i < bytes.position(); i++) {
+            if (data[i] != '\n') {
+                continue;
+            }
+            Map.Entry<Group, Sums> change = parseLine(new String(data, lineStart, i - lineStart,
+                    StandardCharsets.UTF_8));
+            if (change == null) {
+                break;
+            }
+            if (written.getOrDefault(YearMonth.from(change.getKey().date()), 0L) < generation) {
+                delta.merge(change.getKey(), change.getValue(), Sums::plus);
+            }
+            logEntries++;
+            lineStart = i + 1;
+        }
+        add(delta);
+        logLength += lineStart;
+        if (logLength < size) {
+            log.truncate(logLength);
+        }
+    }
+
+    // Counts the orders the order Dao holds from scratch. Only the given months, if any are given.
+    private NavigableMap<YearMonth, Map<Group, Sums>> recount(Set<YearMonth> only) throws PersistenceException {
+        NavigableMap<YearMonth, Map<Group, Sums>> counted = new TreeMap<>();
+        OrderDao orders = orderDao.getObject();
+        if (only == null) {
+            count(orders.streamAllOrders(), counted);
+        } else {
+            for (YearMonth month : only) {
+                count(orders.streamOrdersBetween(month.atDay(1), month.atEndOfMonth()), counted);
+            }
+        }
+        counted.values().removeIf(Map::isEmpty);
+        return counted;
+    }
+
+    private static void count(Stream<DailyOrders> days, Map<YearMonth, Map<Group, Sums>> counted)
+            throws PersistenceException {
+        try (days) {
+            days.forEach(day -> {
+                Map<Group, Sums> groups = counted.computeIfAbsent(YearMonth.from(day.date()), m -> new HashMap<>());
+                for (Orders order : day.orders()) {
+                    apply(groups, day.date(), order, 1);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw new PersistenceException("Could not read the orders to count.", e.getCause());
+        }
+    }
+
+    // ----------------------- CHECKPOINT ------------------------
+
+    /**
+     * Rewrites every month changed since the last checkpoint, stamped with the current generation, then starts
+     * the log again under the next one. A month left with no orders is written empty first and only deleted
+     * once the new log has started, so its old file can never pick the old log's lines up again. Caller holds
+     * lock.
+     */
+    private void checkpoint() throws IOException {
+        List<YearMonth> emptied = new ArrayList<>();
+        for (YearMonth month : changedMonths) {
+            Map<Group, Sums> groups = months.get(month);
+            if (groups == null || groups.isEmpty()) {
+                months.remove(month);
+                emptied.add(month);
+            }
+            writeMonth(month, groups == null ? Map.of() : groups);
+        }
+
+        generation++;
+        startLog();
+        changedMonths.clear();
+        unsavedMonths.clear();
+
+        for (YearMonth month : emptied) {
+            Files.deleteIfExists(monthFile(month));
+        }
+    }
+
+    // ----------------------- FILES ------------------------
+
+    // Opens the log for reading and writing, creating it if needed. Caller holds lock.
+    private void openLog() throws IOException {
+        closeLog();
+        log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+    }
+
+    private void closeLog() throws IOException {
+        if (log != null) {
+            FileChannel open = log;
+            log = null;
+            open.close();
+        }
+    }
+
+    // Empties the log and writes the current generation as its first line, forced to disk. Caller holds lock.
+    private void startLog() throws IOException {
+        if (log == null) {
+            openLog();
+        }
+        log.truncate(0);
+        String first = generationLine();
+        write(first + "\n", 0);
+        log.force(true);
+        logLength = lineLength(first);
+        logEntries = 0;
+    }
+
+    private String generationLine() {
+        return GENERATION + DELIMITER + generation;
+    }
+
+    // The generation on the log's first line, or null if it has none yet.
+    private Long logGeneration() throws IOException {
+        ByteBuffer start = ByteBuffer.allocate(64);
+        while (start.hasRemaining() && log.read(start, start.position()) > 0) {
+            // keep reading
+        }
+        String text = new String(start.array(), 0, start.position(), StandardCharsets.UTF_8);
+        int end = text.indexOf('\n');
+        return end < 0 ? null : generationOf(text.substring(0, end));
+    }
+
+    // Appends one line per group to the log. A write that fails part way is cut off again, so the lines after it
+    // are not hidden behind a torn one. Caller holds lock and the lock file.
+    private void appendToLog(Map<Group, Sums> delta) throws IOException {
+        StringBuilder lines = new StringBuilder();
+        for (Map.Entry<Group, Sums> change : delta.entrySet()) {
+            lines.append(line(change.getKey(), change.getValue())).append('\n');
+        }
+        byte[] bytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            write(bytes, logLength);
+        } catch (IOException e) {
+            try {
+                log.truncate(logLength);
+            } catch (IOException ignored) {
+                // the torn line is cut off by the next copy to read the log
+            }
+            throw e;
+        }
+        logLength += bytes.length;
+        logEntries += delta.size();
+    }
+
+    private void write(String text, long position) throws IOException {
+        write(text.getBytes(StandardCharsets.UTF_8), position);
+    }
+
+    private void write(byte[] bytes, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            position += log.write(buffer, position);
+        }
+    }
+
+    // Bytes taken by one line of the log, including its newline.
+    private static long lineLength(String line) {
+        return line.getBytes(StandardCharsets.UTF_8).length + 1;
+    }
+
+    // Reads one month file into groups and returns the generation it was written in, 0 for files from before
+    // generations were recorded. Skips any line that cannot be read; verify() will then report that group.
+    private static long readMonth(Path file, Map<Group, Sums> groups) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String first = reader.readLine();
+            Long fileGeneration = generationOf(first);
+            if (fileGeneration != null) {
+                reader.readLine(); // header
+            }
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Map.Entry<Group, Sums> group = parseLine(line);
+                if (group != null) {
+                    groups.put(group.getKey(), group.getValue());
+                }
+            }
+            return fileGeneration == null ? 0 : fileGeneration;
+        }
+    }
+
+    // Rewrites one month through a temp file forced to disk, then renames it into place. Caller holds lock.
+    private void writeMonth(YearMonth month, Map<Group, Sums> groups) throws IOException {
+        Path target = monthFile(month);
+        List<Group> sorted = new ArrayList<>(groups.keySet());
+        sorted.sort(GROUP_ORDER);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            PrintWriter out = new PrintWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1));
+            out.println(generationLine());
+            out.println(HEADER);
+            for (Group group : sorted) {
+                out.println(line(group, groups.get(group)));
+            }
+            out.flush();
+            if (out.checkError()) {
+                throw new IOException("Write failed for " + temp);
+            }
+            channel.force(true);
+        }
+        DurableFiles.replace(temp, target);
+    }
+
+    private Path monthFile(YearMonth month) {
+        return aggregateFolder.resolve(FILE_PREFIX + month.format(MONTH_FORMAT) + FILE_SUFFIX);
+    }
+
+    private static YearMonth monthOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return YearMonth.parse(name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()),
+                    MONTH_FORMAT);
+        } catch (DateTimeParseException | StringIndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    // The generation on a "Generation,n" line, or null if the line is not one.
+    private static Long generationOf(String line) {
+        if (line == null || !line.startsWith(GENERATION + DELIMITER)) {
+            return null;
+        }
+        try {
+            return Long.parseLong(line.substring(GENERATION.length() + DELIMITER.length()));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // One group and its sums, the same layout in the month files and the log.
+    private static String line(Group group, Sums sums) {
+        return group.date().format(DATE_FORMAT) + DELIMITER + group.state() + DELIMITER
+                + group.productType() + DELIMITER + sums.orders + DELIMITER + decimal(sums.area)
+                + DELIMITER + decimal(sums.materialCost) + DELIMITER + decimal(sums.laborCost)
+                + DELIMITER + decimal(sums.tax) + DELIMITER + decimal(sums.total);
+    }
+
+    // The group and sums on one line, or null if the line cannot be read.
+    private static Map.Entry<Group, Sums> parseLine(String line) {
+        String[] fields = line.split(DELIMITER, -1);
+        if (fields.length != 9) {
+            return null;
+        }
+        try {
+            Sums sums = new Sums();
+            sums.orders = Long.parseLong(fields[3]);
+            sums.area = hundredths(new BigDecimal(fields[4]));
+            sums.materialCost = hundredths(new BigDecimal(fields[5]));
+            sums.laborCost = hundredths(new BigDecimal(fields[6]));
+            sums.tax = hundredths(new BigDecimal(fields[7]));
+            sums.total = hundredths(new BigDecimal(fields[8]));
+            return Map.entry(new Group(LocalDate.parse(fields[0], DATE_FORMAT), fields[1], fields[2]), sums);
+        } catch (NumberFormatException | ArithmeticException | DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Called by Spring on shutdown. The changes still queued are taken in, then every changed month is written
+     * so the next start reads no log.
+     */
+    @Override
+    public void destroy() throws IOException, InterruptedException {
+        pending.close();
+        synchronized (lock) {
+            if (months == null) {
+                return; // never loaded
+            }
+            try {
+                locked(this::checkpoint);
+            } catch (PersistenceException e) {
+                throw new IOException("Could not save the order totals.", e);
+            } finally {
+                closeLog();
+                months = null;
+            }
+        }
+    }
+
+    // ----------------------- HELPER METHODS ------------------------
+
+    // Rounded the same way marshallOrder() writes the value to the order file.
+    private static long hundredths(BigDecimal value) {
+        return value == null ? 0 : value.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    private static BigDecimal decimal(long hundredths) {
+        return BigDecimal.valueOf(hundredths, 2);
+    }
+
+    // Mutable totals for one group, all amounts in hundredths.
+    private static final class Sums {
+
+        long orders;
+        long area;
+        long materialCost;
+        long laborCost;
+        long tax;
+        long total;
+
+        void add(Orders order, int sign) {
+            orders += sign;
+            area += sign * hundredths(order.getArea());
+            materialCost += sign * hundredths(order.getMaterialCost());
+            laborCost += sign * hundredths(order.getLaborCost());
+            tax += sign * hundredths(order.getTax());
+            total += sign * hundredths(order.getTotal());
+        }
+
+        void add(Sums other) {
+            orders += other.orders;
+            area += other.area;
+            materialCost += other.materialCost;
+            laborCost += other.laborCost;
+            tax += other.tax;
+            total += other.total;
+        }
+
+        static Sums plus(Sums first, Sums second) {
+            first.add(second);
+            return first;
+        }
+
+        boolean isZero() {
+            return orders == 0 && area == 0 && materialCost == 0 && laborCost == 0 && tax == 0 && total == 0;
+        }
+
+        OrderTotals toTotals() {
+            return new OrderTotals(orders, decimal(area), decimal(materialCost), decimal(laborCost), decimal(tax),
+                    decimal(total));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Sums other)) {
+                return false;
+            }
+            return orders == other.orders && area == other.area && materialCost == other.materialCost
+                    && laborCost == other.laborCost && tax == other.tax && total == other.total;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(orders * 31 + total);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.sg.flooringmastery.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Changes reported to a listener that keeps files of its own, waiting to be taken in. The order Dao reports a
+ * change while it holds the date's lock, so queueing it there lets the Dao go on without waiting for the
+ * listener's own locks and writes. A background thread then calls drain, which takes everything queued so far
+ * in one go, and the listener takes whatever is still queued itself before it answers a query, so a query in
+ * this process always sees the changes made before it.
+ */
+final class ChangeQueue<T> {
+
+    private final ConcurrentLinkedDeque<T> changes = new ConcurrentLinkedDeque<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable drain;
+    private final ExecutorService worker;
+
+    ChangeQueue(String threadName, Runnable drain) {
+        this.drain = drain;
+        this.worker = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Queues one change and makes sure a drain runs after it.
+    void add(T change) {
+        changes.add(change);
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                worker.execute(() -> {
+                    scheduled.set(false);
+                    drain.run();
+                });
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false); // closed, the listener takes it in as it closes
+            }
+        }
+    }
+
+    boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    // Everything queued so far, oldest first.
+    List<T> takeAll() {
+        List<T> taken = new ArrayList<>();
+        T change;
+        while ((change = changes.poll()) != null) {
+            taken.add(change);
+        }
+        return taken;
+    }
+
+    // Puts changes that could not be taken in back at the front, to be tried again with the next drain.
+    void putBack(List<T> taken) {
+        for (int i = taken.size() - 1; i >= 0; i--) {
+            changes.addFirst(taken.get(i));
+        }
+    }
+
+    // Stops the background thread once the drain it is running, if any, has finished.
+    void close() throws InterruptedException {
+        worker.shutdown();
+        worker.awaitTermination(1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,305 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.model.Orders;
+
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Day snapshot that stores its orders column by column instead of as Orders objects.
+ * Order numbers are an int[] kept sorted for binary search, every BigDecimal field is a long[] of unscaled
+ * values with a byte[] of their scales, and State and ProductType are short codes into a dictionary shared by
+ * every date, since they repeat the same handful of values. Orders objects are built only when a caller asks
+ * for them, with every value exactly as it was stored: an area of 200 comes back as 200, not 200.00.
+ * A day holding a value that cannot be stored exactly this way, one of more than 18 digits, is kept as an
+ * ObjectDayOrders instead so nothing is ever rounded in memory.
+ */
+final class ColumnarDayOrders implements DayOrders {
+
+    // Index of each BigDecimal field in the decimals columns.
+    private static final int TAX_RATE = 0;
+    private static final int AREA = 1;
+    private static final int COST_PER_SQUARE_FOOT = 2;
+    private static final int LABOR_COST_PER_SQUARE_FOOT = 3;
+    private static final int MATERIAL_COST = 4;
+    private static final int LABOR_COST = 5;
+    private static final int TAX = 6;
+    private static final int TOTAL = 7;
+    private static final int DECIMAL_COLUMNS = 8;
+
+    // Longest unscaled value that always fits in a long.
+    private static final int MAX_DIGITS = 18;
+    private static final short NO_CODE = -1;
+
+    private static final Dictionary DICTIONARY = new Dictionary();
+
+    static final ColumnarDayOrders EMPTY = allocate(0);
+
+    private final int[] orderNumbers;
+    private final String[] customerNames;
+    private final short[] states;
+    private final short[] productTypes;
+    private final long[][] decimals;
+    private final byte[][] scales;
+
+    private ColumnarDayOrders(int[] orderNumbers, String[] customerNames, short[] states, short[] productTypes,
+                              long[][] decimals, byte[][] scales) {
+        this.orderNumbers = orderNumbers;
+        this.customerNames = customerNames;
+        this.states = states;
+        this.productTypes = productTypes;
+        this.decimals = decimals;
+        this.scales = scales;
+    }
+
+    // Encodes the orders into columns, or falls back to an ObjectDayOrders if any of them cannot be encoded.
+    static DayOrders of(Collection<Orders> orders) {
+        List<Orders> sorted = new ArrayList<>(orders);
+        sorted.sort(Comparator.comparingInt(Orders::getOrderNumber));
+
+        int rows = 0;
+        ColumnarDayOrders day = allocate(sorted.size());
+        for (Orders order : sorted) {
+            if (rows > 0 && day.orderNumbers[rows - 1] == order.getOrderNumber()) {
+                rows--; // a later duplicate replaces the earlier one, as it would in a map
+            }
+            if (!day.encode(rows, order)) {
+                return ObjectDayOrders.of(orders);
+            }
+            rows++;
+        }
+        return rows == sorted.size() ? day : day.truncated(rows);
+    }
+
+    // ----------------------- READS ------------------------
+
+    @Override
+    public Orders get(int orderNumber) {
+        int row = Arrays.binarySearch(orderNumbers, orderNumber);
+        return row < 0 ? null : decode(row);
+    }
+
+    @Override
+    public boolean contains(int orderNumber) {
+        return Arrays.binarySearch(orderNumbers, orderNumber) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return orderNumbers.length;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return orderNumbers.length == 0;
+    }
+
+    @Override
+    public int maxOrderNumber() {
+        return orderNumbers.length == 0 ? 0 : orderNumbers[orderNumbers.length - 1];
+    }
+
+    // A read only view that builds each Orders as it is reached, so writing a file never holds them all at once.
+    @Override
+    public Collection<Orders> values() {
+        return new AbstractList<>() {
+            @Override
+            public Orders get(int row) {
+                return decode(row);
+            }
+
+            @Override
+            public int size() {
+                return orderNumbers.length;
+            }
+        };
+    }
+
+    @Override
+    public List<Orders> list() {
+        List<Orders> orders = new ArrayList<>(orderNumbers.length);
+        for (int row = 0; row < orderNumbers.length; row++) {
+            orders.add(decode(row));
+        }
+        return orders;
+    }
+
+    // ----------------------- CHANGES ------------------------
+
+    @Override
+    public DayOrders with(Orders order) {
+        int row = Arrays.binarySearch(orderNumbers, order.getOrderNumber());
+        ColumnarDayOrders copy;
+        if (row >= 0) {
+            copy = truncated(orderNumbers.length);
+        } else {
+            row = -row - 1;
+            copy = inserted(row);
+        }
+        if (!copy.encode(row, order)) {
+            return ObjectDayOrders.of(values()).with(order);
+        }
+        return copy;
+    }
+
+    // Re-encodes the whole day; of() keeps the last of any repeated order number, so added orders win.
+    @Override
+    public DayOrders withAll(Collection<Orders> added) {
+        List<Orders> merged = new ArrayList<>(orderNumbers.length + added.size());
+        merged.addAll(values());
+        merged.addAll(added);
+        return of(merged);
+    }
+
+    @Override
+    public DayOrders without(int orderNumber) {
+        int row = Arrays.binarySearch(orderNumbers, orderNumber);
+        if (row < 0) {
+            return this;
+        }
+        ColumnarDayOrders copy = allocate(orderNumbers.length - 1);
+        copyRows(this, 0, copy, 0, row);
+        copyRows(this, row + 1, copy, row, orderNumbers.length - row - 1);
+        return copy;
+    }
+
+    // A copy of the first rows rows.
+    private ColumnarDayOrders truncated(int rows) {
+        ColumnarDayOrders copy = allocate(rows);
+        copyRows(this, 0, copy, 0, rows);
+        return copy;
+    }
+
+    // A copy with an empty row opened up at the given index.
+    private ColumnarDayOrders inserted(int row) {
+        ColumnarDayOrders copy = allocate(orderNumbers.length + 1);
+        copyRows(this, 0, copy, 0, row);
+        copyRows(this, row, copy, row + 1, orderNumbers.length - row);
+        return copy;
+    }
+
+    private static void copyRows(ColumnarDayOrders source, int sourceRow, ColumnarDayOrders target, int targetRow,
+                                 int rows) {
+        System.arraycopy(source.orderNumbers, sourceRow, target.orderNumbers, targetRow, rows);
+        System.arraycopy(source.customerNames, sourceRow, target.customerNames, targetRow, rows);
+        System.arraycopy(source.states, sourceRow, target.states, targetRow, rows);
+        System.arraycopy(source.productTypes, sourceRow, target.productTypes, targetRow, rows);
+        for (int column = 0; column < DECIMAL_COLUMNS; column++) {
+            System.arraycopy(source.decimals[column], sourceRow, target.decimals[column], targetRow, rows);
+            System.arraycopy(source.scales[column], sourceRow, target.scales[column], targetRow, rows);
+        }
+    }
+
+    private static ColumnarDayOrders allocate(int rows) {
+        return new ColumnarDayOrders(new int[rows], new String[rows], new short[rows], new short[rows],
+                new long[DECIMAL_COLUMNS][rows], new byte[DECIMAL_COLUMNS][rows]);
+    }
+
+    // ----------------------- ENCODING ------------------------
+
+    // Writes one order into a row of this (not yet shared) snapshot. Returns false if it cannot be held exactly.
+    private boolean encode(int row, Orders order) {
+        short state = DICTIONARY.encode(order.getState());
+        short productType = DICTIONARY.encode(order.getProductType());
+        if (state == Dictionary.FULL || productType == Dictionary.FULL
+                || !encodeDecimal(row, TAX_RATE, order.getTaxRate())
+                || !encodeDecimal(row, AREA, order.getArea())
+                || !encodeDecimal(row, COST_PER_SQUARE_FOOT, order.getCostPerSquareFoot())
+                || !encodeDecimal(row, LABOR_COST_PER_SQUARE_FOOT, order.getLaborCostPerSquareFoot())
+                || !encodeDecimal(row, MATERIAL_COST, order.getMaterialCost())
+                || !encodeDecimal(row, LABOR_COST, order.getLaborCost())
+                || !encodeDecimal(row, TAX, order.getTax())
+                || !encodeDecimal(row, TOTAL, order.getTotal())) {
+            return false;
+        }
+
+        orderNumbers[row] = order.getOrderNumber();
+        customerNames[row] = order.getCustomerName();
+        states[row] = state;
+        productTypes[row] = productType;
+        return true;
+    }
+
+    // Stores a value as its unscaled digits and its scale. Nulls and values too long for a long are refused.
+    private boolean encodeDecimal(int row, int column, BigDecimal value) {
+        if (value == null || value.precision() > MAX_DIGITS
+                || value.scale() < Byte.MIN_VALUE || value.scale() > Byte.MAX_VALUE) {
+            return false;
+        }
+        decimals[column][row] = value.unscaledValue().longValue();
+        scales[column][row] = (byte) value.scale();
+        return true;
+    }
+
+    private BigDecimal decodeDecimal(int row, int column) {
+        return BigDecimal.valueOf(decimals[column][row], scales[column][row]);
+    }
+
+    private Orders decode(int row) {
+        Orders order = new Orders();
+        order.setOrderNumber(orderNumbers[row]);
+        order.setCustomerName(customerNames[row]);
+        order.setState(DICTIONARY.decode(states[row]));
+        order.setTaxRate(decodeDecimal(row, TAX_RATE));
+        order.setProductType(DICTIONARY.decode(productTypes[row]));
+        order.setArea(decodeDecimal(row, AREA));
+        order.setCostPerSquareFoot(decodeDecimal(row, COST_PER_SQUARE_FOOT));
+        order.setLaborCostPerSquareFoot(decodeDecimal(row, LABOR_COST_PER_SQUARE_FOOT));
+        order.setMaterialCost(decodeDecimal(row, MATERIAL_COST));
+        order.setLaborCost(decodeDecimal(row, LABOR_COST));
+        order.setTax(decodeDecimal(row, TAX));
+        order.setTotal(decodeDecimal(row, TOTAL));
+        return order;
+    }
+
+    /**
+     * Assigns each distinct string a short code. Codes are never reused or removed, so a code read from any
+     * snapshot always decodes to the same string. Looking up a known string takes no lock.
+     */
+    private static final class Dictionary {
+
+        static final short FULL = Short.MIN_VALUE;
+
+        private final Map<String, Short> codes = new ConcurrentHashMap<>();
+        private volatile String[] strings = new String[16];
+        private int count;
+
+        short encode(String value) {
+            if (value == null) {
+                return NO_CODE;
+            }
+            Short code = codes.get(value);
+            return code != null ? code : add(value);
+        }
+
+        private synchronized short add(String value) {
+            Short code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            if (count > Short.MAX_VALUE) {
+                return FULL;
+            }
+
+            String[] current = strings;
+            if (count == current.length) {
+                current = Arrays.copyOf(current, Math.min(current.length * 2, Short.MAX_VALUE + 1));
+            }
+            current[count] = value;
+            strings = current; // publish the string before its code can be seen
+            codes.put(value, (short) count);
+            return (short) count++;
+        }
+
+        String decode(short code) {
+            return code == NO_CODE ? null : strings[code];
+        }
+    }
+}
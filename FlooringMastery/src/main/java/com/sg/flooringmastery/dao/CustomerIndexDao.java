@@ -0,0 +1,21 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.model.OrderRef;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+
+import java.util.List;
+
+/**
+ * This interface allows the ServiceLayer to find a customer's orders across every date without reading
+ * every order file. Names are matched ignoring case and extra spaces. Results are in date then order number order.
+ */
+
+public interface CustomerIndexDao {
+
+    List<OrderRef> findByName(String customerName) throws PersistenceException;
+
+    List<OrderRef> findByNamePrefix(String prefix) throws PersistenceException;
+
+    // Throws the index away and builds it again from the orders the order Dao holds.
+    void rebuild() throws PersistenceException;
+}
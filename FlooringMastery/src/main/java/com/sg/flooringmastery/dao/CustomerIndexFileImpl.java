@@ -0,0 +1,620 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.metrics.Counter;
+import com.sg.flooringmastery.metrics.MetricsRegistry;
+import com.sg.flooringmastery.model.DailyOrders;
+import com.sg.flooringmastery.model.OrderRef;
+import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.stream.Stream;
+
+/**
+ * Keeps an index from customer name to every order placed under that name, so a customer's history can be
+ * found without opening every order file.
+ *
+ * The index lives in memory as a sorted map from normalised name (lower case, single spaces) to a sorted
+ * array of postings, each posting being a date and order number packed into one long. A sorted map makes
+ * a prefix search a single range scan. On disk it is a snapshot file plus a log of the changes made since,
+ * one line per posting added or removed. Replaying a posting that is already applied changes nothing, so
+ * the log can safely be replayed over a snapshot that already includes some of it.
+ *
+ * The order Dao reports every change as it happens (see OrderChangeListener) while it holds the date's lock,
+ * so ordersChanged only queues the change (see ChangeQueue). A background thread then applies what has queued
+ * up and appends it to the log with one write forced to disk, and a search takes in anything still queued
+ * first. A change still queued when the program is killed is lost from the index only, like one whose log
+ * write had not reached the disk.
+ *
+ * Several copies of the program sharing SampleFileData share the index files too, and take turns on them
+ * through the lock file customers.lock. Each copy logs its own changes only, and before it writes or searches
+ * adds the lines other copies have logged since, or reads the snapshot again if another copy has rewritten it.
+ * A search that finds nothing new to read and nothing queued goes ahead without the locks. The index is loaded
+ * when the application starts, and built from the orders the order Dao holds if there is no snapshot, whichever
+ * profile provides them. rebuild() builds it again the same way, while changes made in the meantime are kept
+ * and applied afterwards. The index is derived data: if it is ever out of step with the orders, e.g. after a
+ * crash or a failed update (see the customers.index.updateFailures counter), rebuild it.
+ */
+@Repository
+public class CustomerIndexFileImpl implements CustomerIndexDao, OrderChangeListener,
+        SmartInitializingSingleton, DisposableBean {
+
+    private static final Path INDEX_FOLDER = Paths.get("SampleFileData/Index");
+    private static final String SNAPSHOT_NAME = "customers.idx";
+    private static final String LOG_NAME = "customers.log";
+    private static final String LOCK_NAME = "customers.lock";
+
+    private static final int MAGIC = 0x43494458; // "CIDX"
+    private static final int VERSION = 1;
+    private static final String SEPARATOR = "|";
+
+    // Number of logged changes after which the snapshot is rewritten and the log emptied.
+    private static final int MAX_LOG_ENTRIES = Integer.getInteger("flooring.customerIndex.maxLogEntries", 100_000);
+
+    private final Path snapshotFile;
+    private final Path logFile;
+    private final Path lockFile;
+
+    // Readers use the current map without locking. Every change holds lock and the lock file. logLength is how
+    // much of the log, every copy's lines included, the map holds, and snapshot the snapshot it was read from.
+    private volatile ConcurrentSkipListMap<String, long[]> postings;
+    private final Object lock = new Object();
+    private FileChannel log;
+    private volatile long logLength;
+    private volatile SnapshotStamp snapshot;
+    private int logEntries;
+
+    // Changes that could not be logged, and snapshots that could not be read and were built again instead.
+    private Counter updateFailures = new Counter();
+    private Counter unreadableSnapshots = new Counter();
+
+    // Changes that arrive while rebuild() is reading the orders, applied to the new index when it is done.
+    private List<String> changesDuringRebuild;
+
+    // Log lines for the changes reported but not yet taken in.
+    private final ChangeQueue<String> pending = new ChangeQueue<>("customer-index-writer", this::drain);
+
+    // The order Dao the index is built from. Looked up when first needed, as it is created after its listeners.
+    private ObjectFactory<OrderDao> orderDao;
+
+    public CustomerIndexFileImpl() {
+        this(INDEX_FOLDER);
+    }
+
+    public CustomerIndexFileImpl(Path indexFolder) {
+        this.snapshotFile = indexFolder.resolve(SNAPSHOT_NAME);
+        this.logFile = indexFolder.resolve(LOG_NAME);
+        this.lockFile = indexFolder.resolve(LOCK_NAME);
+    }
+
+    @Autowired(required = false)
+    public void setMetrics(MetricsRegistry metrics) {
+        updateFailures = metrics.counter("customers.index.updateFailures");
+        unreadableSnapshots = metrics.counter("customers.index.unreadableSnapshots");
+    }
+
+    @Autowired
+    public void setOrderDao(ObjectFactory<OrderDao> orderDao) {
+        this.orderDao = orderDao;
+    }
+
+    // Loads the index once every bean is created, since building it reads the order Dao. If that fails the
+    // application still starts, and the first search tries again.
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            current();
+        } catch (PersistenceException e) {
+            // reported by the first search that needs the index
+        }
+    }
+
+    // Runs body holding lock and the lock file, once the index is caught up with every change reported so far.
+    private void locked(FileLocks.Locked body) throws IOException, PersistenceException {
+        synchronized (lock) {
+            FileLocks.withLock(lockFile, () -> {
+                caughtUp();
+                body.run();
+            });
+        }
+    }
+
+    // ----------------------- SEARCH ------------------------
+
+    @Override
+    public List<OrderRef> findByName(String customerName) throws PersistenceException {
+        long[] found = current().get(normalise(customerName));
+        return found == null ? List.of() : toRefs(found);
+    }
+
+    @Override
+    public List<OrderRef> findByNamePrefix(String prefix) throws PersistenceException {
+        String from = normalise(prefix);
+        Collection<long[]> matches = current().subMap(from, true, from + Character.MAX_VALUE, false).values();
+
+        int total = 0;
+        for (long[] match : matches) {
+            total += match.length;
+        }
+        long[] merged = new long[total];
+        int at = 0;
+        for (long[] match : matches) {
+            int length = Math.min(match.length, merged.length - at); // the map may have grown since counting
+            System.arraycopy(match, 0, merged, at, length);
+            at += length;
+        }
+        merged = Arrays.copyOf(merged, at);
+        Arrays.sort(merged);
+        return toRefs(merged);
+    }
+
+    // ----------------------- CHANGES ------------------------
+
+    // Only queues the change, the order Dao holds the date's lock.
+    @Override
+    public void ordersChanged(LocalDate date, Collection<Orders> removed, Collection<Orders> added) {
+        for (Orders order : removed) {
+            pending.add(line(false, normalise(order.getCustomerName()), posting(date, order.getOrderNumber())));
+        }
+        for (Orders order : added) {
+            pending.add(line(true, normalise(order.getCustomerName()), posting(date, order.getOrderNumber())));
+        }
+    }
+
+    // Run by the queue's thread. A failure leaves the changes queued for the next drain or search.
+    private void drain() {
+        try {
+            locked(() -> {
+            });
+        } catch (IOException | PersistenceException e) {
+            updateFailures.increment();
+        }
+    }
+
+    // The copy that made a change to a shared order file logged it here itself, and caughtUp() reads it.
+    @Override
+    public void ordersChangedElsewhere(LocalDate date, Collection<Orders> removed, Collection<Orders> added) {
+    }
+
+    // Adding a posting that is there already, or removing one that is not, changes nothing.
+    @Override
+    public boolean idempotent() {
+        return true;
+    }
+
+    private static String line(boolean add, String name, long posting) {
+        return (add ? "+" : "-") + SEPARATOR + posting + SEPARATOR + name;
+    }
+
+    /**
+     * Applies the queued changes and appends them to the log with one write. If the write fails they are put
+     * back in the queue. Applying them again later changes nothing, so the next drain only retries the write.
+     * Caller holds lock and the lock file.
+     */
+    private void takeInQueued() throws IOException {
+        List<String> lines = pending.takeAll();
+        if (lines.isEmpty()) {
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            replay(postings, line);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(line);
+            }
+            text.append(line).append('\n');
+        }
+        try {
+            appendToLog(text);
+        } catch (IOException e) {
+            pending.putBack(lines);
+            throw e;
+        }
+        logEntries += lines.size();
+        if (logEntries >= MAX_LOG_ENTRIES) {
+            writeSnapshot();
+        }
+    }
+
+    // Adds or removes one posting, copying the name's array rather than changing it, since readers may hold it.
+    private static void apply(ConcurrentSkipListMap<String, long[]> index, boolean add, String name, long posting) {
+        index.compute(name, (key, current) -> {
+            long[] existing = current == null ? new long[0] : current;
+            int at = Arrays.binarySearch(existing, posting);
+            if (add == at >= 0) {
+                return current; // already in the wanted state
+            }
+            if (add) {
+                int insert = -at - 1;
+                long[] copy = new long[existing.length + 1];
+                System.arraycopy(existing, 0, copy, 0, insert);
+                copy[insert] = posting;
+                System.arraycopy(existing, insert, copy, insert + 1, existing.length - insert);
+                return copy;
+            }
+            if (existing.length == 1) {
+                return null;
+            }
+            long[] copy = new long[existing.length - 1];
+            System.arraycopy(existing, 0, copy, 0, at);
+            System.arraycopy(existing, at + 1, copy, at, existing.length - at - 1);
+            return copy;
+        });
+    }
+
+    // Applies one log line, ignoring a line cut short by a crash.
+    private static void replay(ConcurrentSkipListMap<String, long[]> index, String line) {
+        String[] fields = line.split("\\|", 3);
+        if (fields.length != 3 || !(fields[0].equals("+") || fields[0].equals("-"))) {
+            return;
+        }
+        try {
+            apply(index, fields[0].equals("+"), fields[2], Long.parseLong(fields[1]));
+        } catch (NumberFormatException e) {
+            // torn line, nothing after it was written
+        }
+    }
+
+    // ----------------------- LOADING AND BUILDING ------------------------
+
+    /**
+     * The index, caught up with the changes every copy has logged. Checks the queue, the log's size and the
+     * snapshot's stamp first, and only takes the locks when there is something to take in, or to load the index.
+     */
+    private ConcurrentSkipListMap<String, long[]> current() throws PersistenceException {
+        ConcurrentSkipListMap<String, long[]> current = postings;
+        try {
+            if (current != null && pending.isEmpty() && logFileSize() == logLength
+                    && Objects.equals(SnapshotStamp.of(snapshotFile), snapshot)) {
+                return current;
+            }
+            locked(() -> {
+            });
+            return postings;
+        } catch (IOException e) {
+            throw new PersistenceException("Could not read the customer index.", e);
+        }
+    }
+
+    /**
+     * Loads the index the first time, after that adds the lines other copies have appended to the log since, or
+     * loads it again if another copy has rewritten the snapshot, which empties the log. Then takes in this
+     * copy's queued changes. Lines read here are changes too, so a rebuild running meanwhile gets them as well.
+     * Caller holds lock and the lock file.
+     */
+    private void caughtUp() throws IOException, PersistenceException {
+        if (postings == null || logFileSize() < logLength
+                || !Objects.equals(SnapshotStamp.of(snapshotFile), snapshot)) {
+            load();
+        } else if (logFileSize() > logLength) {
+            readLog(postings);
+        }
+        takeInQueued();
+    }
+
+    // Reads the snapshot and replays the log, or builds from the order Dao if there is no usable snapshot.
+    // Caller holds lock and the lock file.
+    private void load() throws PersistenceException {
+        // The lines logged since the snapshot were not kept, so a rebuild running now has to start again.
+        changesDuringRebuild = null;
+        postings = null;
+        try {
+            snapshot = SnapshotStamp.of(snapshotFile);
+            ConcurrentSkipListMap<String, long[]> index = readSnapshot();
+            if (index == null) {
+                postings = build();
+                writeSnapshot();
+                return;
+            }
+            openLog();
+            logLength = 0;
+            logEntries = 0;
+            readLog(index);
+            postings = index;
+        } catch (IOException e) {
+            throw new PersistenceException("Could not load the customer index.", e);
+        }
+    }
+
+    @Override
+    public void rebuild() throws PersistenceException {
+        try {
+            while (true) {
+                locked(() -> changesDuringRebuild = new ArrayList<>());
+                ConcurrentSkipListMap<String, long[]> fresh = build();
+                synchronized (lock) {
+                    locked(() -> {
+                        if (changesDuringRebuild != null) {
+                            for (String line : changesDuringRebuild) {
+                                replay(fresh, line);
+                            }
+                            postings = fresh;
+                            writeSnapshot();
+                        }
+                    });
+                    if (postings == fresh) {
+                        return;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new PersistenceException("Could not rebuild the customer index.", e);
+        } finally {
+            synchronized (lock) {
+                changesDuringRebuild = null;
+            }
+        }
+    }
+
+    // Reads every order the order Dao holds, one date at a time, and collects the postings for each name.
+    private ConcurrentSkipListMap<String, long[]> build() throws PersistenceException {
+        Map<String, PostingList> collected = new HashMap<>();
+        try (Stream<DailyOrders> days = orderDao.getObject().streamAllOrders()) {
+            days.forEach(day -> {
+                for (Orders order : day.orders()) {
+                    collected.computeIfAbsent(normalise(order.getCustomerName()), name -> new PostingList())
+                            .add(posting(day.date(), order.getOrderNumber()));
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw new PersistenceException("Could not read the orders to index.", e.getCause());
+        }
+
+        ConcurrentSkipListMap<String, long[]> index = new ConcurrentSkipListMap<>();
+        for (Map.Entry<String, PostingList> name : collected.entrySet()) {
+            index.put(name.getKey(), name.getValue().sorted());
+        }
+        return index;
+    }
+
+    // ----------------------- FILES ------------------------
+
+    // Returns null when there is no snapshot or it cannot be read, so the caller builds from the order Dao.
+    private ConcurrentSkipListMap<String, long[]> readSnapshot() {
+        if (!Files.exists(snapshotFile)) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(snapshotFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            ConcurrentSkipListMap<String, long[]> index = new ConcurrentSkipListMap<>();
+            int names = in.readInt();
+            for (int i = 0; i < names; i++) {
+                String name = in.readUTF();
+                long[] found = new long[in.readInt()];
+                for (int j = 0; j < found.length; j++) {
+                    found[j] = in.readLong();
+                }
+                index.put(name, found);
+            }
+            return index;
+        } catch (IOException e) {
+            unreadableSnapshots.increment();
+            return null;
+        }
+    }
+
+    // Saves the whole index through a temp file forced to disk, then empties the log. Caller must hold lock.
+    private void writeSnapshot() throws IOException {
+        Path temp = snapshotFile.resolveSibling(SNAPSHOT_NAME + ".tmp");
+        ConcurrentSkipListMap<String, long[]> index = postings;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(index.size());
+            for (Map.Entry<String, long[]> name : index.entrySet()) {
+                out.writeUTF(name.getKey());
+                out.writeInt(name.getValue().length);
+                for (long posting : name.getValue()) {
+                    out.writeLong(posting);
+                }
+            }
+            out.flush();
+            channel.force(true);
+        }
+        DurableFiles.replace(temp, snapshotFile);
+        snapshot = SnapshotStamp.of(snapshotFile);
+        if (log == null) {
+            openLog();
+        }
+        log.truncate(0);
+        logLength = 0;
+        logEntries = 0;
+    }
+
+    // Opens the log for reading other copies' lines and writing this one's, creating it if needed.
+    private void openLog() throws IOException {
+        if (log != null) {
+            log.close();
+        }
+        Files.createDirectories(logFile.getParent());
+        log = FileChannel.open(logFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    private long logFileSize() throws IOException {
+        try {
+            return Files.size(logFile);
+        } catch (NoSuchFileException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Replays the complete lines after logLength onto index. A line with no newline can only have been cut short
+     * by a crash, since lines are only written holding the lock file, and is cut off so the next line appended
+     * is not joined to it. Caller holds lock and the lock file.
+     */
+    private void readLog(ConcurrentSkipListMap<String, long[]> index) throws IOException {
+        long size = log.size();
+        ByteBuffer bytes = ByteBuffer.allocate((int) (size - logLength));
+        while (bytes.hasRemaining() && log.read(bytes, logLength + bytes.position()) > 0) {
+            // keep reading
+        }
+        byte[] data = bytes.array();
+        int lineStart = 0;
+        for (int i = 0; i < bytes.position(); i++) {
+            if (data[i] == '\n') {
+                String line = new String(data, lineStart, i - lineStart, StandardCharsets.UTF_8);
+                replay(index, line);
+                if (changesDuringRebuild != null) {
+                    changesDuringRebuild.add(line);
+                }
+                logEntries++;
+                lineStart = i + 1;
+            }
+        }
+        logLength += lineStart;
+        if (logLength < size) {
+            log.truncate(logLength);
+        }
+    }
+
+    // Appends lines at the end of the log and forces them to disk. Caller holds lock and the lock file.
+    private void appendToLog(StringBuilder lines) throws IOException {
+        if (log == null) {
+            openLog();
+        }
+        long end = log.size();
+        ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        long position = end;
+        try {
+            while (buffer.hasRemaining()) {
+                position += log.write(buffer, position);
+            }
+            log.force(false);
+        } catch (IOException e) {
+            try {
+                log.truncate(end);
+            } catch (IOException ignored) {
+                // the torn line is cut off by the next copy to read the log
+            }
+            throw e;
+        }
+        logLength = position;
+    }
+
+    // Called by Spring on shutdown, after the order Dao, so the next start reads one snapshot instead of
+    // replaying the log. The changes still queued are taken in first.
+    @Override
+    public void destroy() throws IOException, InterruptedException {
+        pending.close();
+        synchronized (lock) {
+            try {
+                if (postings != null) {
+                    locked(this::writeSnapshot);
+                }
+            } catch (PersistenceException e) {
+                throw new IOException("Could not save the customer index.", e);
+            } finally {
+                if (log != null) {
+                    log.close();
+                }
+            }
+        }
+    }
+
+    // ----------------------- HELPER METHODS ------------------------
+
+    // Lower case with runs of spaces collapsed, so "  Ada   LOVELACE " finds "Ada Lovelace".
+    static String normalise(String name) {
+        if (name == null) {
+            return "";
+        }
+        StringBuilder normalised = new StringBuilder(name.length());
+        boolean space = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (Character.isWhitespace(c)) {
+                space = normalised.length() > 0;
+            } else {
+                if (space) {
+                    normalised.append(' ');
+                    space = false;
+                }
+                normalised.append(c);
+            }
+        }
+        return normalised.toString().toLowerCase(Locale.ROOT);
+    }
+
+    // Packs a date and order number into one long that sorts by date, then order number.
+    private static long posting(LocalDate date, int orderNumber) {
+        return (date.toEpochDay() << 32) | (orderNumber & 0xFFFFFFFFL);
+    }
+
+    private static List<OrderRef> toRefs(long[] found) {
+        List<OrderRef> refs = new ArrayList<>(found.length);
+        for (long posting : found) {
+            refs.add(new OrderRef(LocalDate.ofEpochDay(posting >> 32), (int) posting));
+        }
+        return refs;
+    }
+
+    // Growable array of postings used while building.
+    private static final class PostingList {
+
+        private long[] values = new long[2];
+        private int size;
+
+        void add(long posting) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = posting;
+        }
+
+        long[] sorted() {
+            long[] result = Arrays.copyOf(values, size);
+            Arrays.sort(result);
+            return result;
+        }
+    }
+
+    // Identifies one version of the snapshot. It is only ever replaced by renaming a new file over it.
+    private record SnapshotStamp(Object fileKey, FileTime modified, long size) {
+
+        // The stamp of the snapshot as it is now, or null if there is none.
+        static SnapshotStamp of(Path file) throws IOException {
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return new SnapshotStamp(attributes.fileKey(), attributes.lastModifiedTime(), attributes.size());
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.metrics.Counter;
+import com.sg.flooringmastery.metrics.MetricsRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches data files such as Products.txt and Taxes.txt and tells the caching Daos when one changes,
+ * so they can reload without checking the file on every lookup.
+ * One background thread serves every watched file. A change is only passed on once the file has settled: no
+ * events for -Dflooring.watch.settleMillis (default 250) and the same size and modification time at two checks
+ * that far apart, so a file still being written is not read half way through.
+ * A file that cannot be watched is counted in files.watch.failures, and its Dao keeps the copy it loaded.
+ */
+@Component
+public class DataFileWatcher implements DisposableBean {
+
+    private static final long SETTLE_MILLIS = Long.getLong("flooring.watch.settleMillis", 250);
+    private static final long SETTLE_NANOS = TimeUnit.MILLISECONDS.toNanos(SETTLE_MILLIS);
+
+    private final Map<Path, List<Runnable>> listeners = new ConcurrentHashMap<>();
+    private final Set<Path> watchedFolders = new HashSet<>();
+    private WatchService watchService;
+
+    // Files that could not be watched, so their caches will not see changes until the application restarts.
+    private Counter watchFailures = new Counter();
+
+    // Changed files whose listeners have not been told yet, and how each looked when last checked.
+    // Only used by the watcher thread.
+    private final Map<Path, Settling> settling = new HashMap<>();
+
+    // size is -1 until the first check after the last event.
+    private record Settling(long checkedNanos, FileTime modified, long size) {
+    }
+
+    @Autowired(required = false)
+    public void setMetrics(MetricsRegistry metrics) {
+        watchFailures = metrics.counter("files.watch.failures");
+    }
+
+    // Calls onChange whenever the file is created, modified or replaced. Returns false if it cannot be watched.
+    public synchronized boolean watch(Path file, Runnable onChange) {
+        Path target = file.toAbsolutePath().normalize();
+        listeners.computeIfAbsent(target, k -> new CopyOnWriteArrayList<>()).add(onChange);
+
+        try {
+            if (watchService == null) {
+                watchService = FileSystems.getDefault().newWatchService();
+                Thread thread = new Thread(this::processEvents, "data-file-watcher");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            Path folder = target.getParent();
+            if (watchedFolders.add(folder)) {
+                folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+            return true;
+        } catch (IOException e) {
+            watchFailures.increment();
+            return false;
+        }
+    }
+
+    private void processEvents() {
+        try {
+            while (true) {
+                WatchKey key = settling.isEmpty()
+                        ? watchService.take()
+                        : watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    Path folder = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            listeners.keySet().forEach(this::changed);
+                            continue;
+                        }
+                        Path changed = folder.resolve((Path) event.context());
+                        if (listeners.containsKey(changed)) {
+                            changed(changed);
+                        }
+                    }
+                    key.reset();
+                }
+                notifySettled();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // shutting down
+        }
+    }
+
+    // Starts the file's quiet period again.
+    private void changed(Path file) {
+        settling.put(file, new Settling(System.nanoTime(), null, -1));
+    }
+
+    /**
+     * Tells the listeners of each file that has had no events for the settle time and has kept its size and
+     * modification time since the last check. A file still changing is checked again one settle time later.
+     * A file that has gone is dropped, as creating it again is a new event.
+     */
+    private void notifySettled() {
+        long now = System.nanoTime();
+        Iterator<Map.Entry<Path, Settling>> files = settling.entrySet().iterator();
+        while (files.hasNext()) {
+            Map.Entry<Path, Settling> file = files.next();
+            Settling last = file.getValue();
+            if (now - last.checkedNanos() < SETTLE_NANOS) {
+                continue;
+            }
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(file.getKey(), BasicFileAttributes.class);
+            } catch (IOException e) {
+                files.remove();
+                continue;
+            }
+            if (attributes.size() == last.size() && attributes.lastModifiedTime().equals(last.modified())) {
+                files.remove();
+                listeners.get(file.getKey()).forEach(Runnable::run);
+            } else {
+                file.setValue(new Settling(now, attributes.lastModifiedTime(), attributes.size()));
+            }
+        }
+    }
+
+    @Override
+    public synchronized void destroy() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.model.Orders;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable snapshot of one date's orders, sorted by order number.
+ * Changes produce a new snapshot instead of modifying this one, so a reader that holds a snapshot can keep
+ * using it while a writer publishes the next version.
+ * How the orders are held in memory is up to the implementation, see OrderLayout.
+ */
+interface DayOrders {
+
+    Orders get(int orderNumber);
+
+    boolean contains(int orderNumber);
+
+    int size();
+
+    boolean isEmpty();
+
+    // Highest order number held, or 0 when there are none.
+    int maxOrderNumber();
+
+    // The orders in order number order. Implementations may build the Orders objects as they are iterated.
+    Collection<Orders> values();
+
+    // A fresh list the caller is free to change.
+    List<Orders> list();
+
+    DayOrders with(Orders order);
+
+    // Same as calling with() for each order in turn, but copies the snapshot only once.
+    DayOrders withAll(Collection<Orders> orders);
+
+    DayOrders without(int orderNumber);
+}
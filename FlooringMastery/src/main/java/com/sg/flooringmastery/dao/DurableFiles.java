@@ -0,0 +1,71 @@
+package com.sg.flooringmastery.dao;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Replaces a file with a new version so that after a crash or power loss the file holds either the old version
+ * or the new one in full. The caller writes the new version to a temporary file beside it and forces that to
+ * disk before calling replace, which renames it over the old file and then forces the folder, so the rename
+ * itself is on disk before the caller carries on. write() does all of that for a text file.
+ */
+final class DurableFiles {
+
+    private DurableFiles() {
+    }
+
+    // Writes the lines of a text file. E is anything else the source of the lines can throw.
+    @FunctionalInterface
+    interface Lines<E extends Exception> {
+        void writeTo(PrintWriter out) throws IOException, E;
+    }
+
+    // Writes target as UTF-8 text through a temp file beside it, forced to disk, then renames it over target.
+    static <E extends Exception> void write(Path target, Lines<E> lines) throws IOException, E {
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            PrintWriter out = new PrintWriter(new BufferedWriter(
+                    Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1)));
+            lines.writeTo(out);
+            out.flush();
+            if (out.checkError()) {
+                throw new IOException("Write failed for " + temp);
+            }
+            channel.force(true);
+        }
+        replace(temp, target);
+    }
+
+    // Renames temp over target, atomically where the file system can, then forces target's folder to disk.
+    static void replace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        forceFolder(target.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Forces a folder's entries, e.g. a rename into it, to disk where the platform allows it. Linux and macOS do
+     * through a channel opened on the folder. Windows cannot open a folder as a file and some file systems refuse
+     * to sync one; there the rename is left to the operating system, as the file it points to is on disk already.
+     */
+    static void forceFolder(Path folder) {
+        try (FileChannel channel = FileChannel.open(folder, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // not supported here, see above
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Operating system file locks, which several copies of the program sharing SampleFileData use to take turns.
+ * A lock is held on a separate, empty lock file rather than the data file itself, because the data files are
+ * replaced by renaming a new file over them and a lock on the old file would not cover the new one.
+ * Lock files are left in place afterwards, deleting one while another process waits on it would let two
+ * processes in at once.
+ */
+final class FileLocks {
+
+    private FileLocks() {
+    }
+
+    // Work done while a lock file is held.
+    @FunctionalInterface
+    interface Locked {
+        void run() throws IOException, PersistenceException;
+    }
+
+    // Runs body while holding the exclusive lock on lockFile, see lock(), and releases it however body ends.
+    static void withLock(Path lockFile, Locked body) throws IOException, PersistenceException {
+        FileChannel channel = lock(lockFile);
+        try (channel) {
+            body.run();
+        }
+    }
+
+    /**
+     * Waits for the exclusive lock on lockFile, creating the file and its folder if needed. Closing the returned
+     * channel releases the lock. Within one JVM the caller must also hold a lock of its own for the same file,
+     * as the operating system lock is held by the whole process and a second lock on it from the same JVM fails.
+     */
+    static FileChannel lock(Path lockFile) throws IOException {
+        Files.createDirectories(lockFile.toAbsolutePath().getParent());
+        FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            channel.lock();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Takes the exclusive lock on lockFile if no other process holds it, without waiting, and returns the channel
+     * to close to release it, or null if the lock is taken. A lock this JVM already holds counts as taken.
+     */
+    static FileChannel tryLock(Path lockFile) throws IOException {
+        Files.createDirectories(lockFile.toAbsolutePath().getParent());
+        FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (channel.tryLock() != null) {
+                return channel;
+            }
+        } catch (OverlappingFileLockException e) {
+            // held elsewhere in this JVM
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        channel.close();
+        return null;
+    }
+}
@@ -0,0 +1,93 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.model.Orders;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+/**
+ * Day snapshot that keeps each order as the Orders object it was given, in a map keyed by order number.
+ */
+final class ObjectDayOrders implements DayOrders {
+
+    static final ObjectDayOrders EMPTY = new ObjectDayOrders(new TreeMap<>());
+
+    private final NavigableMap<Integer, Orders> orders;
+
+    private ObjectDayOrders(NavigableMap<Integer, Orders> orders) {
+        this.orders = Collections.unmodifiableNavigableMap(orders);
+    }
+
+    static ObjectDayOrders of(Collection<Orders> orders) {
+        NavigableMap<Integer, Orders> map = new TreeMap<>();
+        for (Orders order : orders) {
+            map.put(order.getOrderNumber(), order);
+        }
+        return new ObjectDayOrders(map);
+    }
+
+    @Override
+    public Orders get(int orderNumber) {
+        return orders.get(orderNumber);
+    }
+
+    @Override
+    public boolean contains(int orderNumber) {
+        return orders.containsKey(orderNumber);
+    }
+
+    @Override
+    public int size() {
+        return orders.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return orders.isEmpty();
+    }
+
+    @Override
+    public int maxOrderNumber() {
+        return orders.isEmpty() ? 0 : orders.lastKey();
+    }
+
+    @Override
+    public Collection<Orders> values() {
+        return orders.values();
+    }
+
+    @Override
+    public List<Orders> list() {
+        return new ArrayList<>(orders.values());
+    }
+
+    @Override
+    public DayOrders with(Orders order) {
+        NavigableMap<Integer, Orders> copy = new TreeMap<>(orders);
+        copy.put(order.getOrderNumber(), order);
+        return new ObjectDayOrders(copy);
+    }
+
+    @Override
+    public DayOrders withAll(Collection<Orders> added) {
+        NavigableMap<Integer, Orders> copy = new TreeMap<>(orders);
+        for (Orders order : added) {
+            copy.put(order.getOrderNumber(), order);
+        }
+        return new ObjectDayOrders(copy);
+    }
+
+    @Override
+    public DayOrders without(int orderNumber) {
+        if (!orders.containsKey(orderNumber)) {
+            return this;
+        }
+        NavigableMap<Integer, Orders> copy = new TreeMap<>(orders);
+        copy.remove(orderNumber);
+        return new ObjectDayOrders(copy);
+    }
+}
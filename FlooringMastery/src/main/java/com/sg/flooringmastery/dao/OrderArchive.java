@@ -0,0 +1,190 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.model.Orders;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Works with the whole folder of daily order files rather than one date at a time.
+ * Finds which dates have a file with a single directory listing, and parses many files in parallel on a
+ * bounded pool while still handing them back in date order. Only a small window of files is held in memory
+ * at once, so memory use does not grow with the number of files in the folder.
+ */
+public final class OrderArchive {
+
+    private static final DateTimeFormatter FILE_DATE_FORMAT = DateTimeFormatter.ofPattern("MMddyyyy");
+    private static final String FILE_PREFIX = "Orders_";
+
+    private final Path folder;
+    private final int parallelism;
+
+    public OrderArchive(Path folder) {
+        this(folder, Runtime.getRuntime().availableProcessors());
+    }
+
+    public OrderArchive(Path folder, int parallelism) {
+        this.folder = folder;
+        this.parallelism = Math.max(1, parallelism);
+    }
+
+    // Called with each date's orders, sorted by order number, in date order.
+    @FunctionalInterface
+    public interface DateConsumer {
+        void accept(LocalDate date, List<Orders> orders) throws IOException;
+    }
+
+    // Lists every order file in the folder, in either format, keyed and sorted by the date in its name.
+    public NavigableMap<LocalDate, Path> listOrderFiles() throws IOException {
+        NavigableMap<LocalDate, Path> files = new TreeMap<>();
+        if (!Files.isDirectory(folder)) {
+            return files;
+        }
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(folder, FILE_PREFIX + "*")) {
+            for (Path file : stream) {
+                LocalDate date = dateOf(file);
+                if (date != null) {
+                    files.merge(date, file, OrderArchive::newer);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Picks which of two files for the same date holds its orders. Saving a date deletes its file in the other
+     * format, so both only exist if that delete was interrupted, and then the one written last is current.
+     */
+    static Path newer(Path first, Path second) {
+        try {
+            return Files.getLastModifiedTime(second).compareTo(Files.getLastModifiedTime(first)) > 0 ? second : first;
+        } catch (IOException e) {
+            return Files.exists(first) ? first : second;
+        }
+    }
+
+    /**
+     * Parses the given files on a pool of worker threads and passes each one to the consumer in date order.
+     * At most twice the pool size of files are parsed ahead of the consumer, which bounds memory use.
+     */
+    public void forEachDate(NavigableMap<LocalDate, Path> files, DateConsumer consumer) throws IOException {
+        try (DateReader reader = open(files)) {
+            while (reader.hasNext()) {
+                Map.Entry<LocalDate, List<Orders>> next = reader.next();
+                consumer.accept(next.getKey(), next.getValue());
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    // Same parsing as forEachDate(), but the caller pulls each date when it is ready for it.
+    public DateReader open(NavigableMap<LocalDate, Path> files) {
+        return new DateReader(files);
+    }
+
+    /**
+     * Hands back parsed files in date order as they are asked for, keeping the next few being parsed in the
+     * background. Read errors are thrown as UncheckedIOException. Must be closed to stop its threads.
+     */
+    public final class DateReader implements Iterator<Map.Entry<LocalDate, List<Orders>>>, AutoCloseable {
+
+        private final Iterator<Map.Entry<LocalDate, Path>> files;
+        private final ExecutorService pool;
+        private final Deque<Map.Entry<LocalDate, Future<List<Orders>>>> inFlight = new ArrayDeque<>();
+
+        private DateReader(NavigableMap<LocalDate, Path> files) {
+            this.files = files.entrySet().iterator();
+            this.pool = Executors.newFixedThreadPool(parallelism, r -> {
+                Thread thread = new Thread(r, "order-archive-reader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            fill();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !inFlight.isEmpty();
+        }
+
+        @Override
+        public Map.Entry<LocalDate, List<Orders>> next() {
+            Map.Entry<LocalDate, Future<List<Orders>>> next = inFlight.poll();
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            fill();
+            return Map.entry(next.getKey(), await(next));
+        }
+
+        @Override
+        public void close() {
+            pool.shutdownNow();
+        }
+
+        // Keeps twice the pool size of files queued, so the workers never wait on the reader.
+        private void fill() {
+            while (inFlight.size() < parallelism * 2 && files.hasNext()) {
+                Map.Entry<LocalDate, Path> file = files.next();
+                inFlight.add(Map.entry(file.getKey(), pool.submit(() -> readSorted(file.getValue()))));
+            }
+        }
+
+        private List<Orders> await(Map.Entry<LocalDate, Future<List<Orders>>> next) {
+            try {
+                return next.getValue().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new UncheckedIOException(new IOException("Interrupted while reading order files.", e));
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw new UncheckedIOException((IOException) e.getCause());
+                }
+                throw new UncheckedIOException(
+                        new IOException("Could not read order file for " + next.getKey(), e.getCause()));
+            }
+        }
+    }
+
+    private static List<Orders> readSorted(Path file) throws IOException {
+        List<Orders> orders = OrderFileFormat.of(file).read(file);
+        orders.sort(Comparator.comparingInt(Orders::getOrderNumber));
+        return orders;
+    }
+
+    // Returns the date encoded in an order file name, or null if the name does not follow the pattern.
+    static LocalDate dateOf(Path file) {
+        String name = file.getFileName().toString();
+        OrderFileFormat format = OrderFileFormat.of(file);
+        if (!name.startsWith(FILE_PREFIX) || format == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(name.substring(FILE_PREFIX.length(), name.length() - format.extension().length()),
+                    FILE_DATE_FORMAT);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.model.Orders;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Reads and writes the binary order file format. Every field has a fixed width, so a file is loaded with
+ * absolute reads from one buffer and no text is parsed. All numbers are big-endian.
+ *
+ *   header   int magic "FMOB", short version, short unused, int row count, int string count,
+ *            int string byte count, int CRC32 of everything after the header
+ *   strings  int[string count + 1] offsets into the string bytes, then the UTF-8 bytes of every string
+ *   rows     80 bytes each: int OrderNumber, then int CustomerName, State and ProductType as indexes into the
+ *            strings (-1 for none), then long hundredths for TaxRate, Area, CostPerSquareFoot,
+ *            LaborCostPerSquareFoot, MaterialCost, LaborCost, Tax and Total
+ *
+ * Each distinct string is stored once, so the few State and ProductType values cost almost nothing per row
+ * and decode to shared Strings. Amounts are rounded HALF_UP to 2 places, exactly as in the CSV format.
+ */
+final class OrderBinaryCodec {
+
+    private static final int MAGIC = 0x464D4F42; // "FMOB"
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 24;
+    private static final int ROW_BYTES = 80;
+    private static final int NO_STRING = -1;
+
+    private OrderBinaryCodec() {
+    }
+
+    // ----------------------- READING ------------------------
+
+    // Read into the heap rather than mapped, for the same reason as CSV files, see OrderFileParser.readBytes().
+    static List<Orders> read(Path file) throws IOException {
+        return decode(OrderFileParser.readBytes(file), file);
+    }
+
+    private static List<Orders> decode(ByteBuffer data, Path file) throws IOException {
+        int size = data.limit();
+        if (size < HEADER_BYTES || data.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary order file: " + file);
+        }
+        if (data.getShort(4) != VERSION) {
+            throw new IOException("Unsupported binary order file version " + data.getShort(4) + ": " + file);
+        }
+
+        int rows = data.getInt(8);
+        int strings = data.getInt(12);
+        int stringBytes = data.getInt(16);
+        long expected = HEADER_BYTES + 4L * (strings + 1) + stringBytes + (long) rows * ROW_BYTES;
+        if (rows < 0 || strings < 0 || stringBytes < 0 || expected != size) {
+            throw new IOException("Binary order file is truncated or damaged: " + file);
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data.slice(HEADER_BYTES, size - HEADER_BYTES));
+        if ((int) crc.getValue() != data.getInt(20)) {
+            throw new IOException("Binary order file failed its checksum: " + file);
+        }
+
+        int offsets = HEADER_BYTES;
+        int stringStart = offsets + 4 * (strings + 1);
+        String[] table = new String[strings];
+        byte[] scratch = new byte[64];
+        for (int i = 0; i < strings; i++) {
+            int from = data.getInt(offsets + 4 * i);
+            int length = data.getInt(offsets + 4 * (i + 1)) - from;
+            if (scratch.length < length) {
+                scratch = new byte[Math.max(length, scratch.length * 2)];
+            }
+            data.get(stringStart + from, scratch, 0, length);
+            table[i] = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+
+        int rowStart = stringStart + stringBytes;
+        List<Orders> orders = new ArrayList<>(rows);
+        for (int row = 0; row < rows; row++) {
+            int at = rowStart + row * ROW_BYTES;
+            Orders order = new Orders();
+            order.setOrderNumber(data.getInt(at));
+            order.setCustomerName(string(table, data.getInt(at + 4), file));
+            order.setState(string(table, data.getInt(at + 8), file));
+            order.setProductType(string(table, data.getInt(at + 12), file));
+            order.setTaxRate(BigDecimal.valueOf(data.getLong(at + 16), 2));
+            order.setArea(BigDecimal.valueOf(data.getLong(at + 24), 2));
+            order.setCostPerSquareFoot(BigDecimal.valueOf(data.getLong(at + 32), 2));
+            order.setLaborCostPerSquareFoot(BigDecimal.valueOf(data.getLong(at + 40), 2));
+            order.setMaterialCost(BigDecimal.valueOf(data.getLong(at + 48), 2));
+            order.setLaborCost(BigDecimal.valueOf(data.getLong(at + 56), 2));
+            order.setTax(BigDecimal.valueOf(data.getLong(at + 64), 2));
+            order.setTotal(BigDecimal.valueOf(data.getLong(at + 72), 2));
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    private static String string(String[] table, int index, Path file) throws IOException {
+        if (index == NO_STRING) {
+            return null;
+        }
+        if (index < 0 || index >= table.length) {
+            throw new IOException("Binary order file refers to a missing string: " + file);
+        }
+        return table[index];
+    }
+
+    // ----------------------- WRITING ------------------------
+
+    static void write(Path file, Collection<Orders> orders) throws IOException {
+        Map<String, Integer> indexes = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int[] stringBytes = {0};
+        int rows = 0;
+        for (Orders order : orders) {
+            intern(order.getCustomerName(), indexes, strings, stringBytes);
+            intern(order.getState(), indexes, strings, stringBytes);
+            intern(order.getProductType(), indexes, strings, stringBytes);
+            rows++;
+        }
+
+        long size = HEADER_BYTES + 4L * (strings.size() + 1) + stringBytes[0] + (long) rows * ROW_BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Too many orders for one binary order file: " + file);
+        }
+        ByteBuffer data = ByteBuffer.allocate((int) size);
+
+        data.putInt(MAGIC).putShort(VERSION).putShort((short) 0)
+                .putInt(rows).putInt(strings.size()).putInt(stringBytes[0]).putInt(0);
+        int offset = 0;
+        for (byte[] string : strings) {
+            data.putInt(offset);
+            offset += string.length;
+        }
+        data.putInt(offset);
+        for (byte[] string : strings) {
+            data.put(string);
+        }
+
+        for (Orders order : orders) {
+            data.putInt(order.getOrderNumber());
+            data.putInt(index(order.getCustomerName(), indexes));
+            data.putInt(index(order.getState(), indexes));
+            data.putInt(index(order.getProductType(), indexes));
+            data.putLong(hundredths(order.getTaxRate(), "TaxRate", order));
+            data.putLong(hundredths(order.getArea(), "Area", order));
+            data.putLong(hundredths(order.getCostPerSquareFoot(), "CostPerSquareFoot", order));
+            data.putLong(hundredths(order.getLaborCostPerSquareFoot(), "LaborCostPerSquareFoot", order));
+            data.putLong(hundredths(order.getMaterialCost(), "MaterialCost", order));
+            data.putLong(hundredths(order.getLaborCost(), "LaborCost", order));
+            data.putLong(hundredths(order.getTax(), "Tax", order));
+            data.putLong(hundredths(order.getTotal(), "Total", order));
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(data.slice(HEADER_BYTES, data.capacity() - HEADER_BYTES));
+        data.putInt(20, (int) crc.getValue());
+        data.flip();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (data.hasRemaining()) {
+                channel.write(data);
+            }
+            channel.force(true);
+        }
+    }
+
+    private static void intern(String value, Map<String, Integer> indexes, List<byte[]> strings, int[] bytes) {
+        if (value != null && !indexes.containsKey(value)) {
+            byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+            indexes.put(value, strings.size());
+            strings.add(encoded);
+            bytes[0] += encoded.length;
+        }
+    }
+
+    private static int index(String value, Map<String, Integer> indexes) {
+        return value == null ? NO_STRING : indexes.get(value);
+    }
+
+    private static long hundredths(BigDecimal value, String field, Orders order) throws IOException {
+        if (value == null) {
+            throw new IOException(field + " is missing for order " + order.getOrderNumber());
+        }
+        try {
+            return value.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+        } catch (ArithmeticException e) {
+            throw new IOException(field + " is too large for order " + order.getOrderNumber(), e);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.model.Orders;
+
+import java.time.LocalDate;
+import java.util.Collection;
+
+/**
+ * Told about every change OrderDaoFileImpl makes to a date's orders, e.g. to keep an index up to date.
+ * Any bean implementing this interface is registered with the order Dao automatically.
+ * Calls are made while the date's lock is held, so the changes to one date arrive in the order they were made.
+ * An edit, or an add that replaces an order with the same number, passes the old order as removed and the
+ * new one as added. Listeners must not throw; a listener that cannot keep up should repair itself later.
+ */
+public interface OrderChangeListener {
+
+    void ordersChanged(LocalDate date, Collection<Orders> removed, Collection<Orders> added);
+
+    /**
+     * Told about changes another copy of the program sharing the order folder made to a date, found when this
+     * copy reads the date's file again. By default they are taken in like any other change. A listener that
+     * keeps its data in files the copies share already has them from the copy that made them, and reads them
+     * from those files instead.
+     */
+    default void ordersChangedElsewhere(LocalDate date, Collection<Orders> removed, Collection<Orders> added) {
+        ordersChanged(date, removed, added);
+    }
+
+    /**
+     * Whether being told about a change it has already taken in leaves the listener as it was, as for an index
+     * that puts or deletes entries. After a crash the journal Dao replays its journal, whose changes listeners
+     * have mostly been told about already, and only tells the listeners that answer true.
+     * Listeners that add changes up, such as running totals, keep the default.
+     */
+    default boolean idempotent() {
+        return false;
+    }
+}
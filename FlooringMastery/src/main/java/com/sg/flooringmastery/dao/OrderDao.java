@@ -1,10 +1,16 @@
 package com.sg.flooringmastery.dao;
 
+import com.sg.flooringmastery.model.DailyOrders;
+import com.sg.flooringmastery.model.ExportSummary;
 import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.model.PreloadProgress;
 import com.sg.flooringmastery.service.exceptions.PersistenceException;
 
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * This interface allows for communication between the Order Dao and the ServiceLayer.
@@ -15,13 +21,39 @@ public interface OrderDao {
 
     void addOrder(LocalDate date, Orders order) throws PersistenceException;
 
+    // Adds many orders to one date and saves that date once, rather than once per order.
+    void addOrders(LocalDate date, Collection<Orders> orders) throws PersistenceException;
+
     void editOrder(LocalDate date, int orderNumber, Orders updatedOrder) throws PersistenceException;
 
     void removeOrder(LocalDate date, int orderNumber) throws PersistenceException;
 
     List<Orders> getOrdersByDate(LocalDate date) throws PersistenceException;
 
-    int generateNextOrderNumber(LocalDate date) throws PersistenceException;
+    // Every order dated from to to inclusive, in date then order number order.
+    List<Orders> getOrdersBetween(LocalDate from, LocalDate to) throws PersistenceException;
+
+    // The same orders one date at a time, read as the stream is consumed. Dates without orders are left out.
+    // Read errors surface as UncheckedIOException. The stream must be closed when finished with.
+    Stream<DailyOrders> streamOrdersBetween(LocalDate from, LocalDate to) throws PersistenceException;
+
+    // Every order held, streamed the same way, e.g. to count derived data such as totals again from scratch.
+    default Stream<DailyOrders> streamAllOrders() throws PersistenceException {
+        return streamOrdersBetween(LocalDate.of(1, 1, 1), LocalDate.of(9999, 12, 31));
+    }
 
     void writeFile() throws PersistenceException;
+
+    // While on, adds, edits and removes stay in memory until writeFile() is called, so many changes to one date
+    // are saved with one write. Anything not yet written is lost if the program is killed before then.
+    void setDeferredWrites(boolean deferred);
+
+    // Starts reading every date's orders into memory in the background and returns straight away.
+    // A lookup for a date that is still being read waits for that date only.
+    void startPreload() throws PersistenceException;
+
+    // How far the preload has got, or null if it was never started.
+    PreloadProgress getPreloadProgress();
+
+    ExportSummary exportAll(Path exportFile) throws PersistenceException;
 }
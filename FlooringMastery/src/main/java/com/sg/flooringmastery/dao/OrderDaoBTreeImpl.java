@@ -0,0 +1,408 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.dao.btree.BTree;
+import com.sg.flooringmastery.dao.btree.BufferPool;
+import com.sg.flooringmastery.dao.btree.PageFile;
+import com.sg.flooringmastery.metrics.MetricsRegistry;
+import com.sg.flooringmastery.model.DailyOrders;
+import com.sg.flooringmastery.model.ExportSummary;
+import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.model.PreloadProgress;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Order Dao that keeps every order in one file, in a B+tree keyed by date and then order number, instead of
+ * one CSV file per day. Looking up an order, changing one, or reading a range of dates touches only the
+ * pages on the way to those orders, however many orders there are, and a change rewrites just those pages.
+ * The most used pages are kept in memory by a buffer pool of -Dflooring.btree.bufferPages pages
+ * (4096 by default, 4 KB each).
+ *
+ * The store is built from the daily order files the first time it is opened. OrderStoreMigrator rebuilds
+ * it, or writes it back out as daily files for the tools that read those, e.g. verifying the totals.
+ * Lookups run side by side, and changes take turns. Enabled with -Dspring.profiles.active=btree
+ */
+@Repository
+@Primary
+@Profile("btree")
+public class OrderDaoBTreeImpl implements OrderDao, DisposableBean {
+
+    private static final Path STORE_FILE = Paths.get("SampleFileData/Store/orders.btree");
+    private static final Path ORDER_FOLDER = Paths.get("SampleFileData/Orders");
+    private static final int BUFFER_PAGES = Integer.getInteger("flooring.btree.bufferPages", 4096);
+    private static final DateTimeFormatter EXPORT_DATE_FORMAT = DateTimeFormatter.ofPattern("MM-dd-yyyy");
+
+    private final BufferPool pool;
+    private final BTree tree;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private volatile List<OrderChangeListener> changeListeners = List.of();
+    private volatile boolean deferredWrites;
+
+    public OrderDaoBTreeImpl() {
+        this(STORE_FILE, ORDER_FOLDER, BUFFER_PAGES);
+    }
+
+    // Lets tools and benchmarks use another store, built from orderFolder if it does not exist yet.
+    public OrderDaoBTreeImpl(Path storeFile, Path orderFolder, int bufferPages) {
+        try {
+            if (!Files.exists(storeFile)) {
+                OrderStoreMigrator.toStore(orderFolder, storeFile);
+            }
+            pool = new BufferPool(PageFile.open(storeFile), bufferPages);
+            tree = new BTree(pool);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open the order store " + storeFile + ". If it was "
+                    + "damaged, rebuild it with OrderStoreMigrator to-btree.", e);
+        }
+    }
+
+    @Autowired(required = false)
+    public void setChangeListeners(List<OrderChangeListener> listeners) {
+        this.changeListeners = List.copyOf(listeners);
+    }
+
+    // Reports the buffer pool's hit rate and how large the store is.
+    @Autowired(required = false)
+    public void setMetrics(MetricsRegistry metrics) {
+        metrics.gauge("orders.store.orders", tree::size);
+        metrics.gauge("orders.store.pages", () -> pool.file().pageCount());
+        metrics.gauge("orders.store.pool.pages", pool::size);
+        metrics.gauge("orders.store.pool.hits", pool::hits);
+        metrics.gauge("orders.store.pool.misses", pool::misses);
+        metrics.gauge("orders.store.pool.evictions", pool::evictions);
+        metrics.gauge("orders.store.pageWrites", pool::pageWrites);
+    }
+
+    // ------------------ CRUD OPERATIONS -------------------
+
+    @Override
+    public void addOrder(LocalDate date, Orders order) throws PersistenceException {
+        addOrders(date, List.of(order));
+    }
+
+    @Override
+    public void addOrders(LocalDate date, Collection<Orders> orders) throws PersistenceException {
+        lock.writeLock().lock();
+        try {
+            List<Orders> replaced = new ArrayList<>();
+            for (Orders order : orders) {
+                byte[] previous = tree.put(key(date, order.getOrderNumber()), encode(order));
+                if (previous != null) {
+                    replaced.add(decode(order.getOrderNumber(), previous));
+                }
+            }
+            notifyListeners(date, replaced, orders);
+            save();
+        } catch (IOException e) {
+            throw new PersistenceException("Could not save orders for " + date + ".", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void editOrder(LocalDate date, int orderNumber, Orders updatedOrder) throws PersistenceException {
+        lock.writeLock().lock();
+        try {
+            long key = key(date, orderNumber);
+            if (tree.get(key) == null) {
+                throw new PersistenceException("Order not found for editOrder().");
+            }
+            Orders previous = decode(orderNumber, tree.put(key, encode(updatedOrder)));
+            notifyListeners(date, List.of(previous), List.of(updatedOrder));
+            save();
+        } catch (IOException e) {
+            throw new PersistenceException("Could not save order " + orderNumber + " for " + date + ".", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void removeOrder(LocalDate date, int orderNumber) throws PersistenceException {
+        lock.writeLock().lock();
+        try {
+            byte[] removed = tree.remove(key(date, orderNumber));
+            if (removed != null) {
+                notifyListeners(date, List.of(decode(orderNumber, removed)), List.of());
+                save();
+            }
+        } catch (IOException e) {
+            throw new PersistenceException("Could not remove order " + orderNumber + " for " + date + ".", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void notifyListeners(LocalDate date, Collection<Orders> removed, Collection<Orders> added) {
+        for (OrderChangeListener listener : changeListeners) {
+            listener.ordersChanged(date, removed, added);
+        }
+    }
+
+    // ------------------ QUERIES -------------------
+
+    @Override
+    public List<Orders> getOrdersByDate(LocalDate date) throws PersistenceException {
+        return getOrdersBetween(date, date);
+    }
+
+    @Override
+    public List<Orders> getOrdersBetween(LocalDate from, LocalDate to) throws PersistenceException {
+        List<Orders> orders = new ArrayList<>();
+        if (to.isBefore(from)) {
+            return orders;
+        }
+        lock.readLock().lock();
+        try {
+            tree.scan(key(from, 0), key(to, Integer.MAX_VALUE), (key, value) -> {
+                orders.add(decode(orderNumberOf(key), value));
+                return true;
+            });
+        } catch (IOException e) {
+            throw new PersistenceException("Could not read orders from " + from + " to " + to + ".", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return orders;
+    }
+
+    /**
+     * Reads one date at a time as the stream is consumed, each with its own short scan, so changes can be
+     * made between dates. Each step finds the next date with orders straight from the tree, so empty dates in
+     * a long range cost nothing.
+     */
+    @Override
+    public Stream<DailyOrders> streamOrdersBetween(LocalDate from, LocalDate to) throws PersistenceException {
+        Iterator<DailyOrders> days = new Iterator<>() {
+            private LocalDate next = from;
+            private DailyOrders ahead;
+
+            @Override
+            public boolean hasNext() {
+                if (ahead == null && next != null && !next.isAfter(to)) {
+                    ahead = readNextDate(next, to);
+                    next = ahead == null ? null : ahead.date().plusDays(1);
+                }
+                return ahead != null;
+            }
+
+            @Override
+            public DailyOrders next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                DailyOrders day = ahead;
+                ahead = null;
+                return day;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(days,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    // The first date from from to to that has orders, with all of them, or null if there is none.
+    private DailyOrders readNextDate(LocalDate from, LocalDate to) {
+        List<Orders> orders = new ArrayList<>();
+        long[] day = {Long.MIN_VALUE};
+        lock.readLock().lock();
+        try {
+            tree.scan(key(from, 0), key(to, Integer.MAX_VALUE), (key, value) -> {
+                if (day[0] == Long.MIN_VALUE) {
+                    day[0] = key >> 32;
+                } else if (key >> 32 != day[0]) {
+                    return false;
+                }
+                orders.add(decode(orderNumberOf(key), value));
+                return true;
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return orders.isEmpty() ? null : new DailyOrders(LocalDate.ofEpochDay(day[0]), orders);
+    }
+
+    // ----------------------- SAVING ------------------------
+
+    // Writes every changed page and forces the file to disk. Pages are otherwise only written when a change is
+    // made without deferred writes, or when the buffer pool needs the room.
+    @Override
+    public void writeFile() throws PersistenceException {
+        lock.writeLock().lock();
+        try {
+            tree.sync();
+        } catch (IOException e) {
+            throw new PersistenceException("Could not save the order store.", e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void setDeferredWrites(boolean deferred) {
+        this.deferredWrites = deferred;
+    }
+
+    // Makes the change durable before it is acknowledged, as the other order Daos do. Caller holds the write lock.
+    private void save() throws IOException {
+        if (!deferredWrites) {
+            tree.sync();
+        }
+    }
+
+    // Nothing to preload: a lookup reads only the pages it needs, and the buffer pool keeps them.
+    @Override
+    public void startPreload() {
+    }
+
+    @Override
+    public PreloadProgress getPreloadProgress() {
+        return null;
+    }
+
+    /**
+     * Backs up every order into a single file in the same format as OrderDaoFileImpl.exportAll(), in date
+     * then order number order, with one scan of the tree.
+     */
+    @Override
+    public ExportSummary exportAll(Path exportFile) throws PersistenceException {
+        writeFile();
+        long start = System.nanoTime();
+        long[] rows = {0};
+        long[] lastDay = {Long.MIN_VALUE};
+        int[] dates = {0};
+
+        lock.readLock().lock();
+        try {
+            Files.createDirectories(exportFile.toAbsolutePath().getParent());
+            DurableFiles.write(exportFile, out -> {
+                out.println(OrderDaoFileImpl.HEADER + ",OrderDate");
+                tree.scan(Long.MIN_VALUE, Long.MAX_VALUE, (key, value) -> {
+                    if (key >> 32 != lastDay[0]) {
+                        lastDay[0] = key >> 32;
+                        dates[0]++;
+                    }
+                    out.println(OrderDaoFileImpl.marshallOrder(decode(orderNumberOf(key), value)) + ","
+                            + LocalDate.ofEpochDay(key >> 32).format(EXPORT_DATE_FORMAT));
+                    rows[0]++;
+                    return true;
+                });
+            });
+        } catch (IOException e) {
+            throw new PersistenceException("Could not export order data.", e);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return new ExportSummary(dates[0], rows[0], System.nanoTime() - start);
+    }
+
+    // Called by Spring on shutdown. Saves and closes the store, leaving it marked clean.
+    @Override
+    public void destroy() throws IOException {
+        lock.writeLock().lock();
+        try {
+            tree.close();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ----------------------- ENCODING ------------------------
+    // Key: the date's epoch day in the high 32 bits and the order number in the low 32 bits, so keys sort by
+    // date and then order number. Value: CustomerName, State and ProductType as a short length and UTF-8
+    // bytes, then TaxRate, Area, CostPerSquareFoot, LaborCostPerSquareFoot, MaterialCost, LaborCost, Tax and
+    // Total each as a long unscaled value and a byte scale, so they read back exactly as they were written.
+
+    static long key(LocalDate date, int orderNumber) {
+        return date.toEpochDay() << 32 | (orderNumber & 0xFFFFFFFFL);
+    }
+
+    private static int orderNumberOf(long key) {
+        return (int) key;
+    }
+
+    static byte[] encode(Orders order) throws PersistenceException {
+        byte[] customerName = bytes(order.getCustomerName());
+        byte[] state = bytes(order.getState());
+        byte[] productType = bytes(order.getProductType());
+        int size = 6 + customerName.length + state.length + productType.length + 8 * 9;
+        if (size > BTree.MAX_VALUE_BYTES) {
+            throw new PersistenceException("Order " + order.getOrderNumber() + " is too large to store.");
+        }
+
+        ByteBuffer value = ByteBuffer.allocate(size);
+        value.putShort((short) customerName.length).put(customerName);
+        value.putShort((short) state.length).put(state);
+        value.putShort((short) productType.length).put(productType);
+        for (BigDecimal amount : List.of(order.getTaxRate(), order.getArea(), order.getCostPerSquareFoot(),
+                order.getLaborCostPerSquareFoot(), order.getMaterialCost(), order.getLaborCost(), order.getTax(),
+                order.getTotal())) {
+            if (amount.unscaledValue().bitLength() > 63 || amount.scale() != (byte) amount.scale()) {
+                throw new PersistenceException("Order " + order.getOrderNumber() + " has an amount too large to "
+                        + "store: " + amount);
+            }
+            value.putLong(amount.unscaledValue().longValue()).put((byte) amount.scale());
+        }
+        return value.array();
+    }
+
+    static Orders decode(int orderNumber, byte[] bytes) {
+        ByteBuffer value = ByteBuffer.wrap(bytes);
+        Orders order = new Orders();
+        order.setOrderNumber(orderNumber);
+        order.setCustomerName(string(value));
+        order.setState(string(value));
+        order.setProductType(string(value));
+        order.setTaxRate(decimal(value));
+        order.setArea(decimal(value));
+        order.setCostPerSquareFoot(decimal(value));
+        order.setLaborCostPerSquareFoot(decimal(value));
+        order.setMaterialCost(decimal(value));
+        order.setLaborCost(decimal(value));
+        order.setTax(decimal(value));
+        order.setTotal(decimal(value));
+        return order;
+    }
+
+    private static byte[] bytes(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(ByteBuffer value) {
+        byte[] bytes = new byte[value.getShort()];
+        value.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static BigDecimal decimal(ByteBuffer value) {
+        return BigDecimal.valueOf(value.getLong(), value.get());
+    }
+}
@@ -1,158 +1,661 @@
 package com.sg.flooringmastery.dao;
 
+import com.sg.flooringmastery.metrics.Counter;
+import com.sg.flooringmastery.metrics.MetricsRegistry;
+import com.sg.flooringmastery.metrics.Timer;
+import com.sg.flooringmastery.model.DailyOrders;
+import com.sg.flooringmastery.model.ExportSummary;
 import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.model.PreloadProgress;
+import com.sg.flooringmastery.model.ResidencyStats;
 import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Repository;
 
 import java.io.*;
-import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * This class is responsible for managing all order data that’s saved in text files. It’s part of the Dao
  * layer and works behind the scenes to load, save, edit, and delete orders from files on disk.
+ * Several copies of the program can share the order folder: each date's file is rewritten under a lock file of
+ * its own, merging in whatever another copy saved since, and loaded dates are checked for newer files. What
+ * another copy changed is passed on to the listeners, see OrderChangeListener.ordersChangedElsewhere.
+ * It is the order Dao unless the journal, btree or jdbc profile picks another one. The journal Dao extends it,
+ * but @Profile is not inherited, so the subclass is governed by its own profile alone.
  */
 @Repository
+@Profile("!journal & !btree & !jdbc")
 public class OrderDaoFileImpl implements OrderDao {
 
     // Constants defined for path and delimiter as these do not change throughout this project.
     // Allows for easy changing if the path were to change.
-    private static final String ORDER_FOLDER = "SampleFileData/Orders";
+    private static final Path ORDER_FOLDER = Paths.get("SampleFileData/Orders");
     private static final String DELIMITER = ",";
+    static final String HEADER = "OrderNumber,CustomerName,State,TaxRate,ProductType,Area,CostPerSquareFoot,"
+            + "LaborCostPerSquareFoot,MaterialCost,LaborCost,Tax,Total";
+    private static final DateTimeFormatter FILE_DATE_FORMAT = DateTimeFormatter.ofPattern("MMddyyyy");
+    private static final DateTimeFormatter EXPORT_DATE_FORMAT = DateTimeFormatter.ofPattern("MM-dd-yyyy");
 
-    // Orders are read from the file to a HashMap as customerNumbers are unique.
-    private final Map<LocalDate, Map<Integer, Orders>> allOrders = new HashMap<>();
+    // Dates that fall within this many days of each other never share a lock.
+    private static final int LOCK_STRIPES = 256;
+
+    // Folder, inside the order folder, of the per-date lock files that instances sharing the folder take turns on.
+    private static final String LOCK_FOLDER = ".locks";
+
+    // How long a loaded date is trusted before a lookup checks whether another instance has replaced its file.
+    // Negative turns the check off, for a folder only one instance uses. Changes always check.
+    private static final long RECHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("flooring.orders.recheckMillis", 1_000));
+
+    // Orders are read from the file into an immutable snapshot per date, keyed by orderNumber as they are unique.
+    // Writers replace a date's snapshot while holding that date's lock, readers just take the current one.
+    private final Map<LocalDate, DayOrders> allOrders = new ConcurrentHashMap<>();
+
+    // Dates whose in memory orders differ from their file. Only these are rewritten by writeFile().
+    private final Set<LocalDate> dirtyDates = ConcurrentHashMap.newKeySet();
+
+    // The file each loaded date was read from or last written to, as it was then, and when that was last checked.
+    // Another instance sharing the folder replacing the file changes its stamp.
+    private final Map<LocalDate, DiskState> diskStates = new ConcurrentHashMap<>();
+
+    // The changes made to each dirty date since its file was last written, in order. If another instance has
+    // replaced the file meanwhile they are replayed onto its version, so neither instance's orders are lost.
+    private final Map<LocalDate, List<Change>> pendingChanges = new ConcurrentHashMap<>();
+
+    private final ReentrantLock[] dateLocks = new ReentrantLock[LOCK_STRIPES];
+
+    private final Path orderFolder;
+
+    // How a loaded date's orders are held in memory.
+    private final OrderLayout layout;
+
+    // How a date's orders are saved on disk. Dates still saved in the other format are read and then converted.
+    private final OrderFileFormat format;
+
+    // Least recently used bookkeeping: each access stamps the date with the next tick.
+    private final ResidencyPolicy residencyPolicy;
+    private final Map<LocalDate, Long> lastAccess = new ConcurrentHashMap<>();
+    private final AtomicLong accessClock = new AtomicLong();
+    private final AtomicLong residentOrders = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder reloads = new LongAdder();
+    private final LongAdder merges = new LongAdder();
+
+    private volatile List<OrderChangeListener> changeListeners = List.of();
+
+    // While true, changes are only passed on to listeners that can be told about the same change twice.
+    private volatile boolean replaying;
+
+    // When true, changes leave their date dirty instead of writing it, until writeFile() saves them together.
+    private volatile boolean deferredWrites;
+
+    // File reads and writes. Until setMetrics() is called these record into metrics nobody reads.
+    private Timer readTimer = new Timer();
+    private Counter readRows = new Counter();
+    private Counter readBytes = new Counter();
+    private Timer writeTimer = new Timer();
+    private Counter writeRows = new Counter();
+    private Counter writeBytes = new Counter();
+    private Timer lockTimer = new Timer();
+
+    // Dates the preload has not added yet. A lookup for one of them takes its task, which reads the file at most
+    // once whichever thread gets to it first. Entries are only added or removed while holding lockFor(date).
+    private final Map<LocalDate, FutureTask<DayOrders>> preloading = new ConcurrentHashMap<>();
+    private volatile Preload preload;
+
+    public OrderDaoFileImpl() {
+        this(ORDER_FOLDER, ResidencyPolicy.fromSystemProperties());
+    }
+
+    public OrderDaoFileImpl(ResidencyPolicy residencyPolicy) {
+        this(ORDER_FOLDER, residencyPolicy);
+    }
+
+    // Lets tools and benchmarks point the Dao at a different folder of order files.
+    public OrderDaoFileImpl(Path orderFolder, ResidencyPolicy residencyPolicy) {
+        this(orderFolder, residencyPolicy, OrderLayout.fromSystemProperties());
+    }
+
+    public OrderDaoFileImpl(Path orderFolder, ResidencyPolicy residencyPolicy, OrderLayout layout) {
+        this(orderFolder, residencyPolicy, layout, OrderFileFormat.fromSystemProperties());
+    }
+
+    public OrderDaoFileImpl(Path orderFolder, ResidencyPolicy residencyPolicy, OrderLayout layout,
+                            OrderFileFormat format) {
+        this.orderFolder = orderFolder;
+        this.residencyPolicy = residencyPolicy;
+        this.layout = layout;
+        this.format = format;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            dateLocks[i] = new ReentrantLock();
+        }
+    }
+
+    // Registers every OrderChangeListener bean, e.g. the customer name index.
+    @Autowired(required = false)
+    public void setChangeListeners(List<OrderChangeListener> listeners) {
+        this.changeListeners = List.copyOf(listeners);
+    }
+
+    // Records file reads and writes in the registry and reports what is held in memory.
+    @Autowired(required = false)
+    public void setMetrics(MetricsRegistry metrics) {
+        readTimer = metrics.timer("orders.file.read");
+        readRows = metrics.counter("orders.file.read.rows");
+        readBytes = metrics.counter("orders.file.read.bytes");
+        writeTimer = metrics.timer("orders.file.write");
+        writeRows = metrics.counter("orders.file.write.rows");
+        writeBytes = metrics.counter("orders.file.write.bytes");
+        lockTimer = metrics.timer("orders.file.lock");
+        metrics.gauge("orders.resident.dates", allOrders::size);
+        metrics.gauge("orders.resident.orders", residentOrders::get);
+        metrics.gauge("orders.cache.hits", hits::sum);
+        metrics.gauge("orders.cache.misses", misses::sum);
+        metrics.gauge("orders.cache.evictions", evictions::sum);
+        metrics.gauge("orders.dirty.dates", dirtyDates::size);
+        metrics.gauge("orders.file.reloads", reloads::sum);
+        metrics.gauge("orders.file.merges", merges::sum);
+    }
 
     // ------------------ CRUD OPERATIONS -------------------
+    // Changes to one date hold that date's lock until its file is written, changes to other dates carry on.
 
-    // Adds a new order to the in memory map and writes all orders back to file.
+    // Adds a new order to the in memory map and writes that date's file back to disk.
     @Override
     public void addOrder(LocalDate date, Orders order) throws PersistenceException {
-        Map<Integer, Orders> ordersForDate = allOrders.getOrDefault(date, new HashMap<>());
-        ordersForDate.put(order.getOrderNumber(), order);
-        allOrders.put(date, ordersForDate);
-        writeFile();
+        Lock lock = lockFor(date);
+        lock.lock();
+        try {
+            applyAdd(date, order);
+            if (!deferredWrites) {
+                flushDate(date);
+            }
+        } finally {
+            lock.unlock();
+        }
+        evictIfOverCapacity();
+    }
+
+    // Adds a batch of orders to one date and writes that date's file once.
+    @Override
+    public void addOrders(LocalDate date, Collection<Orders> orders) throws PersistenceException {
+        Lock lock = lockFor(date);
+        lock.lock();
+        try {
+            applyAddAll(date, orders);
+            if (!deferredWrites) {
+                flushDate(date);
+            }
+        } finally {
+            lock.unlock();
+        }
+        evictIfOverCapacity();
     }
 
     // Updates an existing order for the specified date.
     @Override
     public void editOrder(LocalDate date, int orderNumber, Orders updatedOrder) throws PersistenceException {
-        // Always load existing orders first
-        getOrdersByDate(date);
+        Lock lock = lockFor(date);
+        lock.lock();
+        try {
+            applyEdit(date, orderNumber, updatedOrder);
+            if (!deferredWrites) {
+                flushDate(date);
+            }
+        } finally {
+            lock.unlock();
+        }
+        evictIfOverCapacity();
+    }
+
+    // Removes an order from the in memory collection and updates the file.
+    @Override
+    public void removeOrder(LocalDate date, int orderNumber) throws PersistenceException {
+        Lock lock = lockFor(date);
+        lock.lock();
+        try {
+            if (applyRemove(date, orderNumber) && !deferredWrites) {
+                flushDate(date);
+            }
+        } finally {
+            lock.unlock();
+        }
+        evictIfOverCapacity();
+    }
+
+    // Dates changed while writes are deferred are still written if they are evicted, and by writeFile().
+    @Override
+    public void setDeferredWrites(boolean deferred) {
+        this.deferredWrites = deferred;
+    }
+
+    protected boolean isDeferredWrites() {
+        return deferredWrites;
+    }
+
+    // ------------------ IN MEMORY CHANGES -------------------
+    // These change the in memory orders and mark the date dirty without touching the disk,
+    // so subclasses can decide when the change is saved. Callers must hold lockFor(date).
+
+    protected void applyAdd(LocalDate date, Orders order) throws PersistenceException {
+        // Load the existing file first, otherwise the rewrite would drop orders that were never displayed.
+        applyAdd(date, loadedOrders(date), order);
+    }
+
+    protected void applyAddAll(LocalDate date, Collection<Orders> orders) throws PersistenceException {
+        applyAddAll(date, loadedOrders(date), orders);
+    }
+
+    protected void applyEdit(LocalDate date, int orderNumber, Orders updatedOrder) throws PersistenceException {
+        applyEdit(date, loadedOrders(date), orderNumber, updatedOrder);
+    }
+
+    // Returns false when there was no such order, so nothing needs saving.
+    protected boolean applyRemove(LocalDate date, int orderNumber) throws PersistenceException {
+        return applyRemove(date, loadedOrders(date), orderNumber);
+    }
 
-        Map<Integer, Orders> ordersForDate = allOrders.get(date);
+    // The same changes made to a snapshot the caller took from loadedOrders(date) while holding lockFor(date).
+    // Nothing is read from disk here, so a caller that has already checked the change cannot see these fail.
 
-        if (ordersForDate == null || !ordersForDate.containsKey(orderNumber)) {
+    protected void applyAdd(LocalDate date, DayOrders ordersForDate, Orders order) {
+        Orders replaced = ordersForDate.get(order.getOrderNumber());
+        publish(date, ordersForDate.with(order));
+        recordChange(date, new Change(order.getOrderNumber(), order, replaced));
+        notifyListeners(date, replaced == null ? List.of() : List.of(replaced), List.of(order));
+    }
+
+    protected void applyAddAll(LocalDate date, DayOrders ordersForDate, Collection<Orders> orders) {
+        List<Orders> replaced = new ArrayList<>();
+        for (Orders order : orders) {
+            Orders previous = ordersForDate.get(order.getOrderNumber());
+            if (previous != null) {
+                replaced.add(previous);
+            }
+        }
+        publish(date, ordersForDate.withAll(orders));
+        for (Orders order : orders) {
+            recordChange(date, new Change(order.getOrderNumber(), order, ordersForDate.get(order.getOrderNumber())));
+        }
+        notifyListeners(date, replaced, orders);
+    }
+
+    protected void applyEdit(LocalDate date, DayOrders ordersForDate, int orderNumber, Orders updatedOrder)
+            throws PersistenceException {
+        Orders previous = ordersForDate.get(orderNumber);
+
+        if (previous == null) {
             throw new PersistenceException("Order not found for editOrder().");
         }
 
-        // Update and rewrite file
-        ordersForDate.put(orderNumber, updatedOrder);
-        writeFile();
+        publish(date, ordersForDate.with(updatedOrder));
+        recordChange(date, new Change(orderNumber, updatedOrder, previous));
+        notifyListeners(date, List.of(previous), List.of(updatedOrder));
     }
 
-    // Removes an order from the in memory collection and updates the file.
-    @Override
-    public void removeOrder(LocalDate date, int orderNumber) throws PersistenceException {
-        Map<Integer, Orders> ordersForDate = allOrders.get(date);
-        if (ordersForDate == null) return;
-        Orders removed = ordersForDate.remove(orderNumber);
-        writeFile();
+    protected boolean applyRemove(LocalDate date, DayOrders ordersForDate, int orderNumber) {
+        Orders removed = ordersForDate.get(orderNumber);
+        if (removed == null) return false;
+        publish(date, ordersForDate.without(orderNumber));
+        recordChange(date, new Change(orderNumber, null, removed));
+        notifyListeners(date, List.of(removed), List.of());
+        return true;
+    }
+
+    private void recordChange(LocalDate date, Change change) {
+        pendingChanges.computeIfAbsent(date, d -> new ArrayList<>()).add(change);
+        dirtyDates.add(date);
+    }
+
+    private void notifyListeners(LocalDate date, Collection<Orders> removed, Collection<Orders> added) {
+        for (OrderChangeListener listener : changeListeners) {
+            if (!replaying || listener.idempotent()) {
+                listener.ordersChanged(date, removed, added);
+            }
+        }
+    }
+
+    // Tells the listeners what another instance changed in a date's file, found by reading the file again: each
+    // order, other than those in skip, that differs between the two snapshots.
+    private void notifyChangedElsewhere(LocalDate date, DayOrders before, DayOrders after, Set<Integer> skip) {
+        Map<Integer, Orders> previous = new HashMap<>();
+        for (Orders order : before.values()) {
+            if (!skip.contains(order.getOrderNumber())) {
+                previous.put(order.getOrderNumber(), order);
+            }
+        }
+        List<Orders> removed = new ArrayList<>();
+        List<Orders> added = new ArrayList<>();
+        for (Orders order : after.values()) {
+            if (skip.contains(order.getOrderNumber())) {
+                continue;
+            }
+            Orders old = previous.remove(order.getOrderNumber());
+            if (!sameOrder(old, order)) {
+                if (old != null) {
+                    removed.add(old);
+                }
+                added.add(order);
+            }
+        }
+        removed.addAll(previous.values());
+
+        if (!removed.isEmpty() || !added.isEmpty()) {
+            for (OrderChangeListener listener : changeListeners) {
+                listener.ordersChangedElsewhere(date, removed, added);
+            }
+        }
+    }
+
+    // Whether two versions of an order would be saved as the same line. Either may be null for no order.
+    private static boolean sameOrder(Orders first, Orders second) {
+        if (first == null || second == null) {
+            return first == second;
+        }
+        return marshallOrder(first).equals(marshallOrder(second));
+    }
+
+    // Set while a subclass re-applies changes that listeners were already told about before a restart.
+    protected void setReplaying(boolean replaying) {
+        this.replaying = replaying;
+    }
+
+    // The lock guarding changes to one date. Dates are spread over a fixed set of locks.
+    protected Lock lockFor(LocalDate date) {
+        return dateLocks[(int) Math.floorMod(date.toEpochDay(), (long) LOCK_STRIPES)];
     }
 
     // ----------------------- FILE LOADING ------------------------
 
-    // Reads in a whole Order File by first calculating the file name via the date.
+    // Returns the orders for a date, reading its order file the first time the date is asked for.
+    // Once loaded, readers take the current snapshot without waiting on writers.
     @Override
     public List<Orders> getOrdersByDate(LocalDate date) throws PersistenceException {
-        String filename = ORDER_FOLDER + "/Orders_"
-                + date.format(DateTimeFormatter.ofPattern("MMddyyyy")) + ".txt";
+        DayOrders ordersForDate = allOrders.get(date);
+        if (ordersForDate != null && !maybeReplaced(date, false)) {
+            hits.increment();
+            touch(date);
+            return ordersForDate.list();
+        }
 
+        Lock lock = lockFor(date);
+        lock.lock();
+        try {
+            ordersForDate = loadedOrders(date);
+        } finally {
+            lock.unlock();
+        }
+        evictIfOverCapacity();
+        return ordersForDate.list();
+    }
+
+    // Every order in the range as one list, in date then order number order.
+    @Override
+    public List<Orders> getOrdersBetween(LocalDate from, LocalDate to) throws PersistenceException {
         List<Orders> orders = new ArrayList<>();
-        File file = new File(filename);
+        try (Stream<DailyOrders> days = streamOrdersBetween(from, to)) {
+            days.forEach(day -> orders.addAll(day.orders()));
+        } catch (UncheckedIOException e) {
+            throw new PersistenceException("Could not load order data between " + from + " and " + to, e.getCause());
+        }
+        return orders;
+    }
 
-        if (!file.exists()) {
-            allOrders.remove(date); // ensure consistency
-            return orders;
+    /**
+     * Finds the dates in the range with one directory listing instead of checking every calendar day, and
+     * reads their files in parallel through OrderArchive, a few dates ahead of the consumer.
+     * Dates that are already loaded come from memory, including changes not yet saved, and dates read here
+     * are not added to the loaded dates, so a long range does not push everything else out of memory.
+     */
+    @Override
+    public Stream<DailyOrders> streamOrdersBetween(LocalDate from, LocalDate to) throws PersistenceException {
+        if (to.isBefore(from)) {
+            return Stream.empty();
         }
 
-        Map<Integer, Orders> ordersMap = new HashMap<>();
+        OrderArchive archive = new OrderArchive(orderFolder);
+        NavigableMap<LocalDate, Path> toRead;
+        try {
+            toRead = new TreeMap<>(archive.listOrderFiles().subMap(from, true, to, true));
+        } catch (IOException e) {
+            throw new PersistenceException("Could not list order files.", e);
+        }
 
-        try (Scanner scanner = new Scanner(new BufferedReader(new FileReader(file)))) {
-            if (scanner.hasNextLine()) {
-                scanner.nextLine(); // skip header
+        NavigableMap<LocalDate, DayOrders> loaded = new TreeMap<>();
+        for (Map.Entry<LocalDate, DayOrders> date : allOrders.entrySet()) {
+            if (!date.getKey().isBefore(from) && !date.getKey().isAfter(to) && !maybeReplaced(date.getKey(), false)) {
+                loaded.put(date.getKey(), date.getValue());
+                toRead.remove(date.getKey());
             }
+        }
+
+        NavigableSet<LocalDate> dates = new TreeSet<>(toRead.keySet());
+        dates.addAll(loaded.keySet());
+        OrderArchive.DateReader reader = archive.open(toRead);
 
-            while (scanner.hasNextLine()) {
-                String currentLine = scanner.nextLine();
-                Orders order = unmarshallOrder(currentLine);
-                orders.add(order);
-                ordersMap.put(order.getOrderNumber(), order);
+        // Walks every date in order, taking loaded ones from memory and the rest from the reader in turn.
+        Iterator<DailyOrders> days = new Iterator<>() {
+            private final Iterator<LocalDate> remaining = dates.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return remaining.hasNext();
             }
-        } catch (FileNotFoundException e) {
-            throw new PersistenceException("Could not load order data for date: " + date, e);
+
+            @Override
+            public DailyOrders next() {
+                LocalDate date = remaining.next();
+                DayOrders snapshot = loaded.get(date);
+                if (snapshot != null) {
+                    return new DailyOrders(date, snapshot.list());
+                }
+                Map.Entry<LocalDate, List<Orders>> read = reader.next();
+                return new DailyOrders(read.getKey(), read.getValue());
+            }
+        };
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(days,
+                        Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .filter(day -> !day.orders().isEmpty())
+                .onClose(reader::close);
+    }
+
+    // Reads one date's file, in whichever format it was saved, into a snapshot. A date without a file has no
+    // orders yet.
+    // The file's stamp is taken before it is read, so if it is replaced meanwhile the stamp is out of date rather
+    // than the orders, and the next change merges with the new file instead of overwriting it.
+    private DayOrders readDate(LocalDate date) throws PersistenceException {
+        Path file = currentFile(date);
+        if (file == null) {
+            diskStates.put(date, new DiskState(FileStamp.NONE, System.nanoTime()));
+            return layout.empty();
         }
-        allOrders.put(date, ordersMap);
 
-        return orders;
+        try {
+            diskStates.put(date, new DiskState(FileStamp.of(file), System.nanoTime()));
+            long start = readTimer.start();
+            DayOrders ordersForDate = layout.of(OrderFileFormat.of(file).read(file));
+            readTimer.stop(start);
+            readRows.add(ordersForDate.size());
+            readBytes.add(Files.size(file));
+            return ordersForDate;
+        } catch (IOException e) {
+            throw new PersistenceException("Could not load order data for date: " + date, e);
+        }
     }
 
-    // Converts a single Text line from the file into an Object. Called by getOrdersByDate().
-    private static Orders unmarshallOrder(String currentLine) {
-        String[] tokens = currentLine.split(DELIMITER);
+    // The file holding a date's orders, in whichever format it was saved, or null if the date has no file.
+    private Path currentFile(LocalDate date) {
+        Path file = orderFile(date);
+        Path otherFile = orderFile(date, format.other());
 
-        Orders orderFromFile = new Orders();
-        orderFromFile.setOrderNumber(Integer.parseInt(tokens[0]));
-        orderFromFile.setCustomerName(tokens[1]);
-        orderFromFile.setState(tokens[2]);
-        orderFromFile.setTaxRate(new BigDecimal(tokens[3]));
-        orderFromFile.setProductType(tokens[4]);
-        orderFromFile.setArea(new BigDecimal(tokens[5]));
-        orderFromFile.setCostPerSquareFoot(new BigDecimal(tokens[6]));
-        orderFromFile.setLaborCostPerSquareFoot(new BigDecimal(tokens[7]));
-        orderFromFile.setMaterialCost(new BigDecimal(tokens[8]));
-        orderFromFile.setLaborCost(new BigDecimal(tokens[9]));
-        orderFromFile.setTax(new BigDecimal(tokens[10]));
-        orderFromFile.setTotal(new BigDecimal(tokens[11]));
+        if (!Files.exists(file)) {
+            return Files.exists(otherFile) ? otherFile : null;
+        }
+        return Files.exists(otherFile) ? OrderArchive.newer(file, otherFile) : file;
+    }
 
-        return orderFromFile;
+    // Converts a single Text line from the file into an Object, e.g. a line replayed from the journal.
+    static Orders unmarshallOrder(String currentLine) {
+        return OrderFileParser.parseLine(currentLine);
     }
 
     // ----------------------- FILE WRITING ------------------------
 
-    // Writes all orders currently in memory to their corresponding files.
+    // Writes every date that has changed since it was last saved. Clean dates are left untouched on disk.
     @Override
     public void writeFile() throws PersistenceException {
-        try {
-            for (Map.Entry<LocalDate, Map<Integer, Orders>> entry : allOrders.entrySet()) {
-                LocalDate date = entry.getKey();
-                String filename = "SampleFileData/Orders/Orders_"
-                        + date.format(DateTimeFormatter.ofPattern("MMddyyyy")) + ".txt";
-
-                try (PrintWriter out = new PrintWriter(new FileWriter(filename))) {
-                    out.println("OrderNumber,CustomerName,State,TaxRate,ProductType,Area,CostPerSquareFoot,"
-                            + "LaborCostPerSquareFoot,MaterialCost,LaborCost,Tax,Total");
+        for (LocalDate date : dirtyDates) {
+            Lock lock = lockFor(date);
+            lock.lock();
+            try {
+                flushDate(date);
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
 
-                    for (Orders currentOrder : entry.getValue().values()) {
-                        out.println(marshallOrder(currentOrder));
+    /**
+     * Writes one date if it is dirty. Caller must hold lockFor(date).
+     * The date's lock file is held from checking the file until the new one is in place, so instances sharing
+     * the folder take turns on a date but not on the whole folder. If another instance replaced the file since
+     * it was read here, it is read again and this instance's unsaved changes are replayed onto it first. An
+     * order both instances changed keeps this instance's version, as the later of the two writes.
+     */
+    protected void flushDate(LocalDate date) throws PersistenceException {
+        if (dirtyDates.remove(date)) {
+            long start = lockTimer.start();
+            try {
+                FileLocks.withLock(lockFile(date), () -> {
+                    lockTimer.stop(start);
+                    DiskState known = diskStates.get(date);
+                    if (known == null || !known.stamp().equals(FileStamp.of(currentFile(date)))) {
+                        mergeWithFile(date);
                     }
-                }
+                    writeDate(date, allOrders.getOrDefault(date, layout.empty()).values());
+                    pendingChanges.remove(date);
+                });
+            } catch (IOException e) {
+                dirtyDates.add(date);
+                throw new PersistenceException("Could not lock order data for date: " + date, e);
+            } catch (PersistenceException e) {
+                dirtyDates.add(date); // still unsaved, try again on the next write
+                throw e;
             }
+        }
+    }
+
+    /**
+     * Reads the file another instance replaced and replays this instance's unsaved changes onto it.
+     * Listeners are told what the other instance changed, apart from the orders changed here too. They were told
+     * of this instance's change to such an order as a change from the version it had here, but the write now
+     * replaces the other instance's version instead, so they are told of that as well: listeners that add
+     * changes up are told of the step from the other instance's version back to this one's starting point, and
+     * idempotent ones of the step from the other instance's version to the one being written.
+     * Caller must hold lockFor(date) and the date's lock file.
+     */
+    private void mergeWithFile(LocalDate date) throws PersistenceException {
+        DayOrders before = allOrders.getOrDefault(date, layout.empty());
+        DayOrders onDisk = readDate(date);
+
+        // Each order changed here, as it was before its first unsaved change, or null if it was added here.
+        Map<Integer, Orders> bases = new HashMap<>();
+        DayOrders merged = onDisk;
+        for (Change change : pendingChanges.getOrDefault(date, List.of())) {
+            if (!bases.containsKey(change.orderNumber())) {
+                bases.put(change.orderNumber(), change.previous());
+            }
+            merged = change.order() == null ? merged.without(change.orderNumber()) : merged.with(change.order());
+        }
+        publish(date, merged);
+        merges.increment();
+        notifyChangedElsewhere(date, before, merged, bases.keySet());
+
+        List<Orders> replaced = new ArrayList<>();
+        List<Orders> restored = new ArrayList<>();
+        List<Orders> written = new ArrayList<>();
+        for (Map.Entry<Integer, Orders> base : bases.entrySet()) {
+            Orders theirs = onDisk.get(base.getKey());
+            if (!sameOrder(theirs, base.getValue())) {
+                addIfPresent(replaced, theirs);
+                addIfPresent(restored, base.getValue());
+                addIfPresent(written, merged.get(base.getKey()));
+            }
+        }
+        if (!replaced.isEmpty() || !restored.isEmpty()) {
+            for (OrderChangeListener listener : changeListeners) {
+                listener.ordersChanged(date, replaced, listener.idempotent() ? written : restored);
+            }
+        }
+    }
+
+    private static void addIfPresent(List<Orders> orders, Orders order) {
+        if (order != null) {
+            orders.add(order);
+        }
+    }
+
+    /**
+     * Writes a single date's orders to a temp file in the same folder and then renames it over the real file.
+     * A crash part way through leaves either the old file or the new one, never a truncated mix of both: the
+     * temp file is forced to disk before the rename, and the folder after it, see DurableFiles.
+     * Once the new file is in place any copy of the date in the other format is out of date and is deleted.
+     */
+    private void writeDate(LocalDate date, Collection<Orders> orders) throws PersistenceException {
+        Path target = orderFile(date);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+
+        try {
+            long start = writeTimer.start();
+            format.write(temp, orders);
+            writeBytes.add(Files.size(temp));
+            DurableFiles.replace(temp, target);
+            Files.deleteIfExists(orderFile(date, format.other()));
+            diskStates.put(date, new DiskState(FileStamp.of(target), System.nanoTime()));
+            writeTimer.stop(start);
+            writeRows.add(orders.size());
         } catch (IOException e) {
-            throw new PersistenceException("Could not save order data.", e);
+            throw new PersistenceException("Could not save order data for date: " + date, e);
         }
     }
 
     // Converts an Order object into a string separated by commas, suitable for saving to a file.
-    private static String marshallOrder(Orders o) {
+    static String marshallOrder(Orders o) {
         return o.getOrderNumber() + DELIMITER +
-                o.getCustomerName() + DELIMITER +
-                o.getState() + DELIMITER +
+                OrderFileParser.quote(o.getCustomerName()) + DELIMITER +
+                OrderFileParser.quote(o.getState()) + DELIMITER +
                 o.getTaxRate().setScale(2, RoundingMode.HALF_UP) + DELIMITER +
-                o.getProductType() + DELIMITER +
+                OrderFileParser.quote(o.getProductType()) + DELIMITER +
                 o.getArea().setScale(2, RoundingMode.HALF_UP) + DELIMITER +
                 o.getCostPerSquareFoot().setScale(2, RoundingMode.HALF_UP) + DELIMITER +
                 o.getLaborCostPerSquareFoot().setScale(2, RoundingMode.HALF_UP) + DELIMITER +
@@ -162,13 +665,365 @@ public class OrderDaoFileImpl implements OrderDao {
                 o.getTotal().setScale(2, RoundingMode.HALF_UP);
     }
 
+    // ----------------------- EXPORT ------------------------
+
+    /**
+     * Writes every order from every date into one file, with an extra OrderDate column, in date then order
+     * number order. Files are streamed through OrderArchive rather than loaded into allOrders, so memory use
+     * stays flat however many dates there are.
+     */
+    @Override
+    public ExportSummary exportAll(Path exportFile) throws PersistenceException {
+        writeFile(); // make sure unsaved changes are on disk before reading the files back
+        long start = System.nanoTime();
+        int[] dates = {0};
+        long[] rows = {0};
+
+        try {
+            Files.createDirectories(exportFile.toAbsolutePath().getParent());
+            OrderArchive archive = new OrderArchive(orderFolder);
+
+            DurableFiles.write(exportFile, out -> {
+                out.println(HEADER + DELIMITER + "OrderDate");
+
+                archive.forEachDate(archive.listOrderFiles(), (date, orders) -> {
+                    String orderDate = DELIMITER + date.format(EXPORT_DATE_FORMAT);
+                    for (Orders order : orders) {
+                        out.println(marshallOrder(order) + orderDate);
+                    }
+                    dates[0]++;
+                    rows[0] += orders.size();
+                });
+            });
+        } catch (IOException e) {
+            throw new PersistenceException("Could not export order data.", e);
+        }
+
+        return new ExportSummary(dates[0], rows[0], System.nanoTime() - start);
+    }
+
     // ----------------------- HELPER METHODS ------------------------
 
-    // Generates the next availabile order number for a given date.
+    // Builds the path of the order file belonging to a date, e.g. Orders_06012013.txt.
+    protected Path orderFile(LocalDate date) {
+        return orderFile(date, format);
+    }
+
+    private Path orderFile(LocalDate date, OrderFileFormat fileFormat) {
+        return orderFolder.resolve("Orders_" + date.format(FILE_DATE_FORMAT) + fileFormat.extension());
+    }
+
+    private Path lockFile(LocalDate date) {
+        return orderFolder.resolve(LOCK_FOLDER).resolve("Orders_" + date.format(FILE_DATE_FORMAT) + ".lock");
+    }
+
+    // Returns the in memory orders for a date, reading its file first if the date has not been loaded yet.
+    // Caller must hold lockFor(date).
+    protected DayOrders loadedOrders(LocalDate date) throws PersistenceException {
+        DayOrders ordersForDate = allOrders.get(date);
+        if (ordersForDate == null) {
+            misses.increment();
+            ordersForDate = takePreloaded(date);
+            if (ordersForDate == null) {
+                ordersForDate = readDate(date);
+            }
+            publish(date, ordersForDate);
+        } else if (maybeReplaced(date, true)) {
+            reloads.increment();
+            DayOrders before = ordersForDate;
+            ordersForDate = readDate(date);
+            publish(date, ordersForDate);
+            notifyChangedElsewhere(date, before, ordersForDate, Set.of());
+        } else {
+            hits.increment();
+            touch(date);
+        }
+        return ordersForDate;
+    }
+
+    /**
+     * True if another instance may have replaced a loaded date's file since it was read or written here, so the
+     * date should be read again. Dirty dates are never read again, their changes are merged when they are
+     * written. The file is checked at most once per recheck interval unless always is set, as a change does.
+     */
+    private boolean maybeReplaced(LocalDate date, boolean always) {
+        if (dirtyDates.contains(date) || (!always && RECHECK_NANOS < 0)) {
+            return false;
+        }
+        DiskState known = diskStates.get(date);
+        if (known == null) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (!always && now - known.checkedNanos() < RECHECK_NANOS) {
+            return false;
+        }
+        try {
+            if (!known.stamp().equals(FileStamp.of(currentFile(date)))) {
+                return true;
+            }
+        } catch (IOException e) {
+            return true;
+        }
+        diskStates.replace(date, known, new DiskState(known.stamp(), now));
+        return false;
+    }
+
+    // Replaces a date's snapshot and keeps the resident order count in step. Caller must hold lockFor(date).
+    private void publish(LocalDate date, DayOrders ordersForDate) {
+        DayOrders previous = allOrders.put(date, ordersForDate);
+        residentOrders.addAndGet(ordersForDate.size() - (previous == null ? 0 : previous.size()));
+        touch(date);
+    }
+
+    private void touch(LocalDate date) {
+        lastAccess.put(date, accessClock.incrementAndGet());
+    }
+
+    // ----------------------- PRELOAD ------------------------
+
+    /**
+     * Reads every date in the folder on virtual threads, newest date first, and adds each one to memory as it
+     * is read. Dates already in memory are skipped. A few more files than there are processors are parsed at
+     * once, and reading stops adding dates once the residency limits would be passed, so a limited Dao is not
+     * filled only to evict again. Calling it again while a preload is running does nothing.
+     */
     @Override
-    public int generateNextOrderNumber(LocalDate date) throws PersistenceException {
-        Map<Integer, Orders> ordersForDate = allOrders.get(date);
-        if (ordersForDate == null || ordersForDate.isEmpty()) return 1;
-        return Collections.max(ordersForDate.keySet()) + 1;
+    public synchronized void startPreload() throws PersistenceException {
+        if (preload != null && !preload.finished()) {
+            return;
+        }
+
+        NavigableMap<LocalDate, Path> files;
+        try {
+            files = new OrderArchive(orderFolder).listOrderFiles();
+        } catch (IOException e) {
+            throw new PersistenceException("Could not list order files.", e);
+        }
+
+        Map<LocalDate, FutureTask<DayOrders>> toRead = new LinkedHashMap<>();
+        for (LocalDate date : files.descendingKeySet()) {
+            Lock lock = lockFor(date);
+            lock.lock();
+            try {
+                if (!allOrders.containsKey(date) && !preloading.containsKey(date)) {
+                    FutureTask<DayOrders> task = new FutureTask<>(() -> {
+                        try {
+                            return readDate(date);
+                        } catch (PersistenceException e) {
+                            throw new CompletionException(e);
+                        }
+                    });
+                    preloading.put(date, task);
+                    toRead.put(date, task);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Preload started = new Preload(toRead.size());
+        preload = started;
+        Thread.ofVirtual().name("order-preload").start(() -> {
+            Semaphore parsing = new Semaphore(Runtime.getRuntime().availableProcessors() + 1);
+            try (ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (Map.Entry<LocalDate, FutureTask<DayOrders>> date : toRead.entrySet()) {
+                    readers.execute(() -> {
+                        parsing.acquireUninterruptibly();
+                        try {
+                            preloadDate(date.getKey(), date.getValue(), started);
+                        } finally {
+                            parsing.release();
+                        }
+                    });
+                }
+            }
+            started.finish();
+        });
+    }
+
+    @Override
+    public PreloadProgress getPreloadProgress() {
+        Preload current = preload;
+        return current == null ? null : current.progress();
+    }
+
+    // Reads one date, unless a lookup already has, then adds it to memory if no lookup has taken it meanwhile.
+    // The read happens before taking the date's lock, as a lookup waiting on this task may already hold it.
+    private void preloadDate(LocalDate date, FutureTask<DayOrders> task, Preload progress) {
+        task.run();
+        DayOrders ordersForDate;
+        try {
+            ordersForDate = task.get();
+        } catch (ExecutionException | CancellationException e) {
+            ordersForDate = null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ordersForDate = null;
+        }
+
+        Lock lock = lockFor(date);
+        lock.lock();
+        try {
+            if (preloading.remove(date, task) && ordersForDate != null
+                    && !residencyPolicy.exceeded(allOrders.size() + 1, residentOrders.get() + ordersForDate.size())) {
+                publish(date, ordersForDate);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (ordersForDate == null) {
+            progress.failed();
+        } else {
+            progress.read(ordersForDate.size());
+        }
+    }
+
+    /**
+     * The preload's copy of a date, or null if the preload has no task for it or its read failed, in which case
+     * the caller reads the file itself and reports any error. If the preload has not reached the date yet the
+     * read runs here and now, otherwise this waits for the read already under way, never for other dates.
+     * Caller must hold lockFor(date), which keeps the preload from adding the date as well.
+     */
+    private DayOrders takePreloaded(LocalDate date) {
+        FutureTask<DayOrders> task = preloading.remove(date);
+        if (task == null) {
+            return null;
+        }
+        task.run();
+        try {
+            return task.get();
+        } catch (ExecutionException | CancellationException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    // Running totals for one preload, updated by its reader threads.
+    private static final class Preload {
+
+        private final int dates;
+        private final long startNanos = System.nanoTime();
+        private final AtomicInteger datesRead = new AtomicInteger();
+        private final AtomicInteger datesFailed = new AtomicInteger();
+        private final LongAdder orders = new LongAdder();
+        private volatile long finishNanos;
+        private volatile boolean finished;
+
+        Preload(int dates) {
+            this.dates = dates;
+        }
+
+        void read(int ordersRead) {
+            orders.add(ordersRead);
+            datesRead.incrementAndGet();
+        }
+
+        void failed() {
+            datesFailed.incrementAndGet();
+        }
+
+        void finish() {
+            finishNanos = System.nanoTime();
+            finished = true;
+        }
+
+        boolean finished() {
+            return finished;
+        }
+
+        PreloadProgress progress() {
+            boolean done = finished;
+            long elapsed = (done ? finishNanos : System.nanoTime()) - startNanos;
+            return new PreloadProgress(dates, datesRead.get(), datesFailed.get(), orders.sum(), elapsed, done);
+        }
+    }
+
+    // ----------------------- RESIDENCY ------------------------
+
+    /**
+     * Drops least recently used dates until the residency limits are met again. A dirty date is written to
+     * its file before it is dropped. Dates whose lock is busy are skipped rather than waited for, so two
+     * threads evicting at once can never deadlock on each other's dates.
+     */
+    protected void evictIfOverCapacity() throws PersistenceException {
+        Set<LocalDate> skipped = new HashSet<>();
+
+        while (residencyPolicy.exceeded(allOrders.size(), residentOrders.get()) && allOrders.size() > 1) {
+            LocalDate oldest = null;
+            long oldestTick = Long.MAX_VALUE;
+            for (Map.Entry<LocalDate, Long> entry : lastAccess.entrySet()) {
+                if (entry.getValue() < oldestTick && !skipped.contains(entry.getKey())) {
+                    oldest = entry.getKey();
+                    oldestTick = entry.getValue();
+                }
+            }
+            if (oldest == null) {
+                return; // everything left is busy
+            }
+
+            Lock lock = lockFor(oldest);
+            if (!lock.tryLock()) {
+                skipped.add(oldest);
+                continue;
+            }
+            try {
+                Long tick = lastAccess.get(oldest);
+                if (tick == null || tick != oldestTick) {
+                    continue; // used again since we looked, pick again
+                }
+                flushDate(oldest);
+                lastAccess.remove(oldest);
+                diskStates.remove(oldest);
+                DayOrders removed = allOrders.remove(oldest);
+                if (removed != null) {
+                    residentOrders.addAndGet(-removed.size());
+                    evictions.increment();
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // Hit, miss and eviction counts, plus how much is held in memory right now.
+    public ResidencyStats getResidencyStats() {
+        return new ResidencyStats(hits.sum(), misses.sum(), evictions.sum(), allOrders.size(), residentOrders.get());
+    }
+
+    // ----------------------- SHARED FOLDER ------------------------
+
+    // One change to a date, replayed if the date's file has to be merged. A null order means it was removed, a
+    // null previous that it was added.
+    private record Change(int orderNumber, Orders order, Orders previous) {
+    }
+
+    private record DiskState(FileStamp stamp, long checkedNanos) {
+    }
+
+    /**
+     * Identifies one version of a date's file. Files are only ever replaced by renaming a new file over them, so
+     * on file systems that report a file key (the inode on Linux and macOS) a new version always has a new key,
+     * however quickly it follows the last one. Modification time and size cover the others.
+     */
+    private record FileStamp(Path file, Object fileKey, FileTime modified, long size) {
+
+        static final FileStamp NONE = new FileStamp(null, null, null, -1);
+
+        // The stamp of the file as it is now, or NONE if there is no file.
+        static FileStamp of(Path file) throws IOException {
+            if (file == null) {
+                return NONE;
+            }
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+                return new FileStamp(file, attributes.fileKey(), attributes.lastModifiedTime(), attributes.size());
+            } catch (NoSuchFileException e) {
+                return NONE;
+            }
+        }
     }
 }
@@ -0,0 +1,483 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.dao.jdbc.Tables;
+import com.sg.flooringmastery.metrics.MetricsRegistry;
+import com.sg.flooringmastery.metrics.Timer;
+import com.sg.flooringmastery.model.DailyOrders;
+import com.sg.flooringmastery.model.ExportSummary;
+import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.model.PreloadProgress;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Order Dao that keeps orders in one table of an embedded database, H2 by default, reached through the pooled
+ * DataSource from AppConfig. Every statement is prepared, and a bulk add is sent as one JDBC batch in one
+ * transaction. The table is indexed on date and order number, customer name and state.
+ *
+ * The table is created and filled from the daily order files the first time the Dao starts against a
+ * database. Each change is committed before it returns, so there is nothing left for writeFile() to save.
+ * Amounts and rates are stored rounded half up to two decimal places (see Tables.amount()), as the order files
+ * store them, so an order reads back the same under either profile. Enabled with -Dspring.profiles.active=jdbc
+ */
+@Repository
+@Primary
+@Profile("jdbc")
+public class OrderDaoJdbcImpl implements OrderDao {
+
+    private static final Path ORDER_FOLDER = Paths.get("SampleFileData/Orders");
+    private static final DateTimeFormatter EXPORT_DATE_FORMAT = DateTimeFormatter.ofPattern("MM-dd-yyyy");
+    private static final int BATCH_SIZE = 1_000;
+
+    private static final String COLUMNS = "order_number, customer_name, state, tax_rate, product_type, area, "
+            + "cost_per_square_foot, labor_cost_per_square_foot, material_cost, labor_cost, tax, total";
+    private static final String INSERT = "INSERT INTO orders (order_date, " + COLUMNS + ") "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE = "UPDATE orders SET customer_name = ?, state = ?, tax_rate = ?, "
+            + "product_type = ?, area = ?, cost_per_square_foot = ?, labor_cost_per_square_foot = ?, "
+            + "material_cost = ?, labor_cost = ?, tax = ?, total = ? WHERE order_date = ? AND order_number = ?";
+    private static final String SELECT_ONE_FOR_UPDATE = "SELECT " + COLUMNS + " FROM orders "
+            + "WHERE order_date = ? AND order_number = ? FOR UPDATE";
+    private static final String SELECT_BETWEEN = "SELECT order_date, " + COLUMNS + " FROM orders "
+            + "WHERE order_date BETWEEN ? AND ? ORDER BY order_date, order_number";
+    private static final String SELECT_NEXT_DATE = "SELECT MIN(order_date) FROM orders "
+            + "WHERE order_date BETWEEN ? AND ?";
+    private static final String DELETE = "DELETE FROM orders WHERE order_date = ? AND order_number = ?";
+
+    private final DataSource dataSource;
+
+    private volatile List<OrderChangeListener> changeListeners = List.of();
+
+    // Until setMetrics() is called these record into metrics nobody reads.
+    private Timer readTimer = new Timer();
+    private Timer writeTimer = new Timer();
+
+    @Autowired
+    public OrderDaoJdbcImpl(DataSource dataSource) {
+        this(dataSource, ORDER_FOLDER);
+    }
+
+    // Lets tools and benchmarks fill a new database from a different folder of order files.
+    public OrderDaoJdbcImpl(DataSource dataSource, Path orderFolder) {
+        this.dataSource = dataSource;
+        try (Connection connection = dataSource.getConnection()) {
+            boolean created = Tables.createIfMissing(connection, "orders",
+                    "CREATE TABLE orders (order_date DATE NOT NULL, order_number INT NOT NULL, "
+                            + "customer_name VARCHAR(255) NOT NULL, state VARCHAR(64) NOT NULL, "
+                            + "tax_rate DECIMAL(19, 2) NOT NULL, product_type VARCHAR(64) NOT NULL, "
+                            + "area DECIMAL(19, 2) NOT NULL, cost_per_square_foot DECIMAL(19, 2) NOT NULL, "
+                            + "labor_cost_per_square_foot DECIMAL(19, 2) NOT NULL, "
+                            + "material_cost DECIMAL(19, 2) NOT NULL, labor_cost DECIMAL(19, 2) NOT NULL, "
+                            + "tax DECIMAL(19, 2) NOT NULL, total DECIMAL(19, 2) NOT NULL, "
+                            + "PRIMARY KEY (order_date, order_number))",
+                    "CREATE INDEX orders_customer_name ON orders (customer_name)",
+                    "CREATE INDEX orders_state ON orders (state)");
+            if (created) {
+                load(connection, orderFolder);
+            }
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Could not set up the orders table from " + orderFolder, e);
+        }
+    }
+
+    // Copies every order file into the new table, a batch of inserts at a time, committing once at the end.
+    private static void load(Connection connection, Path orderFolder) throws SQLException, IOException {
+        connection.setAutoCommit(false);
+        try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+            int[] pending = {0};
+            OrderArchive archive = new OrderArchive(orderFolder);
+            archive.forEachDate(archive.listOrderFiles(), (date, orders) -> {
+                try {
+                    for (Orders order : orders) {
+                        bindInsert(insert, date, order);
+                        insert.addBatch();
+                        if (++pending[0] % BATCH_SIZE == 0) {
+                            insert.executeBatch();
+                        }
+                    }
+                } catch (SQLException e) {
+                    throw new IOException(e);
+                }
+            });
+            insert.executeBatch();
+            connection.commit();
+        } catch (SQLException | IOException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    @Autowired(required = false)
+    public void setChangeListeners(List<OrderChangeListener> listeners) {
+        this.changeListeners = List.copyOf(listeners);
+    }
+
+    @Autowired(required = false)
+    public void setMetrics(MetricsRegistry metrics) {
+        readTimer = metrics.timer("orders.db.read");
+        writeTimer = metrics.timer("orders.db.write");
+    }
+
+    // ------------------ CRUD OPERATIONS -------------------
+
+    @Override
+    public void addOrder(LocalDate date, Orders order) throws PersistenceException {
+        addOrders(date, List.of(order));
+    }
+
+    /**
+     * Inserts the orders as one batch. Order numbers are normally new, but an order that reuses a number
+     * replaces the one stored under it, as with the other Daos, so if the batch hits an existing number it is
+     * rolled back and the orders are saved one at a time instead.
+     */
+    @Override
+    public void addOrders(LocalDate date, Collection<Orders> orders) throws PersistenceException {
+        List<Orders> replaced = new ArrayList<>();
+        long start = writeTimer.start();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+                for (Orders order : orders) {
+                    bindInsert(insert, date, order);
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            } catch (BatchUpdateException e) {
+                connection.rollback();
+                if (!isDuplicateKey(e)) {
+                    throw e;
+                }
+                for (Orders order : orders) {
+                    Orders previous = selectForUpdate(connection, date, order.getOrderNumber());
+                    if (previous == null) {
+                        insert(connection, date, order);
+                    } else {
+                        update(connection, date, order.getOrderNumber(), order);
+                        replaced.add(previous);
+                    }
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            throw new PersistenceException("Could not save orders for " + date + ".", e);
+        } finally {
+            writeTimer.stop(start);
+        }
+        notifyListeners(date, replaced, orders);
+    }
+
+    @Override
+    public void editOrder(LocalDate date, int orderNumber, Orders updatedOrder) throws PersistenceException {
+        Orders previous;
+        long start = writeTimer.start();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            previous = selectForUpdate(connection, date, orderNumber);
+            if (previous == null) {
+                throw new PersistenceException("Order not found for editOrder().");
+            }
+            update(connection, date, orderNumber, updatedOrder);
+            connection.commit();
+        } catch (SQLException e) {
+            throw new PersistenceException("Could not save order " + orderNumber + " for " + date + ".", e);
+        } finally {
+            writeTimer.stop(start);
+        }
+        notifyListeners(date, List.of(previous), List.of(updatedOrder));
+    }
+
+    @Override
+    public void removeOrder(LocalDate date, int orderNumber) throws PersistenceException {
+        Orders removed;
+        long start = writeTimer.start();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            removed = selectForUpdate(connection, date, orderNumber);
+            if (removed != null) {
+                try (PreparedStatement delete = connection.prepareStatement(DELETE)) {
+                    delete.setDate(1, Date.valueOf(date));
+                    delete.setInt(2, orderNumber);
+                    delete.executeUpdate();
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            throw new PersistenceException("Could not remove order " + orderNumber + " for " + date + ".", e);
+        } finally {
+            writeTimer.stop(start);
+        }
+        if (removed != null) {
+            notifyListeners(date, List.of(removed), List.of());
+        }
+    }
+
+    private void notifyListeners(LocalDate date, Collection<Orders> removed, Collection<Orders> added) {
+        for (OrderChangeListener listener : changeListeners) {
+            listener.ordersChanged(date, removed, added);
+        }
+    }
+
+    // ------------------ QUERIES -------------------
+
+    @Override
+    public List<Orders> getOrdersByDate(LocalDate date) throws PersistenceException {
+        return getOrdersBetween(date, date);
+    }
+
+    @Override
+    public List<Orders> getOrdersBetween(LocalDate from, LocalDate to) throws PersistenceException {
+        long start = readTimer.start();
+        try (Connection connection = dataSource.getConnection()) {
+            return selectBetween(connection, from, to);
+        } catch (SQLException e) {
+            throw new PersistenceException("Could not read orders from " + from + " to " + to + ".", e);
+        } finally {
+            readTimer.stop(start);
+        }
+    }
+
+    /**
+     * Reads one date at a time as the stream is consumed, so a long range is never held in memory at once.
+     * Each step asks the index for the next date that has orders, so empty dates cost nothing.
+     */
+    @Override
+    public Stream<DailyOrders> streamOrdersBetween(LocalDate from, LocalDate to) throws PersistenceException {
+        Iterator<DailyOrders> days = new Iterator<>() {
+            private LocalDate next = from;
+            private DailyOrders ahead;
+
+            @Override
+            public boolean hasNext() {
+                if (ahead == null && next != null && !next.isAfter(to)) {
+                    ahead = readNextDate(next, to);
+                    next = ahead == null ? null : ahead.date().plusDays(1);
+                }
+                return ahead != null;
+            }
+
+            @Override
+            public DailyOrders next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                DailyOrders day = ahead;
+                ahead = null;
+                return day;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(days,
+                Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    // The first date from from to to that has orders, with all of them, or null if there is none.
+    private DailyOrders readNextDate(LocalDate from, LocalDate to) {
+        long start = readTimer.start();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement select = connection.prepareStatement(SELECT_NEXT_DATE)) {
+            select.setDate(1, Date.valueOf(from));
+            select.setDate(2, Date.valueOf(to));
+            LocalDate date;
+            try (ResultSet rows = select.executeQuery()) {
+                Date next = rows.next() ? rows.getDate(1) : null;
+                if (next == null) {
+                    return null;
+                }
+                date = next.toLocalDate();
+            }
+            return new DailyOrders(date, selectBetween(connection, date, date));
+        } catch (SQLException e) {
+            throw new UncheckedIOException(new IOException("Could not read orders after " + from + ".", e));
+        } finally {
+            readTimer.stop(start);
+        }
+    }
+
+    // ----------------------- SAVING ------------------------
+
+    // Every change is committed as it is made.
+    @Override
+    public void writeFile() {
+    }
+
+    // Batch mode already hands over its adds as one addOrders() call per date, which is one JDBC batch.
+    @Override
+    public void setDeferredWrites(boolean deferred) {
+    }
+
+    // Nothing to preload: lookups go to the database, which keeps its own cache of pages.
+    @Override
+    public void startPreload() {
+    }
+
+    @Override
+    public PreloadProgress getPreloadProgress() {
+        return null;
+    }
+
+    /**
+     * Backs up every order into a single file in the same format as OrderDaoFileImpl.exportAll(), in date
+     * then order number order, from one query.
+     */
+    @Override
+    public ExportSummary exportAll(Path exportFile) throws PersistenceException {
+        long start = System.nanoTime();
+        int[] dates = {0};
+        long[] rows = {0};
+
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement select = connection.prepareStatement(SELECT_BETWEEN)) {
+            Files.createDirectories(exportFile.toAbsolutePath().getParent());
+            select.setDate(1, Date.valueOf(LocalDate.of(1, 1, 1)));
+            select.setDate(2, Date.valueOf(LocalDate.of(9999, 12, 31)));
+            select.setFetchSize(BATCH_SIZE);
+            DurableFiles.write(exportFile, out -> {
+                try (ResultSet result = select.executeQuery()) {
+                    out.println(OrderDaoFileImpl.HEADER + ",OrderDate");
+                    LocalDate lastDate = null;
+                    while (result.next()) {
+                        LocalDate date = result.getDate(1).toLocalDate();
+                        if (!date.equals(lastDate)) {
+                            lastDate = date;
+                            dates[0]++;
+                        }
+                        out.println(OrderDaoFileImpl.marshallOrder(readOrder(result, 2)) + ","
+                                + date.format(EXPORT_DATE_FORMAT));
+                        rows[0]++;
+                    }
+                }
+            });
+        } catch (SQLException | IOException e) {
+            throw new PersistenceException("Could not export order data.", e);
+        }
+        return new ExportSummary(dates[0], rows[0], System.nanoTime() - start);
+    }
+
+    // ----------------------- HELPER METHODS ------------------------
+
+    private static List<Orders> selectBetween(Connection connection, LocalDate from, LocalDate to)
+            throws SQLException {
+        List<Orders> orders = new ArrayList<>();
+        try (PreparedStatement select = connection.prepareStatement(SELECT_BETWEEN)) {
+            select.setDate(1, Date.valueOf(from));
+            select.setDate(2, Date.valueOf(to));
+            try (ResultSet result = select.executeQuery()) {
+                while (result.next()) {
+                    orders.add(readOrder(result, 2));
+                }
+            }
+        }
+        return orders;
+    }
+
+    // Locks the row until the transaction ends, so two edits of one order take turns. Null if there is none.
+    private static Orders selectForUpdate(Connection connection, LocalDate date, int orderNumber)
+            throws SQLException {
+        try (PreparedStatement select = connection.prepareStatement(SELECT_ONE_FOR_UPDATE)) {
+            select.setDate(1, Date.valueOf(date));
+            select.setInt(2, orderNumber);
+            try (ResultSet result = select.executeQuery()) {
+                return result.next() ? readOrder(result, 1) : null;
+            }
+        }
+    }
+
+    private static void insert(Connection connection, LocalDate date, Orders order) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+            bindInsert(insert, date, order);
+            insert.executeUpdate();
+        }
+    }
+
+    private static void update(Connection connection, LocalDate date, int orderNumber, Orders order)
+            throws SQLException {
+        try (PreparedStatement update = connection.prepareStatement(UPDATE)) {
+            update.setString(1, order.getCustomerName());
+            update.setString(2, order.getState());
+            update.setBigDecimal(3, Tables.amount(order.getTaxRate()));
+            update.setString(4, order.getProductType());
+            update.setBigDecimal(5, Tables.amount(order.getArea()));
+            update.setBigDecimal(6, Tables.amount(order.getCostPerSquareFoot()));
+            update.setBigDecimal(7, Tables.amount(order.getLaborCostPerSquareFoot()));
+            update.setBigDecimal(8, Tables.amount(order.getMaterialCost()));
+            update.setBigDecimal(9, Tables.amount(order.getLaborCost()));
+            update.setBigDecimal(10, Tables.amount(order.getTax()));
+            update.setBigDecimal(11, Tables.amount(order.getTotal()));
+            update.setDate(12, Date.valueOf(date));
+            update.setInt(13, orderNumber);
+            update.executeUpdate();
+        }
+    }
+
+    private static void bindInsert(PreparedStatement insert, LocalDate date, Orders order) throws SQLException {
+        insert.setDate(1, Date.valueOf(date));
+        insert.setInt(2, order.getOrderNumber());
+        insert.setString(3, order.getCustomerName());
+        insert.setString(4, order.getState());
+        insert.setBigDecimal(5, Tables.amount(order.getTaxRate()));
+        insert.setString(6, order.getProductType());
+        insert.setBigDecimal(7, Tables.amount(order.getArea()));
+        insert.setBigDecimal(8, Tables.amount(order.getCostPerSquareFoot()));
+        insert.setBigDecimal(9, Tables.amount(order.getLaborCostPerSquareFoot()));
+        insert.setBigDecimal(10, Tables.amount(order.getMaterialCost()));
+        insert.setBigDecimal(11, Tables.amount(order.getLaborCost()));
+        insert.setBigDecimal(12, Tables.amount(order.getTax()));
+        insert.setBigDecimal(13, Tables.amount(order.getTotal()));
+    }
+
+    // Reads the COLUMNS of the current row, starting at the given column.
+    private static Orders readOrder(ResultSet result, int first) throws SQLException {
+        Orders order = new Orders();
+        order.setOrderNumber(result.getInt(first));
+        order.setCustomerName(result.getString(first + 1));
+        order.setState(result.getString(first + 2));
+        order.setTaxRate(result.getBigDecimal(first + 3));
+        order.setProductType(result.getString(first + 4));
+        order.setArea(result.getBigDecimal(first + 5));
+        order.setCostPerSquareFoot(result.getBigDecimal(first + 6));
+        order.setLaborCostPerSquareFoot(result.getBigDecimal(first + 7));
+        order.setMaterialCost(result.getBigDecimal(first + 8));
+        order.setLaborCost(result.getBigDecimal(first + 9));
+        order.setTax(result.getBigDecimal(first + 10));
+        order.setTotal(result.getBigDecimal(first + 11));
+        return order;
+    }
+
+    // SQLSTATE class 23 is an integrity constraint violation, here the primary key.
+    private static boolean isDuplicateKey(SQLException e) {
+        for (SQLException next = e; next != null; next = next.getNextException()) {
+            if (next.getSQLState() != null && next.getSQLState().startsWith("23")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,349 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.metrics.Counter;
+import com.sg.flooringmastery.metrics.MetricsRegistry;
+import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.zip.CRC32;
+
+/**
+ * Order Dao that records every add, edit and remove as one appended line in a journal file instead of
+ * rewriting the whole order file for that day. The journal is folded into the normal Orders_MMddyyyy.txt
+ * files ("compaction") on a schedule or once it grows past a size limit, and is replayed on startup so
+ * that no acknowledged change is lost if the program stops before a compaction.
+ * Replay runs once Spring has set the listeners and metrics. Each change was passed on to the listeners when
+ * it was first made, so replay only passes it on to listeners that can take the same change twice, such as
+ * the customer index, which may have missed the last one. The aggregates add changes up and would count
+ * them twice, so they are left out; one that missed the last change before a crash shows in their verify().
+ * Other instances without the journal can share the order folder, as compaction saves each date the way
+ * OrderDaoFileImpl does. Only one instance at a time can use the journal, a second one refuses to start.
+ * Enabled by starting the application with -Dspring.profiles.active=journal
+ */
+@Repository
+@Primary
+@Profile("journal")
+public class OrderDaoJournalImpl extends OrderDaoFileImpl implements InitializingBean, DisposableBean {
+
+    private static final Path JOURNAL_FILE = Paths.get("SampleFileData/Journal/orders.journal");
+    private static final Path JOURNAL_LOCK = Paths.get("SampleFileData/Journal/orders.journal.lock");
+    private static final DateTimeFormatter FILE_DATE_FORMAT = DateTimeFormatter.ofPattern("MMddyyyy");
+    private static final String SEPARATOR = "|";
+
+    // Journal size that triggers an immediate compaction, and how often the background compaction runs.
+    private static final long MAX_JOURNAL_BYTES = Long.getLong("flooring.journal.maxBytes", 1024 * 1024);
+    private static final long COMPACT_INTERVAL_SECONDS = Long.getLong("flooring.journal.compactSeconds", 30);
+
+    private final ReentrantReadWriteLock compactionLock = new ReentrantReadWriteLock();
+    private final ScheduledExecutorService compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "order-journal-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private FileChannel journal;
+
+    // Held for as long as this instance uses the journal. Other instances can share the order folder, but the
+    // journal only ever has one writer.
+    private FileChannel journalLock;
+
+    // Background compactions that failed. The journal keeps every change meanwhile, and the next one retries.
+    private Counter compactionFailures = new Counter();
+
+    // Replays what a previous run left in the journal, then opens it for this run and starts compacting.
+    // Refuses to start while another instance is using the journal.
+    @Override
+    public void afterPropertiesSet() {
+        try {
+            Files.createDirectories(JOURNAL_FILE.getParent());
+            journalLock = FileLocks.tryLock(JOURNAL_LOCK);
+            if (journalLock == null) {
+                throw new IllegalStateException("Another instance is using the order journal in "
+                        + JOURNAL_FILE.getParent() + ". Only one instance at a time can run the journal profile.");
+            }
+            replayJournal();
+            journal = FileChannel.open(JOURNAL_FILE, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException | PersistenceException e) {
+            throw new IllegalStateException("Could not recover the order journal.", e);
+        }
+        compactor.scheduleWithFixedDelay(this::compactQuietly,
+                COMPACT_INTERVAL_SECONDS, COMPACT_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    @Autowired(required = false)
+    public void setMetrics(MetricsRegistry metrics) {
+        super.setMetrics(metrics);
+        compactionFailures = metrics.counter("orders.journal.compaction.failures");
+        metrics.gauge("orders.journal.bytes", () -> journal == null ? 0 : journalSizeOrZero());
+    }
+
+    // ------------------ CRUD OPERATIONS -------------------
+    // Changes take the date's lock so the journal records each date's changes in the order they were made,
+    // and a shared compaction lock so a compaction never runs between a change and its journal record.
+    // Each change loads and checks its date, journals, then applies to the snapshot it loaded, so nothing is
+    // visible before its record is on disk. Only loading and journalling can fail: once the record is written
+    // nothing is read from disk again before the change is applied, so every record belongs to a change that
+    // was made. Evicting or compacting afterwards can still report an error, after the change has been made.
+
+    @Override
+    public void addOrder(LocalDate date, Orders order) throws PersistenceException {
+        change(date, () -> {
+            DayOrders ordersForDate = loadedOrders(date);
+            append("A", date, marshallOrder(order));
+            applyAdd(date, ordersForDate, order);
+        });
+    }
+
+    // The whole batch goes to the journal in one write and one force. If a crash tears that write, replay
+    // stops at the first incomplete line, so the orders before it are kept and the rest are lost.
+    @Override
+    public void addOrders(LocalDate date, Collection<Orders> orders) throws PersistenceException {
+        change(date, () -> {
+            DayOrders ordersForDate = loadedOrders(date);
+            StringBuilder records = new StringBuilder();
+            for (Orders order : orders) {
+                records.append(record("A", date, marshallOrder(order)));
+            }
+            write(records.toString());
+            applyAddAll(date, ordersForDate, orders);
+        });
+    }
+
+    @Override
+    public void editOrder(LocalDate date, int orderNumber, Orders updatedOrder) throws PersistenceException {
+        change(date, () -> {
+            DayOrders ordersForDate = loadedOrders(date);
+            if (!ordersForDate.contains(orderNumber)) {
+                throw new PersistenceException("Order not found for editOrder().");
+            }
+            append("E", date, marshallOrder(updatedOrder));
+            applyEdit(date, ordersForDate, orderNumber, updatedOrder);
+        });
+    }
+
+    @Override
+    public void removeOrder(LocalDate date, int orderNumber) throws PersistenceException {
+        change(date, () -> {
+            DayOrders ordersForDate = loadedOrders(date);
+            if (ordersForDate.contains(orderNumber)) {
+                append("R", date, String.valueOf(orderNumber));
+                applyRemove(date, ordersForDate, orderNumber);
+            }
+        });
+    }
+
+    // Folds the journal into the order files straight away rather than waiting for the schedule.
+    @Override
+    public void writeFile() throws PersistenceException {
+        compactionLock.writeLock().lock();
+        try {
+            compact();
+        } finally {
+            compactionLock.writeLock().unlock();
+        }
+    }
+
+    // ----------------------- JOURNAL ------------------------
+
+    @FunctionalInterface
+    private interface Change {
+        void run() throws PersistenceException;
+    }
+
+    private void change(LocalDate date, Change change) throws PersistenceException {
+        compactionLock.readLock().lock();
+        Lock lock = lockFor(date);
+        lock.lock();
+        try {
+            change.run();
+        } finally {
+            lock.unlock();
+            compactionLock.readLock().unlock();
+        }
+        evictIfOverCapacity();
+
+        if (journalSize() >= MAX_JOURNAL_BYTES) {
+            writeFile();
+        }
+    }
+
+    /**
+     * Appends one record and forces it to disk before returning, so the change is durable once the caller
+     * gets control back. Each line starts with a CRC of the rest so a torn final write is detected on replay.
+     */
+    private void append(String operation, LocalDate date, String payload) throws PersistenceException {
+        write(record(operation, date, payload));
+    }
+
+    // One journal line, including its checksum and trailing newline.
+    private static String record(String operation, LocalDate date, String payload) {
+        String record = operation + SEPARATOR + date.format(FILE_DATE_FORMAT) + SEPARATOR + payload;
+        return checksum(record) + SEPARATOR + record + "\n";
+    }
+
+    // With deferred writes nothing is journalled. The changed dates stay dirty and the next compaction saves them.
+    // A write that fails part way is cut off again, so the records after it are not hidden behind a torn line.
+    private void write(String lines) throws PersistenceException {
+        if (isDeferredWrites()) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8));
+        synchronized (journal) {
+            long end = -1;
+            try {
+                end = journal.size();
+                while (buffer.hasRemaining()) {
+                    journal.write(buffer);
+                }
+                journal.force(false);
+            } catch (IOException e) {
+                truncateQuietly(end);
+                throw new PersistenceException("Could not write to the order journal.", e);
+            }
+        }
+    }
+
+    private void truncateQuietly(long size) {
+        if (size >= 0) {
+            try {
+                journal.truncate(size);
+            } catch (IOException e) {
+                // replay still stops at the torn line, as it would after a crash
+            }
+        }
+    }
+
+    private long journalSizeOrZero() {
+        try {
+            return journal.size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    private long journalSize() throws PersistenceException {
+        try {
+            return journal.size();
+        } catch (IOException e) {
+            throw new PersistenceException("Could not read the order journal size.", e);
+        }
+    }
+
+    // Writes every dirty date to its order file, then empties the journal. Caller must hold the write lock.
+    private void compact() throws PersistenceException {
+        super.writeFile();
+        try {
+            journal.truncate(0);
+            journal.force(true);
+        } catch (IOException e) {
+            throw new PersistenceException("Could not truncate the order journal.", e);
+        }
+    }
+
+    // Failures show in the orders.journal.compaction.failures metric and in the journal size, which keeps
+    // growing. The journal still holds every change, so the next compaction or restart will retry, and a
+    // change that finds the journal over its limit compacts in the foreground and reports the error itself.
+    private void compactQuietly() {
+        try {
+            writeFile();
+        } catch (PersistenceException e) {
+            compactionFailures.increment();
+        }
+    }
+
+    /**
+     * Re-applies every complete record left in the journal from a previous run, then compacts so the order
+     * files hold everything. Records are idempotent (put or delete by order number), so replaying a journal
+     * that was already partly compacted before a crash gives the same result. Listeners are told as the class
+     * comment describes.
+     */
+    private void replayJournal() throws IOException, PersistenceException {
+        if (!Files.exists(JOURNAL_FILE)) {
+            return;
+        }
+
+        boolean replayed = false;
+        setReplaying(true);
+        try (BufferedReader reader = Files.newBufferedReader(JOURNAL_FILE, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                int split = line.indexOf(SEPARATOR);
+                if (split < 0 || !line.substring(0, split).equals(checksum(line.substring(split + 1)))) {
+                    break; // torn write from a crash, nothing after it was acknowledged
+                }
+
+                String[] fields = line.substring(split + 1).split("\\|", 3);
+                LocalDate date = LocalDate.parse(fields[1], FILE_DATE_FORMAT);
+                switch (fields[0]) {
+                    case "A":
+                    case "E":
+                        applyAdd(date, unmarshallOrder(fields[2]));
+                        break;
+                    case "R":
+                        applyRemove(date, Integer.parseInt(fields[2]));
+                        break;
+                    default:
+                        throw new PersistenceException("Unknown journal record: " + fields[0]);
+                }
+                replayed = true;
+            }
+        } finally {
+            setReplaying(false);
+        }
+
+        if (replayed) {
+            super.writeFile();
+        }
+        Files.delete(JOURNAL_FILE);
+    }
+
+    private static String checksum(String record) {
+        CRC32 crc = new CRC32();
+        crc.update(record.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    // Called by Spring on shutdown so a clean exit leaves an empty journal.
+    @Override
+    public void destroy() throws Exception {
+        compactor.shutdown();
+        if (journal == null) {
+            if (journalLock != null) {
+                journalLock.close();
+            }
+            return; // never started
+        }
+        try {
+            writeFile();
+        } catch (PersistenceException e) {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            journal.close();
+            journalLock.close();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.model.Orders;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts a folder of daily order files from one format to the other, e.g. to binary for faster loading or
+ * back to CSV to hand the files to another program. Each date is converted with a temp file and a rename, and
+ * its old file is deleted only once the new one is in place. Run it while the application is stopped.
+ *
+ * Usage: OrderFileConverter to-binary|to-csv [orderFolder]
+ */
+public final class OrderFileConverter {
+
+    private static final Path ORDER_FOLDER = Paths.get("SampleFileData/Orders");
+
+    private OrderFileConverter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            usage();
+            return;
+        }
+
+        OrderFileFormat target;
+        switch (args[0]) {
+            case "to-binary" -> target = OrderFileFormat.BINARY;
+            case "to-csv" -> target = OrderFileFormat.CSV;
+            default -> {
+                usage();
+                return;
+            }
+        }
+        Path folder = args.length == 2 ? Paths.get(args[1]) : ORDER_FOLDER;
+
+        long start = System.nanoTime();
+        int converted = convert(folder, target);
+        System.out.printf("Converted %d order files in %s to %s in %d ms.%n", converted, folder, target,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Rewrites every date in the folder that is not already in the target format. Returns how many were rewritten.
+    public static int convert(Path folder, OrderFileFormat target) throws IOException {
+        int converted = 0;
+        for (Map.Entry<LocalDate, Path> entry : new OrderArchive(folder).listOrderFiles().entrySet()) {
+            Path source = entry.getValue();
+            OrderFileFormat format = OrderFileFormat.of(source);
+            Path destination = sibling(source, format, target);
+
+            if (format != target) {
+                List<Orders> orders = format.read(source);
+                Path temp = destination.resolveSibling(destination.getFileName() + ".tmp");
+                target.write(temp, orders);
+                try {
+                    Files.move(temp, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, destination, StandardCopyOption.REPLACE_EXISTING);
+                }
+                converted++;
+            }
+            // Whichever file was not chosen for the date is now stale.
+            Files.deleteIfExists(sibling(destination, target, target.other()));
+        }
+        return converted;
+    }
+
+    // The path of the same date's file in another format, e.g. Orders_06012013.bin for Orders_06012013.txt.
+    private static Path sibling(Path file, OrderFileFormat format, OrderFileFormat other) {
+        String name = file.getFileName().toString();
+        return file.resolveSibling(name.substring(0, name.length() - format.extension().length()) + other.extension());
+    }
+
+    private static void usage() {
+        System.out.println("Usage: OrderFileConverter to-binary|to-csv [orderFolder]");
+    }
+}
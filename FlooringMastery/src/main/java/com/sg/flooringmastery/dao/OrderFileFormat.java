@@ -0,0 +1,95 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.model.Orders;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * The on-disk format of the daily order files.
+ * CSV is the original Orders_MMddyyyy.txt text file and stays the format for exchanging data.
+ * BINARY is Orders_MMddyyyy.bin, which loads without parsing any text, see OrderBinaryCodec.
+ * Set with -Dflooring.orders.format=csv|binary
+ */
+public enum OrderFileFormat {
+
+    CSV(".txt") {
+        @Override
+        List<Orders> read(Path file) throws IOException {
+            return OrderFileParser.readFile(file);
+        }
+
+        @Override
+        void write(Path file, Collection<Orders> orders) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                PrintWriter out = new PrintWriter(new BufferedWriter(
+                        Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1)));
+                out.println(OrderDaoFileImpl.HEADER);
+                for (Orders order : orders) {
+                    out.println(OrderDaoFileImpl.marshallOrder(order));
+                }
+                out.flush();
+                if (out.checkError()) {
+                    throw new IOException("Write failed for " + file);
+                }
+                channel.force(true);
+            }
+        }
+    },
+
+    BINARY(".bin") {
+        @Override
+        List<Orders> read(Path file) throws IOException {
+            return OrderBinaryCodec.read(file);
+        }
+
+        @Override
+        void write(Path file, Collection<Orders> orders) throws IOException {
+            OrderBinaryCodec.write(file, orders);
+        }
+    };
+
+    private final String extension;
+
+    OrderFileFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public static OrderFileFormat fromSystemProperties() {
+        return valueOf(System.getProperty("flooring.orders.format", "csv").trim().toUpperCase());
+    }
+
+    // The format a file is written in, judged by its extension, or null if it is not an order file format.
+    static OrderFileFormat of(Path file) {
+        String name = file.getFileName().toString();
+        for (OrderFileFormat format : values()) {
+            if (name.endsWith(format.extension)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    public String extension() {
+        return extension;
+    }
+
+    // The other format, used to find a date still saved the other way after the format is switched.
+    OrderFileFormat other() {
+        return this == CSV ? BINARY : CSV;
+    }
+
+    abstract List<Orders> read(Path file) throws IOException;
+
+    // Writes the file and forces it to disk before returning, so it can be renamed over the last version.
+    abstract void write(Path file, Collection<Orders> orders) throws IOException;
+}
@@ -0,0 +1,321 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.model.Orders;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads order rows straight from the bytes of an order file instead of going through Scanner and
+ * String.split(). A file is read into one buffer, delimiters are found by scanning bytes, and numbers are
+ * decoded into BigDecimals without building an intermediate String for each field.
+ * Fields may be quoted as described in RFC 4180, so a customer name such as "Smith, John" survives a
+ * round trip through the file instead of shifting every column after it.
+ */
+final class OrderFileParser {
+
+    private static final int FIELD_COUNT = 12;
+
+    // Longest run of digits that always fits in a long, longer numbers use the BigDecimal(String) path.
+    private static final int MAX_FAST_DIGITS = 18;
+
+    // Small cache for the State and ProductType columns, which repeat the same handful of values.
+    private static final int CACHE_SIZE = 32;
+
+    private final ByteBuffer data;
+    private final int limit;
+    private int pos;
+
+    // Bounds of the field most recently found by nextField().
+    private int fieldStart;
+    private int fieldEnd;
+    private boolean fieldQuoted;
+    private boolean endOfRecord;
+
+    private byte[] scratch = new byte[64];
+    private final byte[][] cachedBytes = new byte[CACHE_SIZE][];
+    private final String[] cachedStrings = new String[CACHE_SIZE];
+
+    private OrderFileParser(ByteBuffer data) {
+        this.data = data;
+        this.limit = data.limit();
+    }
+
+    // ----------------------- ENTRY POINTS ------------------------
+
+    // Reads every order in a file, skipping the header line.
+    static List<Orders> readFile(Path file) throws IOException {
+        try {
+            return new OrderFileParser(readBytes(file)).readAll(true);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed order data in " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads a whole file into a heap buffer. Order files are not memory mapped: a mapping stays open until its
+     * buffer is garbage collected, and on Windows an open mapping stops the next save from renaming a new file
+     * over this one.
+     */
+    static ByteBuffer readBytes(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Order file too large to read: " + file);
+            }
+            ByteBuffer data = ByteBuffer.allocate((int) size);
+            while (data.hasRemaining() && channel.read(data) >= 0) {
+                // keep reading until the buffer is full or the file ends
+            }
+            return data.flip();
+        }
+    }
+
+    // Reads a single row that has already been split from its file, e.g. a journal record.
+    static Orders parseLine(String line) {
+        return new OrderFileParser(ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8))).readOrder();
+    }
+
+    // Quotes a text field when it holds a character that would otherwise break the row.
+    static String quote(String field) {
+        if (field == null || field.chars().noneMatch(c -> c == ',' || c == '"' || c == '\n' || c == '\r')) {
+            return field;
+        }
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+
+    // ----------------------- ROWS ------------------------
+
+    private List<Orders> readAll(boolean skipHeader) {
+        List<Orders> orders = new ArrayList<>();
+
+        if (skipHeader) {
+            skipRecord();
+        }
+        while (pos < limit) {
+            byte b = data.get(pos);
+            if (b == '\n' || b == '\r') {
+                pos++; // blank line
+                continue;
+            }
+            orders.add(readOrder());
+        }
+        return orders;
+    }
+
+    private Orders readOrder() {
+        endOfRecord = false;
+
+        Orders order = new Orders();
+        nextField();
+        order.setOrderNumber(intField());
+        nextField();
+        order.setCustomerName(stringField());
+        nextField();
+        order.setState(cachedStringField());
+        nextField();
+        order.setTaxRate(decimalField());
+        nextField();
+        order.setProductType(cachedStringField());
+        nextField();
+        order.setArea(decimalField());
+        nextField();
+        order.setCostPerSquareFoot(decimalField());
+        nextField();
+        order.setLaborCostPerSquareFoot(decimalField());
+        nextField();
+        order.setMaterialCost(decimalField());
+        nextField();
+        order.setLaborCost(decimalField());
+        nextField();
+        order.setTax(decimalField());
+        nextField();
+        order.setTotal(decimalField());
+
+        if (!endOfRecord) {
+            skipRecord(); // ignore any extra trailing columns
+        }
+        return order;
+    }
+
+    // Moves past the rest of the current line, e.g. the header.
+    private void skipRecord() {
+        while (pos < limit) {
+            byte b = data.get(pos);
+            if (b == '\n' || b == '\r') {
+                consumeNewline();
+                return;
+            }
+            pos++;
+        }
+    }
+
+    // ----------------------- FIELDS ------------------------
+
+    // Finds the bounds of the next field and moves past its delimiter.
+    private void nextField() {
+        if (endOfRecord) {
+            throw new IllegalArgumentException("expected " + FIELD_COUNT + " fields in row ending at byte " + pos);
+        }
+
+        if (pos < limit && data.get(pos) == '"') {
+            fieldQuoted = true;
+            fieldStart = ++pos;
+            while (true) {
+                if (pos >= limit) {
+                    throw new IllegalArgumentException("unterminated quoted field starting at byte " + fieldStart);
+                }
+                if (data.get(pos) == '"') {
+                    if (pos + 1 < limit && data.get(pos + 1) == '"') {
+                        pos += 2; // escaped quote
+                        continue;
+                    }
+                    fieldEnd = pos++;
+                    break;
+                }
+                pos++;
+            }
+        } else {
+            fieldQuoted = false;
+            fieldStart = pos;
+            while (pos < limit) {
+                byte b = data.get(pos);
+                if (b == ',' || b == '\n' || b == '\r') {
+                    break;
+                }
+                pos++;
+            }
+            fieldEnd = pos;
+        }
+
+        if (pos >= limit) {
+            endOfRecord = true;
+            return;
+        }
+        byte b = data.get(pos);
+        if (b == ',') {
+            pos++;
+        } else if (b == '\n' || b == '\r') {
+            consumeNewline();
+            endOfRecord = true;
+        } else {
+            throw new IllegalArgumentException("unexpected character after quoted field at byte " + pos);
+        }
+    }
+
+    private void consumeNewline() {
+        if (data.get(pos) == '\r' && pos + 1 < limit && data.get(pos + 1) == '\n') {
+            pos++;
+        }
+        pos++;
+    }
+
+    private int intField() {
+        int length = fieldEnd - fieldStart;
+        if (length == 0 || length > 9) {
+            return Integer.parseInt(fieldText()); // lets Integer report the same error as before
+        }
+
+        int value = 0;
+        for (int i = fieldStart; i < fieldEnd; i++) {
+            int digit = data.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.parseInt(fieldText());
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    // Decodes plain decimals like 1251.45 directly. Anything unusual goes through new BigDecimal(String).
+    private BigDecimal decimalField() {
+        long unscaled = 0;
+        int scale = 0;
+        int digits = 0;
+        boolean negative = false;
+        boolean seenPoint = false;
+
+        int i = fieldStart;
+        if (i < fieldEnd && (data.get(i) == '-' || data.get(i) == '+')) {
+            negative = data.get(i) == '-';
+            i++;
+        }
+        for (; i < fieldEnd; i++) {
+            byte b = data.get(i);
+            if (b == '.' && !seenPoint) {
+                seenPoint = true;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9 || ++digits > MAX_FAST_DIGITS) {
+                return new BigDecimal(fieldText());
+            }
+            unscaled = unscaled * 10 + digit;
+            if (seenPoint) {
+                scale++;
+            }
+        }
+        if (digits == 0) {
+            return new BigDecimal(fieldText());
+        }
+        return BigDecimal.valueOf(negative ? -unscaled : unscaled, scale);
+    }
+
+    private String stringField() {
+        int length = copyField();
+        return new String(scratch, 0, length, StandardCharsets.UTF_8);
+    }
+
+    // Same as stringField() but reuses an earlier String when the bytes match one seen before.
+    private String cachedStringField() {
+        int length = copyField();
+        int hash = 1;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + scratch[i];
+        }
+        int slot = (hash & 0x7fffffff) % CACHE_SIZE;
+
+        byte[] cached = cachedBytes[slot];
+        if (cached != null && Arrays.equals(cached, 0, cached.length, scratch, 0, length)) {
+            return cachedStrings[slot];
+        }
+        String value = new String(scratch, 0, length, StandardCharsets.UTF_8);
+        cachedBytes[slot] = Arrays.copyOf(scratch, length);
+        cachedStrings[slot] = value;
+        return value;
+    }
+
+    private String fieldText() {
+        return new String(scratch, 0, copyField(), StandardCharsets.UTF_8);
+    }
+
+    // Copies the current field into scratch, collapsing "" to " inside quoted fields. Returns its length.
+    private int copyField() {
+        int length = fieldEnd - fieldStart;
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        if (!fieldQuoted) {
+            data.get(fieldStart, scratch, 0, length);
+            return length;
+        }
+
+        int out = 0;
+        for (int i = fieldStart; i < fieldEnd; i++) {
+            byte b = data.get(i);
+            scratch[out++] = b;
+            if (b == '"') {
+                i++; // skip the second quote of an escaped pair
+            }
+        }
+        return out;
+    }
+}
@@ -0,0 +1,30 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.model.Orders;
+
+import java.util.Collection;
+
+/**
+ * How OrderDaoFileImpl holds a loaded date's orders in memory.
+ * OBJECTS keeps the Orders objects themselves. COLUMNAR keeps each field in a primitive array, with money and
+ * area as unscaled digits and scale and State and ProductType as codes into a shared dictionary, and only builds
+ * Orders objects when they are asked for. It uses a fraction of the heap, at the cost of building objects on reads.
+ * Set with -Dflooring.orders.layout=objects|columnar
+ */
+public enum OrderLayout {
+
+    OBJECTS,
+    COLUMNAR;
+
+    public static OrderLayout fromSystemProperties() {
+        return valueOf(System.getProperty("flooring.orders.layout", "objects").trim().toUpperCase());
+    }
+
+    DayOrders empty() {
+        return this == COLUMNAR ? ColumnarDayOrders.EMPTY : ObjectDayOrders.EMPTY;
+    }
+
+    DayOrders of(Collection<Orders> orders) {
+        return this == COLUMNAR ? ColumnarDayOrders.of(orders) : ObjectDayOrders.of(orders);
+    }
+}
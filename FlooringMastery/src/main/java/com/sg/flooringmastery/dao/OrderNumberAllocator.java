@@ -0,0 +1,16 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+
+/**
+ * This interface allows the ServiceLayer to get order numbers that are unique across every date,
+ * including between runs of the program.
+ */
+
+public interface OrderNumberAllocator {
+
+    int nextOrderNumber() throws PersistenceException;
+
+    // Reserves count consecutive numbers and returns the first one, e.g. for a bulk import.
+    int reserveBlock(int count) throws PersistenceException;
+}
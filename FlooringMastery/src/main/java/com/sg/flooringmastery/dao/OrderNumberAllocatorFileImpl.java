@@ -0,0 +1,138 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.model.DailyOrders;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Hands out order numbers from an in memory counter and keeps a high-water mark in a small file.
+ * Numbers are reserved in blocks: the file is updated before any number in a new block is handed out, so
+ * after a restart (or a crash) counting resumes above every number that could have been used. Some numbers
+ * at the end of a block may be skipped, but none is ever given out twice.
+ * The first time the program runs without the file, the highest number the order Dao holds is used, whichever
+ * profile provides it.
+ * Copies of the program sharing SampleFileData reserve their blocks from the same file, one at a time under an
+ * operating system lock on a lock file beside it, each block starting above the mark the last one saved.
+ */
+@Repository
+public class OrderNumberAllocatorFileImpl implements OrderNumberAllocator {
+
+    private static final Path HIGH_WATER_FILE = Paths.get("SampleFileData/Data/OrderNumbers.txt");
+
+    private final Path highWaterFile;
+
+    // Only read the first time, when there is no file yet.
+    private ObjectFactory<OrderDao> orderDao;
+
+    // How many numbers are reserved each time the file is written.
+    private static final int RESERVE_AHEAD = Integer.getInteger("flooring.orderNumbers.reserveAhead", 100);
+
+    private final AtomicInteger next = new AtomicInteger();
+    private volatile int reservedUpTo = -1; // -1 until the file or the orders have been read
+
+    public OrderNumberAllocatorFileImpl() {
+        this(HIGH_WATER_FILE);
+    }
+
+    public OrderNumberAllocatorFileImpl(Path highWaterFile) {
+        this.highWaterFile = highWaterFile;
+    }
+
+    @Autowired
+    public void setOrderDao(ObjectFactory<OrderDao> orderDao) {
+        this.orderDao = orderDao;
+    }
+
+    @Override
+    public int nextOrderNumber() throws PersistenceException {
+        return reserveBlock(1);
+    }
+
+    // Lock free unless the current block has run out.
+    @Override
+    public int reserveBlock(int count) throws PersistenceException {
+        if (count < 1) {
+            throw new IllegalArgumentException("count must be at least 1");
+        }
+
+        while (true) {
+            int first = next.get();
+            long last = (long) first + count - 1;
+            if (reservedUpTo >= 0 && last <= reservedUpTo) {
+                if (next.compareAndSet(first, first + count)) {
+                    return first;
+                }
+                continue;
+            }
+            synchronized (this) {
+                if (reservedUpTo < 0 || next.get() + (long) count - 1 > reservedUpTo) {
+                    reserve(count);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reserves a new block of at least count numbers. It starts above the saved high-water mark, or above the
+     * orders held if there is none yet, which is above this instance's own numbers and any another instance has
+     * reserved since. Threads still taking numbers from the old block only ever move next below the saved mark,
+     * so moving next up to the new block cannot hand out a number twice.
+     */
+    private void reserve(int count) throws PersistenceException {
+        Path lockFile = highWaterFile.resolveSibling(highWaterFile.getFileName() + ".lock");
+        try {
+            FileLocks.withLock(lockFile, () -> {
+                int highest = Files.exists(highWaterFile)
+                        ? Integer.parseInt(Files.readString(highWaterFile, StandardCharsets.UTF_8).trim())
+                        : highestHeld();
+                int first = Math.max(next.get(), highest + 1);
+                int mark = Math.addExact(first, count - 1 + RESERVE_AHEAD);
+                saveMark(mark);
+                // next moves first, so no thread can take a span from below it into another instance's block
+                next.set(first);
+                reservedUpTo = mark;
+            });
+        } catch (IOException | NumberFormatException e) {
+            throw new PersistenceException("Could not read order number high-water mark.", e);
+        }
+    }
+
+    // Each date's orders come sorted by order number, so only the last of each is looked at.
+    private int highestHeld() throws PersistenceException {
+        try (Stream<DailyOrders> days = orderDao.getObject().streamAllOrders()) {
+            return days.filter(day -> !day.orders().isEmpty())
+                    .mapToInt(day -> day.orders().get(day.orders().size() - 1).getOrderNumber())
+                    .max().orElse(0);
+        } catch (UncheckedIOException e) {
+            throw new PersistenceException("Could not read the orders to find the highest order number.",
+                    e.getCause());
+        }
+    }
+
+    // Saves the new mark to disk, rename included, before any number up to it is handed out. Caller holds the
+    // lock file.
+    private void saveMark(int mark) throws PersistenceException {
+        Path temp = highWaterFile.resolveSibling(highWaterFile.getFileName() + ".tmp");
+        try {
+            Files.createDirectories(highWaterFile.toAbsolutePath().getParent());
+            Files.writeString(temp, Integer.toString(mark), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.WRITE, StandardOpenOption.SYNC);
+            DurableFiles.replace(temp, highWaterFile);
+        } catch (IOException e) {
+            throw new PersistenceException("Could not save order number high-water mark.", e);
+        }
+    }
+}
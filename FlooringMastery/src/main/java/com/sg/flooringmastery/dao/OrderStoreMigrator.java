@@ -0,0 +1,162 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.dao.btree.BTree;
+import com.sg.flooringmastery.dao.btree.BufferPool;
+import com.sg.flooringmastery.dao.btree.PageFile;
+import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+
+/**
+ * Moves orders between the folder of daily order files and the single file store used by OrderDaoBTreeImpl.
+ * to-btree builds the store from the folder, replacing it if it exists, e.g. after a crash left it damaged.
+ * to-csv writes the store back out as one CSV file per date and deletes the files of dates that no longer
+ * have orders, so the folder matches the store. Either way the new data is written next to the old and moved
+ * into place. Run it while the application is stopped.
+ *
+ * Usage: OrderStoreMigrator to-btree|to-csv [orderFolder] [storeFile]
+ */
+public final class OrderStoreMigrator {
+
+    private static final Path ORDER_FOLDER = Paths.get("SampleFileData/Orders");
+    private static final Path STORE_FILE = Paths.get("SampleFileData/Store/orders.btree");
+    private static final DateTimeFormatter FILE_DATE_FORMAT = DateTimeFormatter.ofPattern("MMddyyyy");
+    private static final int BUFFER_PAGES = 1_024;
+
+    private OrderStoreMigrator() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 3) {
+            usage();
+            return;
+        }
+        Path folder = args.length >= 2 ? Paths.get(args[1]) : ORDER_FOLDER;
+        Path store = args.length == 3 ? Paths.get(args[2]) : STORE_FILE;
+
+        long start = System.nanoTime();
+        switch (args[0]) {
+            case "to-btree" -> {
+                long orders = toStore(folder, store);
+                System.out.printf("Stored %d orders from %s in %s in %d ms.%n", orders, folder, store,
+                        (System.nanoTime() - start) / 1_000_000);
+            }
+            case "to-csv" -> {
+                int dates = toFolder(store, folder);
+                System.out.printf("Wrote %d order files from %s to %s in %d ms.%n", dates, store, folder,
+                        (System.nanoTime() - start) / 1_000_000);
+            }
+            default -> usage();
+        }
+    }
+
+    // Builds a new store holding every order in the folder. Returns how many orders it holds.
+    public static long toStore(Path folder, Path storeFile) throws IOException {
+        Path parent = storeFile.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = storeFile.resolveSibling(storeFile.getFileName() + ".tmp");
+        Files.deleteIfExists(temp);
+
+        long orders;
+        try (BTree tree = new BTree(new BufferPool(PageFile.open(temp), BUFFER_PAGES))) {
+            OrderArchive archive = new OrderArchive(folder);
+            // Dates and order numbers both arrive in order, so every insert is an append.
+            archive.forEachDate(archive.listOrderFiles(), (date, dayOrders) -> {
+                for (Orders order : dayOrders) {
+                    tree.put(OrderDaoBTreeImpl.key(date, order.getOrderNumber()), encode(order));
+                }
+            });
+            orders = tree.size();
+        }
+        move(temp, storeFile);
+        return orders;
+    }
+
+    // Writes every date in the store to the folder as a CSV file. Returns how many files were written.
+    public static int toFolder(Path storeFile, Path folder) throws IOException {
+        Files.createDirectories(folder);
+        NavigableMap<LocalDate, Path> previous = new OrderArchive(folder).listOrderFiles();
+        Set<LocalDate> written = new HashSet<>();
+
+        try (BTree tree = new BTree(new BufferPool(PageFile.open(storeFile), BUFFER_PAGES))) {
+            List<Orders> day = new ArrayList<>();
+            long[] dayKey = {Long.MIN_VALUE};
+            tree.scan(Long.MIN_VALUE, Long.MAX_VALUE, (key, value) -> {
+                if (key >> 32 != dayKey[0] && !day.isEmpty()) {
+                    written.add(writeDate(folder, LocalDate.ofEpochDay(dayKey[0]), day));
+                    day.clear();
+                }
+                dayKey[0] = key >> 32;
+                day.add(OrderDaoBTreeImpl.decode((int) key, value));
+                return true;
+            });
+            if (!day.isEmpty()) {
+                written.add(writeDate(folder, LocalDate.ofEpochDay(dayKey[0]), day));
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // Binary files are stale now either way, and so are CSV files of dates the store has no orders for.
+        for (Map.Entry<LocalDate, Path> file : previous.entrySet()) {
+            if (!written.contains(file.getKey())) {
+                Files.deleteIfExists(csvFile(folder, file.getKey()));
+            }
+            if (OrderFileFormat.of(file.getValue()) != OrderFileFormat.CSV) {
+                Files.deleteIfExists(file.getValue());
+            }
+        }
+        return written.size();
+    }
+
+    private static LocalDate writeDate(Path folder, LocalDate date, List<Orders> orders) {
+        try {
+            Path destination = csvFile(folder, date);
+            Path temp = destination.resolveSibling(destination.getFileName() + ".tmp");
+            OrderFileFormat.CSV.write(temp, orders);
+            move(temp, destination);
+            return date;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Path csvFile(Path folder, LocalDate date) {
+        return folder.resolve("Orders_" + date.format(FILE_DATE_FORMAT) + OrderFileFormat.CSV.extension());
+    }
+
+    private static byte[] encode(Orders order) throws IOException {
+        try {
+            return OrderDaoBTreeImpl.encode(order);
+        } catch (PersistenceException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    private static void move(Path temp, Path destination) throws IOException {
+        try {
+            Files.move(temp, destination, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, destination, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void usage() {
+        System.out.println("Usage: OrderStoreMigrator to-btree|to-csv [orderFolder] [storeFile]");
+    }
+}
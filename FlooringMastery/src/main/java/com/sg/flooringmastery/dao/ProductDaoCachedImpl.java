@@ -0,0 +1,126 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.metrics.Counter;
+import com.sg.flooringmastery.metrics.MetricsRegistry;
+import com.sg.flooringmastery.metrics.Timer;
+import com.sg.flooringmastery.model.Products;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.io.FileNotFoundException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Product Dao that reads 'Products.txt' once and answers every lookup from memory.
+ * The catalogue is reloaded when the file changes on disk and swapped in as a whole, so a reader sees
+ * either the old catalogue or the new one, never a half loaded mix. DataFileWatcher only reports the change
+ * once the file has settled, so whatever it then holds is taken as the new catalogue, however many products
+ * that is. A file that cannot be read or holds no products keeps the catalogue in use; the rejection is
+ * counted in catalogue.product.rejectedReloads and reported on stderr, and restarting loads the file as it is.
+ * Starting with -Dspring.profiles.active=file-catalogue switches back to ProductDaoFileImpl, and jdbc to
+ * ProductDaoJdbcImpl.
+ */
+@Repository
+@Primary
+@Profile("!file-catalogue & !jdbc")
+public class ProductDaoCachedImpl implements ProductDao {
+
+    // Immutable snapshot of the product file. Keys are lower case product types.
+    private record Catalogue(List<Products> products, Map<String, Products> byType) {
+    }
+
+    private final ProductDaoFileImpl fileDao;
+    private volatile Catalogue catalogue;
+
+    private Timer lookupTimer = new Timer();
+    private Counter notFound = new Counter();
+    private Counter reloads = new Counter();
+    private Counter rejectedReloads = new Counter();
+
+    @Autowired
+    public ProductDaoCachedImpl(ProductDaoFileImpl fileDao, DataFileWatcher watcher) {
+        this.fileDao = fileDao;
+        watcher.watch(fileDao.getProductFile(), this::reloadQuietly);
+    }
+
+    @Autowired(required = false)
+    public void setMetrics(MetricsRegistry metrics) {
+        lookupTimer = metrics.timer("catalogue.product.lookup");
+        notFound = metrics.counter("catalogue.product.notFound");
+        reloads = metrics.counter("catalogue.product.reloads");
+        rejectedReloads = metrics.counter("catalogue.product.rejectedReloads");
+    }
+
+    @Override
+    public List<Products> getAllProducts() throws FileNotFoundException, PersistenceException {
+        return catalogue().products();
+    }
+
+    // Single map lookup, no file access.
+    @Override
+    public Products getProductByType(String productType) throws FileNotFoundException, PersistenceException {
+        if (productType == null) {
+            return null;
+        }
+        long start = lookupTimer.start();
+        Products product = catalogue().byType().get(productType.trim().toLowerCase(Locale.ROOT));
+        lookupTimer.stop(start);
+        if (product == null) {
+            notFound.increment();
+        }
+        return product;
+    }
+
+    private Catalogue catalogue() throws FileNotFoundException, PersistenceException {
+        Catalogue current = catalogue;
+        if (current == null) {
+            synchronized (this) {
+                current = catalogue;
+                if (current == null) {
+                    current = load();
+                    catalogue = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    // Builds a complete new catalogue before anyone can see it.
+    private Catalogue load() throws FileNotFoundException, PersistenceException {
+        List<Products> products = List.copyOf(fileDao.getAllProducts());
+        Map<String, Products> byType = new HashMap<>();
+        for (Products product : products) {
+            byType.put(product.getProductType().toLowerCase(Locale.ROOT), product);
+        }
+        return new Catalogue(products, Map.copyOf(byType));
+    }
+
+    // Called by the watcher thread. A file that cannot be read or holds no products keeps the previous catalogue.
+    private void reloadQuietly() {
+        try {
+            Catalogue reloaded = load();
+            if (reloaded.products().isEmpty()) {
+                rejectReload("it holds no products");
+                return;
+            }
+            synchronized (this) {
+                catalogue = reloaded;
+            }
+            reloads.increment();
+        } catch (FileNotFoundException | PersistenceException | RuntimeException e) {
+            rejectReload("it could not be read: " + e);
+        }
+    }
+
+    private void rejectReload(String reason) {
+        rejectedReloads.increment();
+        System.err.println("Kept the product catalogue in use, " + fileDao.getProductFile() + " changed but "
+                + reason);
+    }
+}
@@ -1,13 +1,18 @@
 package com.sg.flooringmastery.dao;
 
+import com.sg.flooringmastery.metrics.MetricsRegistry;
+import com.sg.flooringmastery.metrics.Timer;
 import com.sg.flooringmastery.model.Products;
 import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import java.io.BufferedReader;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
@@ -24,42 +29,73 @@ public class ProductDaoFileImpl implements ProductDao {
     private static final String PRODUCT_FILE = "SampleFileData/Data/Products.txt";
     private static final String DELIMITER =",";
 
+    private final Path productFile;
+    private Timer lookupTimer = new Timer();
+
+    public ProductDaoFileImpl() {
+        this(Paths.get(PRODUCT_FILE));
+    }
+
+    // Lets tools and benchmarks read a different file.
+    public ProductDaoFileImpl(Path productFile) {
+        this.productFile = productFile;
+    }
+
+    public Path getProductFile() {
+        return productFile;
+    }
+
     // Loads all the products contained within the 'Products.txt' File into an ArrayList.
     @Override
     public List<Products> getAllProducts() throws FileNotFoundException, PersistenceException {
         List<Products> productList = new ArrayList<>();
-        Scanner scanner = new Scanner(new BufferedReader(new FileReader(PRODUCT_FILE)));
 
-        if (scanner.hasNextLine()) {
-            scanner.nextLine(); // skip header
-        }
+        try (Scanner scanner = new Scanner(new BufferedReader(new FileReader(productFile.toFile())))) {
+            if (scanner.hasNextLine()) {
+                scanner.nextLine(); // skip header
+            }
 
-        while (scanner.hasNextLine()) {
-            String currentLine = scanner.nextLine();
-            String[] tokens = currentLine.split(DELIMITER);
+            while (scanner.hasNextLine()) {
+                String currentLine = scanner.nextLine();
+                if (currentLine.isBlank()) {
+                    continue;
+                }
+                String[] tokens = currentLine.split(DELIMITER);
 
-            // data unmarshalling on smaller scale;
-            Products product = new Products();
-            product.setProductType(tokens[0]);
-            product.setCostPerSquareFoot(new BigDecimal(tokens[1]));
-            product.setLabourCostPerSquareFoot(new BigDecimal(tokens[2]));
-            productList.add(product);
+                // data unmarshalling on smaller scale;
+                Products product = new Products();
+                product.setProductType(tokens[0]);
+                product.setCostPerSquareFoot(new BigDecimal(tokens[1]));
+                product.setLabourCostPerSquareFoot(new BigDecimal(tokens[2]));
+                productList.add(product);
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new PersistenceException("Could not read product data from " + productFile, e);
         }
 
-        scanner.close();
         return productList;
     }
 
     // Retrieves a matching object from the file dependant on the type parameter.
     @Override
     public Products getProductByType(String productType) throws FileNotFoundException, PersistenceException {
-
-        List<Products> allProducts = getAllProducts();
-        for(Products t: allProducts){
-            if(t.getProductType().equalsIgnoreCase(productType)){
-                return t;
+        long start = lookupTimer.start();
+        try {
+            List<Products> allProducts = getAllProducts();
+            for(Products t: allProducts){
+                if(t.getProductType().equalsIgnoreCase(productType)){
+                    return t;
+                }
             }
+            return null;
+        } finally {
+            lookupTimer.stop(start);
         }
-        return null;
+    }
+
+    // Used when the file-catalogue profile makes this the Dao that answers lookups.
+    @Autowired(required = false)
+    public void setMetrics(MetricsRegistry metrics) {
+        lookupTimer = metrics.timer("catalogue.product.lookup");
     }
 }
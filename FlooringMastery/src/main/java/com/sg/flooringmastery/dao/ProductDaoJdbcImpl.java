@@ -0,0 +1,119 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.dao.jdbc.Tables;
+import com.sg.flooringmastery.metrics.MetricsRegistry;
+import com.sg.flooringmastery.metrics.Timer;
+import com.sg.flooringmastery.model.Products;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.io.FileNotFoundException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Product Dao that reads the catalogue from the products table of the jdbc profile's database.
+ * The table is created and filled from 'Products.txt' the first time the Dao starts against a database, and
+ * is keyed by the lower case product type so a lookup is one primary key read. Costs are stored rounded to two
+ * decimal places, see Tables.amount().
+ */
+@Repository
+@Primary
+@Profile("jdbc")
+public class ProductDaoJdbcImpl implements ProductDao {
+
+    private static final String SELECT_ALL = "SELECT product_type, cost_per_square_foot, "
+            + "labor_cost_per_square_foot FROM products ORDER BY product_type";
+    private static final String SELECT_ONE = "SELECT product_type, cost_per_square_foot, "
+            + "labor_cost_per_square_foot FROM products WHERE product_key = ?";
+
+    private final DataSource dataSource;
+    private Timer lookupTimer = new Timer();
+
+    @Autowired
+    public ProductDaoJdbcImpl(DataSource dataSource, ProductDaoFileImpl fileDao) {
+        this.dataSource = dataSource;
+        try (Connection connection = dataSource.getConnection()) {
+            boolean created = Tables.createIfMissing(connection, "products",
+                    "CREATE TABLE products (product_key VARCHAR(64) PRIMARY KEY, "
+                            + "product_type VARCHAR(64) NOT NULL, cost_per_square_foot DECIMAL(19, 2) NOT NULL, "
+                            + "labor_cost_per_square_foot DECIMAL(19, 2) NOT NULL)");
+            if (created) {
+                load(connection, fileDao.getAllProducts());
+            }
+        } catch (SQLException | FileNotFoundException | PersistenceException e) {
+            throw new IllegalStateException("Could not set up the products table from "
+                    + fileDao.getProductFile(), e);
+        }
+    }
+
+    private static void load(Connection connection, List<Products> products) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO products (product_key, "
+                + "product_type, cost_per_square_foot, labor_cost_per_square_foot) VALUES (?, ?, ?, ?)")) {
+            for (Products product : products) {
+                insert.setString(1, product.getProductType().trim().toLowerCase(Locale.ROOT));
+                insert.setString(2, product.getProductType());
+                insert.setBigDecimal(3, Tables.amount(product.getCostPerSquareFoot()));
+                insert.setBigDecimal(4, Tables.amount(product.getLabourCostPerSquareFoot()));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    @Autowired(required = false)
+    public void setMetrics(MetricsRegistry metrics) {
+        lookupTimer = metrics.timer("catalogue.product.lookup");
+    }
+
+    @Override
+    public List<Products> getAllProducts() throws PersistenceException {
+        List<Products> products = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement select = connection.prepareStatement(SELECT_ALL);
+             ResultSet result = select.executeQuery()) {
+            while (result.next()) {
+                products.add(readProduct(result));
+            }
+        } catch (SQLException e) {
+            throw new PersistenceException("Could not read products.", e);
+        }
+        return products;
+    }
+
+    @Override
+    public Products getProductByType(String productType) throws PersistenceException {
+        if (productType == null) {
+            return null;
+        }
+        long start = lookupTimer.start();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement select = connection.prepareStatement(SELECT_ONE)) {
+            select.setString(1, productType.trim().toLowerCase(Locale.ROOT));
+            try (ResultSet result = select.executeQuery()) {
+                return result.next() ? readProduct(result) : null;
+            }
+        } catch (SQLException e) {
+            throw new PersistenceException("Could not read product " + productType + ".", e);
+        } finally {
+            lookupTimer.stop(start);
+        }
+    }
+
+    private static Products readProduct(ResultSet result) throws SQLException {
+        Products product = new Products();
+        product.setProductType(result.getString(1));
+        product.setCostPerSquareFoot(result.getBigDecimal(2));
+        product.setLabourCostPerSquareFoot(result.getBigDecimal(3));
+        return product;
+    }
+}
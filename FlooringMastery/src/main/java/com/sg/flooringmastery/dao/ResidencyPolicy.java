@@ -0,0 +1,22 @@
+package com.sg.flooringmastery.dao;
+
+/**
+ * Limits on how much of the order archive OrderDaoFileImpl keeps in memory.
+ * A limit of 0 means no limit. When either limit is passed the least recently used dates are dropped,
+ * after saving them if they have unsaved changes.
+ * Set with -Dflooring.orders.maxResidentDates=... and -Dflooring.orders.maxResidentOrders=...
+ */
+public record ResidencyPolicy(int maxResidentDates, long maxResidentOrders) {
+
+    public static final ResidencyPolicy UNLIMITED = new ResidencyPolicy(0, 0);
+
+    public static ResidencyPolicy fromSystemProperties() {
+        return new ResidencyPolicy(Integer.getInteger("flooring.orders.maxResidentDates", 0),
+                Long.getLong("flooring.orders.maxResidentOrders", 0L));
+    }
+
+    boolean exceeded(int residentDates, long residentOrders) {
+        return (maxResidentDates > 0 && residentDates > maxResidentDates)
+                || (maxResidentOrders > 0 && residentOrders > maxResidentOrders);
+    }
+}
@@ -0,0 +1,128 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.metrics.Counter;
+import com.sg.flooringmastery.metrics.MetricsRegistry;
+import com.sg.flooringmastery.metrics.Timer;
+import com.sg.flooringmastery.model.Taxes;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import java.io.FileNotFoundException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Tax Dao that reads 'Taxes.txt' once and answers every lookup from memory.
+ * Each state can be found by its abbreviation (TX) or its full name (Texas), in any case, with one map lookup.
+ * The index is rebuilt when the file changes on disk and swapped in as a whole. DataFileWatcher only reports
+ * the change once the file has settled, so whatever it then holds is taken as the new index, however many
+ * states that is. A file that cannot be read or holds no states keeps the index in use; the rejection is counted
+ * in catalogue.tax.rejectedReloads and reported on stderr, and restarting loads the file as it is.
+ * Starting with -Dspring.profiles.active=file-catalogue switches back to TaxDaoFileImpl, and jdbc to
+ * TaxDaoJdbcImpl.
+ */
+@Repository
+@Primary
+@Profile("!file-catalogue & !jdbc")
+public class TaxDaoCachedImpl implements TaxDao {
+
+    // Immutable snapshot of the tax file. Keys are lower case abbreviations and state names.
+    private record TaxIndex(List<Taxes> taxes, Map<String, Taxes> byState) {
+    }
+
+    private final TaxDaoFileImpl fileDao;
+    private volatile TaxIndex index;
+
+    private Timer lookupTimer = new Timer();
+    private Counter notFound = new Counter();
+    private Counter reloads = new Counter();
+    private Counter rejectedReloads = new Counter();
+
+    @Autowired
+    public TaxDaoCachedImpl(TaxDaoFileImpl fileDao, DataFileWatcher watcher) {
+        this.fileDao = fileDao;
+        watcher.watch(fileDao.getTaxFile(), this::reloadQuietly);
+    }
+
+    @Autowired(required = false)
+    public void setMetrics(MetricsRegistry metrics) {
+        lookupTimer = metrics.timer("catalogue.tax.lookup");
+        notFound = metrics.counter("catalogue.tax.notFound");
+        reloads = metrics.counter("catalogue.tax.reloads");
+        rejectedReloads = metrics.counter("catalogue.tax.rejectedReloads");
+    }
+
+    @Override
+    public List<Taxes> getAllTaxes() throws FileNotFoundException, PersistenceException {
+        return index().taxes();
+    }
+
+    // Accepts either the abbreviation or the full state name.
+    @Override
+    public Taxes getTaxByState(String state) throws FileNotFoundException, PersistenceException {
+        if (state == null) {
+            return null;
+        }
+        long start = lookupTimer.start();
+        Taxes tax = index().byState().get(state.trim().toLowerCase(Locale.ROOT));
+        lookupTimer.stop(start);
+        if (tax == null) {
+            notFound.increment();
+        }
+        return tax;
+    }
+
+    private TaxIndex index() throws FileNotFoundException, PersistenceException {
+        TaxIndex current = index;
+        if (current == null) {
+            synchronized (this) {
+                current = index;
+                if (current == null) {
+                    current = load();
+                    index = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private TaxIndex load() throws FileNotFoundException, PersistenceException {
+        List<Taxes> taxes = List.copyOf(fileDao.getAllTaxes());
+        Map<String, Taxes> byState = new HashMap<>();
+        for (Taxes tax : taxes) {
+            byState.put(tax.getStateName().toLowerCase(Locale.ROOT), tax);
+        }
+        // Abbreviations win over a state name that happens to be spelt the same.
+        for (Taxes tax : taxes) {
+            byState.put(tax.getStateAbbreviation().toLowerCase(Locale.ROOT), tax);
+        }
+        return new TaxIndex(taxes, Map.copyOf(byState));
+    }
+
+    // Called by the watcher thread. A file that cannot be read or holds no states keeps the previous index.
+    private void reloadQuietly() {
+        try {
+            TaxIndex reloaded = load();
+            if (reloaded.taxes().isEmpty()) {
+                rejectReload("it holds no states");
+                return;
+            }
+            synchronized (this) {
+                index = reloaded;
+            }
+            reloads.increment();
+        } catch (FileNotFoundException | PersistenceException | RuntimeException e) {
+            rejectReload("it could not be read: " + e);
+        }
+    }
+
+    private void rejectReload(String reason) {
+        rejectedReloads.increment();
+        System.err.println("Kept the tax rates in use, " + fileDao.getTaxFile() + " changed but " + reason);
+    }
+}
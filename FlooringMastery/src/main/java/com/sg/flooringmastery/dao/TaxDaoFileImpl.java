@@ -1,6 +1,10 @@
 package com.sg.flooringmastery.dao;
 
+import com.sg.flooringmastery.metrics.MetricsRegistry;
+import com.sg.flooringmastery.metrics.Timer;
 import com.sg.flooringmastery.model.Taxes;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 
 import java.io.BufferedReader;
@@ -8,6 +12,8 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
@@ -24,22 +30,44 @@ public class TaxDaoFileImpl implements TaxDao{
     private static final String TAX_FILE = "SampleFileData/Data/Taxes.txt";
     private static final String DELIMITER =",";
 
+    private final Path taxFile;
+    private Timer lookupTimer = new Timer();
+
+    public TaxDaoFileImpl() {
+        this(Paths.get(TAX_FILE));
+    }
+
+    // Lets tools and benchmarks read a different file.
+    public TaxDaoFileImpl(Path taxFile) {
+        this.taxFile = taxFile;
+    }
+
+    public Path getTaxFile() {
+        return taxFile;
+    }
+
     //Retrives the whole Taxes.txt File and stores it within a List of Tax objects.
     @Override
-    public List<Taxes> getAllTaxes() throws FileNotFoundException {
+    public List<Taxes> getAllTaxes() throws FileNotFoundException, PersistenceException {
 
         List<Taxes> taxes = new ArrayList<>();
-        File file = new File(TAX_FILE);
+        File file = taxFile.toFile();
 
-        Scanner scanner = new Scanner(new BufferedReader(new FileReader(file)));
-        if (scanner.hasNextLine()) {
-            scanner.nextLine(); // skip header
-        }
+        try (Scanner scanner = new Scanner(new BufferedReader(new FileReader(file)))) {
+            if (scanner.hasNextLine()) {
+                scanner.nextLine(); // skip header
+            }
 
-        while (scanner.hasNextLine()) {
-            String currentLine = scanner.nextLine();
-            Taxes tax = unmarshallOrder(currentLine);
-            taxes.add(tax);
+            while (scanner.hasNextLine()) {
+                String currentLine = scanner.nextLine();
+                if (currentLine.isBlank()) {
+                    continue;
+                }
+                Taxes tax = unmarshallOrder(currentLine);
+                taxes.add(tax);
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            throw new PersistenceException("Could not read tax data from " + taxFile, e);
         }
 
         return taxes;
@@ -57,15 +85,26 @@ public class TaxDaoFileImpl implements TaxDao{
         return taxFromFile;
     }
 
-    // Retrieves a matching object from the file dependant on the type parameter.
+    // Retrieves a matching object from the file, by either the state abbreviation or the full state name.
     @Override
-    public Taxes getTaxByState(String state) throws FileNotFoundException {
-        List<Taxes> states = getAllTaxes();
-        for(Taxes t: states){
-            if(t.getStateName().equalsIgnoreCase(state)){
-                return t;
+    public Taxes getTaxByState(String state) throws FileNotFoundException, PersistenceException {
+        long start = lookupTimer.start();
+        try {
+            List<Taxes> states = getAllTaxes();
+            for(Taxes t: states){
+                if(t.getStateAbbreviation().equalsIgnoreCase(state) || t.getStateName().equalsIgnoreCase(state)){
+                    return t;
+                }
             }
+            return null;
+        } finally {
+            lookupTimer.stop(start);
         }
-        return null;
+    }
+
+    // Used when the file-catalogue profile makes this the Dao that answers lookups.
+    @Autowired(required = false)
+    public void setMetrics(MetricsRegistry metrics) {
+        lookupTimer = metrics.timer("catalogue.tax.lookup");
     }
 }
@@ -0,0 +1,123 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.dao.jdbc.Tables;
+import com.sg.flooringmastery.metrics.MetricsRegistry;
+import com.sg.flooringmastery.metrics.Timer;
+import com.sg.flooringmastery.model.Taxes;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.io.FileNotFoundException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tax Dao that reads tax rates from the taxes table of the jdbc profile's database.
+ * The table is created and filled from 'Taxes.txt' the first time the Dao starts against a database. It is
+ * keyed by the lower case state abbreviation, with an index on the lower case state name, so a lookup by
+ * either is an index read. Rates are stored rounded to two decimal places, see Tables.amount().
+ */
+@Repository
+@Primary
+@Profile("jdbc")
+public class TaxDaoJdbcImpl implements TaxDao {
+
+    private static final String SELECT_ALL = "SELECT state_abbreviation, state_name, tax_rate FROM taxes "
+            + "ORDER BY state_abbreviation";
+    private static final String SELECT_ONE = "SELECT state_abbreviation, state_name, tax_rate FROM taxes "
+            + "WHERE state_key = ? OR name_key = ?";
+
+    private final DataSource dataSource;
+    private Timer lookupTimer = new Timer();
+
+    @Autowired
+    public TaxDaoJdbcImpl(DataSource dataSource, TaxDaoFileImpl fileDao) {
+        this.dataSource = dataSource;
+        try (Connection connection = dataSource.getConnection()) {
+            boolean created = Tables.createIfMissing(connection, "taxes",
+                    "CREATE TABLE taxes (state_key VARCHAR(64) PRIMARY KEY, name_key VARCHAR(64) NOT NULL, "
+                            + "state_abbreviation VARCHAR(64) NOT NULL, state_name VARCHAR(64) NOT NULL, "
+                            + "tax_rate DECIMAL(19, 2) NOT NULL)",
+                    "CREATE INDEX taxes_name_key ON taxes (name_key)");
+            if (created) {
+                load(connection, fileDao.getAllTaxes());
+            }
+        } catch (SQLException | FileNotFoundException | PersistenceException e) {
+            throw new IllegalStateException("Could not set up the taxes table from " + fileDao.getTaxFile(), e);
+        }
+    }
+
+    private static void load(Connection connection, List<Taxes> taxes) throws SQLException {
+        try (PreparedStatement insert = connection.prepareStatement("INSERT INTO taxes (state_key, name_key, "
+                + "state_abbreviation, state_name, tax_rate) VALUES (?, ?, ?, ?, ?)")) {
+            for (Taxes tax : taxes) {
+                insert.setString(1, tax.getStateAbbreviation().trim().toLowerCase(Locale.ROOT));
+                insert.setString(2, tax.getStateName().trim().toLowerCase(Locale.ROOT));
+                insert.setString(3, tax.getStateAbbreviation());
+                insert.setString(4, tax.getStateName());
+                insert.setBigDecimal(5, Tables.amount(tax.getTaxRate()));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+    }
+
+    @Autowired(required = false)
+    public void setMetrics(MetricsRegistry metrics) {
+        lookupTimer = metrics.timer("catalogue.tax.lookup");
+    }
+
+    @Override
+    public List<Taxes> getAllTaxes() throws PersistenceException {
+        List<Taxes> taxes = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement select = connection.prepareStatement(SELECT_ALL);
+             ResultSet result = select.executeQuery()) {
+            while (result.next()) {
+                taxes.add(readTax(result));
+            }
+        } catch (SQLException e) {
+            throw new PersistenceException("Could not read taxes.", e);
+        }
+        return taxes;
+    }
+
+    // Matches either the state abbreviation or the full state name, ignoring case.
+    @Override
+    public Taxes getTaxByState(String state) throws PersistenceException {
+        if (state == null) {
+            return null;
+        }
+        long start = lookupTimer.start();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement select = connection.prepareStatement(SELECT_ONE)) {
+            String key = state.trim().toLowerCase(Locale.ROOT);
+            select.setString(1, key);
+            select.setString(2, key);
+            try (ResultSet result = select.executeQuery()) {
+                return result.next() ? readTax(result) : null;
+            }
+        } catch (SQLException e) {
+            throw new PersistenceException("Could not read the tax rate for " + state + ".", e);
+        } finally {
+            lookupTimer.stop(start);
+        }
+    }
+
+    private static Taxes readTax(ResultSet result) throws SQLException {
+        Taxes tax = new Taxes();
+        tax.setStateAbbreviation(result.getString(1));
+        tax.setStateName(result.getString(2));
+        tax.setTaxRate(result.getBigDecimal(3));
+        return tax;
+    }
+}
@@ -0,0 +1,485 @@
+package com.sg.flooringmastery.dao.btree;
+
+import com.sg.flooringmastery.dao.btree.BufferPool.Page;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A B+tree from long keys to small byte array values, stored in the pages of a BufferPool. Values live only
+ * in the leaves, which are linked left to right so a range is read by walking along them. A lookup or a
+ * change reads one page per level of the tree, and a change rewrites only the pages it touches.
+ *
+ *   leaf       byte type 1, short count, short start of the record area, int next leaf (0 for none),
+ *              short bytes freed by removed records, then short[count] record offsets in key order.
+ *              Records are packed from the end of the page: long key, short length, value bytes.
+ *   internal   byte type 2, short count, int first child, then count entries of long key and int child.
+ *              Keys in a child are at least the entry key before it and less than the entry key after it.
+ *
+ * Full pages are split in half, or nearly all to the left when the new key is the largest, so keys added
+ * in order fill their pages. Pages left empty by removals are not merged back, they are reused as keys
+ * in their range come back. Lookups and scans can run at the same time as each other, but not alongside a
+ * change; the caller provides that locking.
+ *
+ * Changes mark the page file unclean until flush(), so a file left half written by a crash is refused when
+ * it is opened again rather than read as a damaged tree. Only sync() makes the changes durable.
+ */
+public final class BTree implements AutoCloseable {
+
+    // Largest value that is stored, so that at least four records always fit in a leaf.
+    public static final int MAX_VALUE_BYTES = 1_000;
+
+    private static final byte LEAF = 1;
+    private static final byte INTERNAL = 2;
+
+    private static final int TYPE = 0;
+    private static final int COUNT = 1;
+    private static final int FREE_END = 3;
+    private static final int NEXT = 5;
+    private static final int GARBAGE = 9;
+    private static final int SLOTS = 11;
+    private static final int SLOT = 2;
+    private static final int RECORD_HEADER = 10;
+
+    private static final int CHILD0 = 3;
+    private static final int ENTRIES = 7;
+    private static final int ENTRY = 12;
+    private static final int MAX_KEYS = (PageFile.PAGE_SIZE - ENTRIES) / ENTRY;
+
+    private final BufferPool pool;
+    private final PageFile file;
+
+    // Called with each entry of a scan in key order. Returning false stops the scan.
+    @FunctionalInterface
+    public interface Visitor {
+        boolean visit(long key, byte[] value);
+    }
+
+    // A page that split: its new right hand sibling and the lowest key that moved there.
+    private record Split(long key, int page) {
+    }
+
+    private record Entry(long key, byte[] value) {
+    }
+
+    private record Child(long key, int page) {
+    }
+
+    public BTree(BufferPool pool) {
+        this.pool = pool;
+        this.file = pool.file();
+    }
+
+    public long size() {
+        return file.entryCount();
+    }
+
+    public byte[] get(long key) throws IOException {
+        List<Page> held = new ArrayList<>();
+        try {
+            Page leaf = findLeaf(key, held);
+            if (leaf == null) {
+                return null;
+            }
+            int index = search(leaf.data(), key);
+            return index < 0 ? null : value(leaf.data(), slot(leaf.data(), index));
+        } finally {
+            release(held);
+        }
+    }
+
+    // Stores the value under the key, replacing any value already there. Returns the replaced value or null.
+    public byte[] put(long key, byte[] value) throws IOException {
+        if (value.length > MAX_VALUE_BYTES) {
+            throw new IllegalArgumentException("Value of " + value.length + " bytes is larger than the "
+                    + MAX_VALUE_BYTES + " a page can hold");
+        }
+        beginChange();
+        List<Page> held = new ArrayList<>();
+        try {
+            if (file.rootPage() == 0) {
+                Page root = create(held);
+                initLeaf(root.data(), 0);
+                file.setRootPage(root.id());
+            }
+
+            byte[][] replaced = new byte[1][];
+            int oldRoot = file.rootPage();
+            Split split = insert(oldRoot, key, value, replaced, held);
+            if (split != null) {
+                Page root = create(held);
+                ByteBuffer data = root.data();
+                data.put(TYPE, INTERNAL);
+                setCount(data, 1);
+                data.putInt(CHILD0, oldRoot);
+                data.putLong(ENTRIES, split.key());
+                data.putInt(ENTRIES + 8, split.page());
+                file.setRootPage(root.id());
+            }
+            if (replaced[0] == null) {
+                file.setEntryCount(file.entryCount() + 1);
+            }
+            return replaced[0];
+        } finally {
+            release(held);
+        }
+    }
+
+    // Removes the key. Returns the value it had, or null if it was not there.
+    public byte[] remove(long key) throws IOException {
+        List<Page> held = new ArrayList<>();
+        try {
+            Page leaf = findLeaf(key, held);
+            if (leaf == null) {
+                return null;
+            }
+            int index = search(leaf.data(), key);
+            if (index < 0) {
+                return null;
+            }
+            beginChange();
+            byte[] removed = value(leaf.data(), slot(leaf.data(), index));
+            removeSlot(leaf.data(), index);
+            leaf.markDirty();
+            file.setEntryCount(file.entryCount() - 1);
+            return removed;
+        } finally {
+            release(held);
+        }
+    }
+
+    // Visits every entry with from <= key <= to in key order, holding one leaf at a time.
+    public void scan(long from, long to, Visitor visitor) throws IOException {
+        List<Page> held = new ArrayList<>();
+        try {
+            Page leaf = findLeaf(from, held);
+            if (leaf == null) {
+                return;
+            }
+            release(held); // only the leaf is needed from here on, keep it pinned on its own
+            held.add(leaf = pool.fetch(leaf.id()));
+
+            int index = search(leaf.data(), from);
+            index = index < 0 ? -index - 1 : index;
+            while (true) {
+                ByteBuffer data = leaf.data();
+                for (int count = count(data); index < count; index++) {
+                    int offset = slot(data, index);
+                    long key = data.getLong(offset);
+                    if (key > to || !visitor.visit(key, value(data, offset))) {
+                        return;
+                    }
+                }
+                int next = data.getInt(NEXT);
+                if (next == 0) {
+                    return;
+                }
+                release(held);
+                held.add(leaf = pool.fetch(next));
+                index = 0;
+            }
+        } finally {
+            release(held);
+        }
+    }
+
+    // Writes every changed page and then a header marked clean. The pages are forced to disk before the clean
+    // header is written, so a header on disk that says clean never covers a stale or torn page.
+    public void flush() throws IOException {
+        pool.flush();
+        if (!file.isClean()) {
+            file.force();
+            file.setClean(true);
+        }
+    }
+
+    // flush() and then forces the file to disk, clean header included, so the changes survive a power cut.
+    public void sync() throws IOException {
+        flush();
+        file.force();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            sync();
+        } finally {
+            file.close();
+        }
+    }
+
+    // ----------------------- DESCENT ------------------------
+
+    // The leaf that would hold the key, or null for an empty tree. Every page on the way is added to held.
+    private Page findLeaf(long key, List<Page> held) throws IOException {
+        int pageId = file.rootPage();
+        if (pageId == 0) {
+            return null;
+        }
+        while (true) {
+            Page page = fetch(pageId, held);
+            if (page.data().get(TYPE) == LEAF) {
+                return page;
+            }
+            pageId = child(page.data(), childIndex(page.data(), key));
+        }
+    }
+
+    // Adds the key below pageId. Returns the split if pageId had to split to make room, otherwise null.
+    private Split insert(int pageId, long key, byte[] value, byte[][] replaced, List<Page> held)
+            throws IOException {
+        Page page = fetch(pageId, held);
+        ByteBuffer data = page.data();
+
+        if (data.get(TYPE) == LEAF) {
+            int index = search(data, key);
+            if (index >= 0) {
+                replaced[0] = value(data, slot(data, index));
+                removeSlot(data, index);
+            } else {
+                index = -index - 1;
+            }
+            page.markDirty();
+            if (insertRecord(data, index, key, value)) {
+                return null;
+            }
+            return splitLeaf(page, index, new Entry(key, value), held);
+        }
+
+        int index = childIndex(data, key);
+        Split split = insert(child(data, index), key, value, replaced, held);
+        if (split == null) {
+            return null;
+        }
+        page.markDirty();
+        if (count(data) < MAX_KEYS) {
+            insertChild(data, index, split);
+            return null;
+        }
+        return splitInternal(page, index, split, held);
+    }
+
+    // ----------------------- LEAVES ------------------------
+
+    private static void initLeaf(ByteBuffer data, int next) {
+        data.put(TYPE, LEAF);
+        setCount(data, 0);
+        data.putShort(FREE_END, (short) PageFile.PAGE_SIZE);
+        data.putInt(NEXT, next);
+        data.putShort(GARBAGE, (short) 0);
+    }
+
+    // Binary search on the record keys. Returns the index, or -(insertion point) - 1 if the key is not there.
+    private static int search(ByteBuffer data, long key) {
+        int low = 0;
+        int high = count(data) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long found = data.getLong(slot(data, middle));
+            if (found < key) {
+                low = middle + 1;
+            } else if (found > key) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -low - 1;
+    }
+
+    // Adds a record at index if it fits, packing the page first if removed records left enough room.
+    private static boolean insertRecord(ByteBuffer data, int index, long key, byte[] value) {
+        int size = RECORD_HEADER + value.length;
+        int count = count(data);
+        int free = data.getShort(FREE_END) - (SLOTS + SLOT * count);
+        if (free < size + SLOT) {
+            if (free + data.getShort(GARBAGE) < size + SLOT) {
+                return false;
+            }
+            rewriteLeaf(data, entries(data), data.getInt(NEXT));
+        }
+
+        int offset = data.getShort(FREE_END) - size;
+        data.putLong(offset, key);
+        data.putShort(offset + 8, (short) value.length);
+        data.put(offset + RECORD_HEADER, value);
+        for (int i = count; i > index; i--) {
+            setSlot(data, i, slot(data, i - 1));
+        }
+        setSlot(data, index, offset);
+        setCount(data, count + 1);
+        data.putShort(FREE_END, (short) offset);
+        return true;
+    }
+
+    // Drops the record's slot. Its bytes stay where they are until the page is next packed.
+    private static void removeSlot(ByteBuffer data, int index) {
+        int count = count(data);
+        int size = RECORD_HEADER + data.getShort(slot(data, index) + 8);
+        for (int i = index; i < count - 1; i++) {
+            setSlot(data, i, slot(data, i + 1));
+        }
+        setCount(data, count - 1);
+        data.putShort(GARBAGE, (short) (data.getShort(GARBAGE) + size));
+    }
+
+    private Split splitLeaf(Page page, int index, Entry added, List<Page> held) throws IOException {
+        ByteBuffer data = page.data();
+        List<Entry> entries = entries(data);
+        entries.add(index, added);
+        int next = data.getInt(NEXT);
+
+        // Keys arriving in order go right, so the left page is left full rather than half empty.
+        int split;
+        if (index == entries.size() - 1 && next == 0) {
+            split = entries.size() - 1;
+        } else {
+            int total = 0;
+            for (Entry entry : entries) {
+                total += RECORD_HEADER + SLOT + entry.value().length;
+            }
+            int left = 0;
+            split = 0;
+            while (split < entries.size() - 1 && left < total / 2) {
+                left += RECORD_HEADER + SLOT + entries.get(split++).value().length;
+            }
+            split = Math.max(split, 1);
+        }
+
+        Page right = create(held);
+        rewriteLeaf(right.data(), entries.subList(split, entries.size()), next);
+        rewriteLeaf(data, entries.subList(0, split), right.id());
+        return new Split(entries.get(split).key(), right.id());
+    }
+
+    private static void rewriteLeaf(ByteBuffer data, List<Entry> entries, int next) {
+        initLeaf(data, next);
+        for (int i = 0; i < entries.size(); i++) {
+            insertRecord(data, i, entries.get(i).key(), entries.get(i).value());
+        }
+    }
+
+    private static List<Entry> entries(ByteBuffer data) {
+        int count = count(data);
+        List<Entry> entries = new ArrayList<>(count + 1);
+        for (int i = 0; i < count; i++) {
+            int offset = slot(data, i);
+            entries.add(new Entry(data.getLong(offset), value(data, offset)));
+        }
+        return entries;
+    }
+
+    private static byte[] value(ByteBuffer data, int offset) {
+        byte[] value = new byte[data.getShort(offset + 8)];
+        data.get(offset + RECORD_HEADER, value);
+        return value;
+    }
+
+    private static int slot(ByteBuffer data, int index) {
+        return data.getShort(SLOTS + SLOT * index);
+    }
+
+    private static void setSlot(ByteBuffer data, int index, int offset) {
+        data.putShort(SLOTS + SLOT * index, (short) offset);
+    }
+
+    // ----------------------- INTERNAL PAGES ------------------------
+
+    // Index of the child whose range holds the key: 0 for the first child, i for the child of entry i - 1.
+    private static int childIndex(ByteBuffer data, long key) {
+        int low = 0;
+        int high = count(data) - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (data.getLong(ENTRIES + ENTRY * middle) <= key) {
+                low = middle + 1;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    private static int child(ByteBuffer data, int index) {
+        return index == 0 ? data.getInt(CHILD0) : data.getInt(ENTRIES + ENTRY * (index - 1) + 8);
+    }
+
+    // Adds the new sibling of child index straight after it.
+    private static void insertChild(ByteBuffer data, int index, Split split) {
+        int count = count(data);
+        int at = ENTRIES + ENTRY * index;
+        for (int i = ENTRIES + ENTRY * count - 1; i >= at; i--) {
+            data.put(i + ENTRY, data.get(i));
+        }
+        data.putLong(at, split.key());
+        data.putInt(at + 8, split.page());
+        setCount(data, count + 1);
+    }
+
+    private Split splitInternal(Page page, int index, Split added, List<Page> held) throws IOException {
+        ByteBuffer data = page.data();
+        int count = count(data);
+        List<Child> children = new ArrayList<>(count + 1);
+        for (int i = 0; i < count; i++) {
+            children.add(new Child(data.getLong(ENTRIES + ENTRY * i), data.getInt(ENTRIES + ENTRY * i + 8)));
+        }
+        children.add(index, new Child(added.key(), added.page()));
+
+        // The middle key moves up to the parent. As with leaves, a split at the right edge keeps the left full.
+        int middle = index == count ? count : children.size() / 2;
+        Child up = children.get(middle);
+
+        Page right = create(held);
+        right.data().put(TYPE, INTERNAL);
+        right.data().putInt(CHILD0, up.page());
+        writeChildren(right.data(), children.subList(middle + 1, children.size()));
+        writeChildren(data, children.subList(0, middle));
+        return new Split(up.key(), right.id());
+    }
+
+    private static void writeChildren(ByteBuffer data, List<Child> children) {
+        for (int i = 0; i < children.size(); i++) {
+            data.putLong(ENTRIES + ENTRY * i, children.get(i).key());
+            data.putInt(ENTRIES + ENTRY * i + 8, children.get(i).page());
+        }
+        setCount(data, children.size());
+    }
+
+    // ----------------------- HELPER METHODS ------------------------
+
+    private static int count(ByteBuffer data) {
+        return data.getShort(COUNT);
+    }
+
+    private static void setCount(ByteBuffer data, int count) {
+        data.putShort(COUNT, (short) count);
+    }
+
+    // Marks the file unclean before the first page of a change can reach the disk.
+    private void beginChange() throws IOException {
+        if (file.isClean()) {
+            file.setClean(false);
+        }
+    }
+
+    private Page fetch(int pageId, List<Page> held) throws IOException {
+        Page page = pool.fetch(pageId);
+        held.add(page);
+        return page;
+    }
+
+    private Page create(List<Page> held) throws IOException {
+        Page page = pool.create();
+        held.add(page);
+        return page;
+    }
+
+    private void release(List<Page> held) {
+        for (Page page : held) {
+            pool.release(page);
+        }
+        held.clear();
+    }
+}
@@ -0,0 +1,163 @@
+package com.sg.flooringmastery.dao.btree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Keeps up to a fixed number of pages of a PageFile in memory, so the pages near the root of the tree and
+ * the ones in recent use are not read again on every lookup. Pages are kept in least recently used order,
+ * and when the pool is full the oldest page nobody holds is dropped, after writing it back if it changed.
+ *
+ * A page returned by fetch() or create() is pinned and cannot be dropped until it is released, so every
+ * fetch must be paired with release(). If every page is pinned the pool grows past its capacity for a
+ * moment rather than fail. All methods synchronize on the pool, so file reads for missing pages are done
+ * one at a time.
+ */
+public final class BufferPool {
+
+    /**
+     * One page held in memory. Its data may only be changed by the thread changing the tree, which must
+     * call markDirty() so the change is written back.
+     */
+    public static final class Page {
+
+        private final int id;
+        private final ByteBuffer data;
+        private int pins;
+        private boolean dirty;
+
+        private Page(int id, ByteBuffer data) {
+            this.id = id;
+            this.data = data;
+        }
+
+        public int id() {
+            return id;
+        }
+
+        public ByteBuffer data() {
+            return data;
+        }
+
+        public void markDirty() {
+            dirty = true;
+        }
+    }
+
+    private final PageFile file;
+    private final int capacity;
+
+    // Access ordered, so iteration starts at the least recently used page.
+    private final LinkedHashMap<Integer, Page> pages = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long pageWrites;
+
+    public BufferPool(PageFile file, int capacity) {
+        if (capacity < 8) {
+            throw new IllegalArgumentException("A buffer pool needs at least 8 pages, got " + capacity);
+        }
+        this.file = file;
+        this.capacity = capacity;
+    }
+
+    public PageFile file() {
+        return file;
+    }
+
+    // Returns the page pinned, reading it from the file if it is not already held.
+    public synchronized Page fetch(int id) throws IOException {
+        Page page = pages.get(id);
+        if (page != null) {
+            hits++;
+        } else {
+            misses++;
+            makeRoom();
+            page = new Page(id, ByteBuffer.allocate(PageFile.PAGE_SIZE));
+            file.read(id, page.data);
+            pages.put(id, page);
+        }
+        page.pins++;
+        return page;
+    }
+
+    // Allocates a new, zeroed page at the end of the file and returns it pinned and dirty.
+    public synchronized Page create() throws IOException {
+        makeRoom();
+        Page page = new Page(file.allocate(), ByteBuffer.allocate(PageFile.PAGE_SIZE));
+        page.dirty = true;
+        page.pins++;
+        pages.put(page.id, page);
+        return page;
+    }
+
+    public synchronized void release(Page page) {
+        if (page.pins <= 0) {
+            throw new IllegalStateException("Page " + page.id + " released more often than it was fetched");
+        }
+        page.pins--;
+    }
+
+    // Writes every changed page back to the file, in page order. Returns how many were written.
+    public synchronized int flush() throws IOException {
+        List<Page> dirty = new ArrayList<>();
+        for (Page page : pages.values()) {
+            if (page.dirty) {
+                dirty.add(page);
+            }
+        }
+        dirty.sort(Comparator.comparingInt(Page::id));
+        for (Page page : dirty) {
+            write(page);
+        }
+        return dirty.size();
+    }
+
+    public synchronized int size() {
+        return pages.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    public synchronized long pageWrites() {
+        return pageWrites;
+    }
+
+    // Drops unpinned pages, oldest first, until there is room for one more.
+    private void makeRoom() throws IOException {
+        Iterator<Page> oldestFirst = pages.values().iterator();
+        while (pages.size() >= capacity && oldestFirst.hasNext()) {
+            Page page = oldestFirst.next();
+            if (page.pins == 0) {
+                if (page.dirty) {
+                    write(page);
+                }
+                oldestFirst.remove();
+                evictions++;
+            }
+        }
+    }
+
+    private void write(Page page) throws IOException {
+        file.write(page.id, page.data);
+        page.dirty = false;
+        pageWrites++;
+    }
+}
@@ -0,0 +1,183 @@
+package com.sg.flooringmastery.dao.btree;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A single file split into fixed size pages, read and written in place by page number.
+ * Page 0 is the header, which records where the tree's root is, how many pages and entries there are, and
+ * whether the file was closed cleanly. All numbers are big-endian.
+ *
+ *   header   int magic "FMBT", short version, short unused, int page size, int root page, int page count,
+ *            long entry count, byte clean
+ *
+ * Pages are never freed, so the page count only grows. Not thread safe, BufferPool and BTree synchronize.
+ */
+public final class PageFile implements AutoCloseable {
+
+    public static final int PAGE_SIZE = 4096;
+
+    private static final int MAGIC = 0x464D4254; // "FMBT"
+    private static final short VERSION = 1;
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(PAGE_SIZE);
+
+    private int rootPage;
+    private int pageCount;
+    private long entryCount;
+    private boolean clean;
+
+    private PageFile(Path path, FileChannel channel) {
+        this.path = path;
+        this.channel = channel;
+    }
+
+    /**
+     * Opens the file, creating an empty one with just the header if it does not exist yet.
+     * Throws IOException if the file is not a page file or was not closed cleanly, as its pages may then be
+     * a mix of old and new and the tree cannot be trusted.
+     */
+    public static PageFile open(Path path) throws IOException {
+        boolean exists = Files.exists(path);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        PageFile file = new PageFile(path, channel);
+        try {
+            if (exists && channel.size() > 0) {
+                file.readHeader();
+            } else {
+                file.pageCount = 1;
+                file.clean = true;
+                file.writeHeader();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return file;
+    }
+
+    public Path path() {
+        return path;
+    }
+
+    public void read(int page, ByteBuffer into) throws IOException {
+        checkPage(page);
+        into.clear();
+        long position = (long) page * PAGE_SIZE;
+        while (into.hasRemaining()) {
+            int read = channel.read(into, position + into.position());
+            if (read < 0) {
+                throw new IOException("Page " + page + " is past the end of " + path);
+            }
+        }
+        into.flip();
+    }
+
+    public void write(int page, ByteBuffer from) throws IOException {
+        checkPage(page);
+        ByteBuffer data = from.duplicate().clear();
+        long position = (long) page * PAGE_SIZE;
+        while (data.hasRemaining()) {
+            channel.write(data, position + data.position());
+        }
+    }
+
+    // Reserves the next page number. The page is written to the file when it is first flushed.
+    public int allocate() {
+        return pageCount++;
+    }
+
+    public int rootPage() {
+        return rootPage;
+    }
+
+    public void setRootPage(int rootPage) {
+        this.rootPage = rootPage;
+    }
+
+    public int pageCount() {
+        return pageCount;
+    }
+
+    public long entryCount() {
+        return entryCount;
+    }
+
+    public void setEntryCount(long entryCount) {
+        this.entryCount = entryCount;
+    }
+
+    /**
+     * Marks the file as being changed, or as consistent again, and writes the header. The unclean mark is
+     * forced to disk before it returns, so it is on disk before any page it covers is written.
+     */
+    public void setClean(boolean clean) throws IOException {
+        this.clean = clean;
+        writeHeader();
+        if (!clean) {
+            channel.force(false);
+        }
+    }
+
+    public boolean isClean() {
+        return clean;
+    }
+
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void checkPage(int page) throws IOException {
+        if (page <= 0 || page >= pageCount) {
+            throw new IOException("Page " + page + " is outside " + path + ", which has " + pageCount + " pages");
+        }
+    }
+
+    private void readHeader() throws IOException {
+        header.clear();
+        int read = 0;
+        while (header.hasRemaining() && read >= 0) {
+            read = channel.read(header, header.position());
+        }
+        header.flip();
+        if (header.remaining() < 29 || header.getInt(0) != MAGIC) {
+            throw new IOException(path + " is not a page file");
+        }
+        if (header.getShort(4) != VERSION || header.getInt(8) != PAGE_SIZE) {
+            throw new IOException(path + " has version " + header.getShort(4) + " and page size "
+                    + header.getInt(8) + ", expected " + VERSION + " and " + PAGE_SIZE);
+        }
+        rootPage = header.getInt(12);
+        pageCount = header.getInt(16);
+        entryCount = header.getLong(20);
+        clean = header.get(28) == 1;
+        if (!clean) {
+            throw new IOException(path + " was not closed cleanly and may be damaged");
+        }
+    }
+
+    private void writeHeader() throws IOException {
+        header.clear();
+        header.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(PAGE_SIZE).putInt(rootPage)
+                .putInt(pageCount).putLong(entryCount).put((byte) (clean ? 1 : 0));
+        while (header.hasRemaining()) {
+            header.put((byte) 0);
+        }
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.sg.flooringmastery.dao.jdbc;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+
+/**
+ * Creates the tables the JDBC Daos use the first time they start against a database, and rounds the amounts
+ * they store to fit the tables' DECIMAL(19, 2) columns.
+ */
+public final class Tables {
+
+    private Tables() {
+    }
+
+    /**
+     * Runs the statements that create a table and its indexes, in one transaction, unless the table already
+     * exists. Returns true if it was created, so the caller knows to fill it.
+     */
+    public static boolean createIfMissing(Connection connection, String table, String... statements)
+            throws SQLException {
+        if (exists(connection, table)) {
+            return false;
+        }
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : statements) {
+                statement.execute(sql);
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return true;
+    }
+
+    /**
+     * Rounds an amount or rate half up to two decimal places, the same way the order files store it, before it
+     * is bound to a DECIMAL(19, 2) column. Left to the database, the rounding would depend on which one is in
+     * use, and an order could read back differently from the jdbc profile than from the files.
+     */
+    public static BigDecimal amount(BigDecimal value) {
+        return value.setScale(2, RoundingMode.HALF_UP);
+    }
+
+    // Databases differ in whether they store unquoted names upper or lower case, so both are tried.
+    private static boolean exists(Connection connection, String table) throws SQLException {
+        for (String name : new String[]{table.toUpperCase(Locale.ROOT), table.toLowerCase(Locale.ROOT)}) {
+            try (ResultSet tables = connection.getMetaData().getTables(null, null, name, new String[]{"TABLE"})) {
+                if (tables.next()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+}
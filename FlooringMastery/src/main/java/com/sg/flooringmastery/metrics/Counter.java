@@ -0,0 +1,23 @@
+package com.sg.flooringmastery.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A running total, e.g. of rows read. Threads adding at the same time do not contend on one value.
+ */
+public final class Counter {
+
+    private final LongAdder value = new LongAdder();
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long sum() {
+        return value.sum();
+    }
+}
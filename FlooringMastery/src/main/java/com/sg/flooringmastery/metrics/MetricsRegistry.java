@@ -0,0 +1,49 @@
+package com.sg.flooringmastery.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * Holds the application's counters, gauges and timers by name.
+ * Classes look their metrics up once, when they are wired, and keep them in fields, so recording never goes
+ * through the registry. Asking for a counter or timer name that already exists returns the same metric.
+ * A gauge reads one object's state, so each gauge name has a single owner and registering it twice fails.
+ */
+@Component
+public class MetricsRegistry {
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, n -> new Counter());
+    }
+
+    public Timer timer(String name) {
+        return timers.computeIfAbsent(name, n -> new Timer());
+    }
+
+    // A value read only when a snapshot is taken, e.g. how many dates are in memory.
+    public void gauge(String name, LongSupplier value) {
+        if (gauges.putIfAbsent(name, value) != null) {
+            throw new IllegalStateException("Gauge " + name + " is already registered by another object.");
+        }
+    }
+
+    public MetricsSnapshot snapshot() {
+        SortedMap<String, Long> counterValues = new TreeMap<>();
+        counters.forEach((name, counter) -> counterValues.put(name, counter.sum()));
+        SortedMap<String, Long> gaugeValues = new TreeMap<>();
+        gauges.forEach((name, gauge) -> gaugeValues.put(name, gauge.getAsLong()));
+        SortedMap<String, Timer.Snapshot> timerValues = new TreeMap<>();
+        timers.forEach((name, timer) -> timerValues.put(name, timer.snapshot()));
+        return new MetricsSnapshot(Instant.now(), counterValues, gaugeValues, timerValues);
+    }
+}
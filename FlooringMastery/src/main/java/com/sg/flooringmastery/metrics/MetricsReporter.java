@@ -0,0 +1,88 @@
+package com.sg.flooringmastery.metrics;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a snapshot of every metric to SampleFileData/Metrics/metrics.json on a background thread, and once
+ * more when the application closes. Each write replaces the file whole, so a reader never sees half of one.
+ * Set the interval with -Dflooring.metrics.dumpSeconds=... (default 60, 0 to write only on exit).
+ * Writes that fail are counted in metrics.dump.failures, which the next successful write includes.
+ */
+@Component
+public class MetricsReporter implements InitializingBean, DisposableBean {
+
+    private static final Path METRICS_FILE = Paths.get("SampleFileData/Metrics/metrics.json");
+
+    private final MetricsRegistry registry;
+    private final Path metricsFile;
+    private final long dumpSeconds;
+    private final ScheduledExecutorService scheduler;
+    private final Counter writeFailures;
+
+    @Autowired
+    public MetricsReporter(MetricsRegistry registry) {
+        this(registry, METRICS_FILE, Long.getLong("flooring.metrics.dumpSeconds", 60));
+    }
+
+    public MetricsReporter(MetricsRegistry registry, Path metricsFile, long dumpSeconds) {
+        this.registry = registry;
+        this.metricsFile = metricsFile;
+        this.dumpSeconds = dumpSeconds;
+        this.writeFailures = registry.counter("metrics.dump.failures");
+        scheduler = dumpSeconds > 0 ? Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    // Starts the periodic writes once the bean is fully built.
+    @Override
+    public void afterPropertiesSet() {
+        if (scheduler != null) {
+            scheduler.scheduleAtFixedRate(this::writeQuietly, dumpSeconds, dumpSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    public void write() throws IOException {
+        Path temp = metricsFile.resolveSibling(metricsFile.getFileName() + ".tmp");
+        Files.createDirectories(metricsFile.toAbsolutePath().getParent());
+        Files.writeString(temp, registry.snapshot().toJson(), StandardCharsets.UTF_8);
+        try {
+            Files.move(temp, metricsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, metricsFile, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Metrics are not worth stopping the application for, a failed write is counted and tried again next time.
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (IOException | RuntimeException e) {
+            writeFailures.increment();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        writeQuietly();
+    }
+}
@@ -0,0 +1,52 @@
+package com.sg.flooringmastery.metrics;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * Every metric's value at one moment, sorted by name, as shown from the menu and written to the metrics file.
+ */
+public record MetricsSnapshot(Instant takenAt, SortedMap<String, Long> counters, SortedMap<String, Long> gauges,
+                              SortedMap<String, Timer.Snapshot> timers) {
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\n  \"takenAt\": \"").append(takenAt).append("\",\n");
+
+        json.append("  \"counters\": {");
+        appendValues(json, counters);
+        json.append("},\n  \"gauges\": {");
+        appendValues(json, gauges);
+        json.append("},\n  \"timers\": {");
+
+        String separator = "\n";
+        for (Map.Entry<String, Timer.Snapshot> timer : timers.entrySet()) {
+            Timer.Snapshot t = timer.getValue();
+            json.append(separator).append("    ").append(quote(timer.getKey())).append(": {")
+                    .append("\"count\": ").append(t.count())
+                    .append(", \"totalNanos\": ").append(t.totalNanos())
+                    .append(", \"meanNanos\": ").append(t.meanNanos())
+                    .append(", \"p50Nanos\": ").append(t.p50Nanos())
+                    .append(", \"p95Nanos\": ").append(t.p95Nanos())
+                    .append(", \"p99Nanos\": ").append(t.p99Nanos())
+                    .append(", \"maxNanos\": ").append(t.maxNanos()).append('}');
+            separator = ",\n";
+        }
+        json.append(timers.isEmpty() ? "" : "\n  ").append("}\n}\n");
+        return json.toString();
+    }
+
+    private static void appendValues(StringBuilder json, SortedMap<String, Long> values) {
+        String separator = "\n";
+        for (Map.Entry<String, Long> value : values.entrySet()) {
+            json.append(separator).append("    ").append(quote(value.getKey())).append(": ").append(value.getValue());
+            separator = ",\n";
+        }
+        json.append(values.isEmpty() ? "" : "\n  ");
+    }
+
+    private static String quote(String name) {
+        return '"' + name.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+}
@@ -0,0 +1,100 @@
+package com.sg.flooringmastery.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A latency histogram. Durations are counted in buckets, four to each power of two nanoseconds, so a
+ * percentile is reported as the top of its bucket and is at most 25% above the true value.
+ * Recording allocates nothing and takes no lock:
+ *
+ *   long start = timer.start();
+ *   ... work ...
+ *   timer.stop(start);
+ */
+public final class Timer {
+
+    // Buckets 0-3 hold 0-3 ns exactly, after that bucket 4(e-1)+s holds [(4+s) << (e-2), (5+s) << (e-2)).
+    private static final int BUCKETS = 248;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final LongAdder totalNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    public long start() {
+        return System.nanoTime();
+    }
+
+    public void stop(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0; // nanoTime is monotonic, but be safe
+        }
+        buckets.incrementAndGet(bucket(nanos));
+        totalNanos.add(nanos);
+        long max = maxNanos.get();
+        while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+            max = maxNanos.get();
+        }
+    }
+
+    // Counts read while other threads record may be a few recordings apart from each other, never more.
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            count += counts[i];
+        }
+        long max = maxNanos.get();
+        return new Snapshot(count, totalNanos.sum(), max, percentile(counts, count, 0.50, max),
+                percentile(counts, count, 0.95, max), percentile(counts, count, 0.99, max));
+    }
+
+    // Count, total and the usual percentiles, all in nanoseconds.
+    public record Snapshot(long count, long totalNanos, long maxNanos, long p50Nanos, long p95Nanos, long p99Nanos) {
+
+        public long meanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+    }
+
+    static int bucket(long nanos) {
+        if (nanos < 4) {
+            return (int) nanos;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - 2)) & 3;
+        return 4 * (exponent - 1) + sub;
+    }
+
+    // The largest duration that falls into the bucket.
+    static long bucketTop(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        int exponent = bucket / 4 + 1;
+        int sub = bucket % 4;
+        long width = 1L << (exponent - 2);
+        return (4 + sub) * width + width - 1;
+    }
+
+    private static long percentile(long[] counts, long count, double quantile, long max) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(bucketTop(i), max);
+            }
+        }
+        return max;
+    }
+}
@@ -0,0 +1,11 @@
+package com.sg.flooringmastery.model;
+
+import java.time.LocalDate;
+
+/**
+ * One date, state and product whose stored totals differ from a recount of the order files.
+ * A missing side is reported as null.
+ */
+public record AggregateDrift(LocalDate date, String state, String productType, OrderTotals stored,
+                             OrderTotals recounted) {
+}
@@ -0,0 +1,10 @@
+package com.sg.flooringmastery.model;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * One date's orders, sorted by order number, as returned by a date range query.
+ */
+public record DailyOrders(LocalDate date, List<Orders> orders) {
+}
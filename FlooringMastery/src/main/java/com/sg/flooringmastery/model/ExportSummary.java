@@ -0,0 +1,16 @@
+package com.sg.flooringmastery.model;
+
+/**
+ * Result of exporting every order file into a single DataExport file.
+ * Holds how many dates and orders were written and how long it took.
+ */
+public record ExportSummary(int dates, long rows, long elapsedNanos) {
+
+    public long elapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    public long rowsPerSecond() {
+        return elapsedNanos == 0 ? rows : rows * 1_000_000_000L / elapsedNanos;
+    }
+}
@@ -0,0 +1,24 @@
+package com.sg.flooringmastery.model;
+
+import java.util.List;
+
+/**
+ * Result of a bulk order import.
+ * Holds how many rows were read and imported, one error per rejected row, how many dates had their file
+ * written, and how long the whole import and the saving of orders took.
+ */
+public record ImportReport(long rowsRead, long rowsImported, int datesWritten, List<RowError> errors,
+                           long elapsedNanos, long writeNanos) {
+
+    // A row that was not imported. Line numbers count from 1 and include the header line, if there is one.
+    public record RowError(long lineNumber, String message) {
+    }
+
+    public long elapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+
+    public long rowsPerSecond() {
+        return elapsedNanos == 0 ? rowsImported : rowsImported * 1_000_000_000L / elapsedNanos;
+    }
+}
@@ -0,0 +1,9 @@
+package com.sg.flooringmastery.model;
+
+import java.time.LocalDate;
+
+/**
+ * Points at one order by its date and order number, e.g. a customer name search result.
+ */
+public record OrderRef(LocalDate date, int orderNumber) {
+}
@@ -0,0 +1,11 @@
+package com.sg.flooringmastery.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Running totals for a group of orders, e.g. one day, one state or one product.
+ * Total is the revenue including tax.
+ */
+public record OrderTotals(long orders, BigDecimal area, BigDecimal materialCost, BigDecimal laborCost,
+                          BigDecimal tax, BigDecimal total) {
+}
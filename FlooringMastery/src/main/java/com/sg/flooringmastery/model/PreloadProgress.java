@@ -0,0 +1,18 @@
+package com.sg.flooringmastery.model;
+
+/**
+ * How far the background preload of the order archive has got.
+ * Holds how many dates were found, how many have been read or failed so far, how many orders they held,
+ * and how long the preload has been running, or took once finished.
+ */
+public record PreloadProgress(int dates, int datesRead, int datesFailed, long orders, long elapsedNanos,
+                              boolean finished) {
+
+    public int percentComplete() {
+        return dates == 0 ? 100 : (int) ((datesRead + datesFailed) * 100L / dates);
+    }
+
+    public long elapsedMillis() {
+        return elapsedNanos / 1_000_000;
+    }
+}
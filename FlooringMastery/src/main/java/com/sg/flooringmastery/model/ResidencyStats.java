@@ -0,0 +1,14 @@
+package com.sg.flooringmastery.model;
+
+/**
+ * Counters describing how well the in memory order cache is doing.
+ * A hit is a date that was already loaded, a miss is one that had to be read from its file,
+ * and an eviction is a date dropped from memory to stay within the configured limits.
+ */
+public record ResidencyStats(long hits, long misses, long evictions, int residentDates, long residentOrders) {
+
+    public double hitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,35 @@
+package com.sg.flooringmastery.service;
+
+import com.sg.flooringmastery.model.Orders;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * The original pricing rules, done entirely in BigDecimal.
+ * Used when the application is started with -Dspring.profiles.active=bigdecimal-pricing,
+ * and by FixedPointPricingEngine for any order whose numbers do not fit in a long.
+ */
+@Component
+public class BigDecimalPricingEngine implements PricingEngine {
+
+    private static final BigDecimal ONE_HUNDRED = new BigDecimal("100");
+
+    @Override
+    public void price(Orders order) {
+        BigDecimal area = order.getArea();
+
+        BigDecimal materialCost = area.multiply(order.getCostPerSquareFoot()).setScale(2, RoundingMode.HALF_UP);
+        BigDecimal laborCost = area.multiply(order.getLaborCostPerSquareFoot()).setScale(2, RoundingMode.HALF_UP);
+        BigDecimal subtotal = materialCost.add(laborCost).setScale(2, RoundingMode.HALF_UP);
+        BigDecimal taxRateDecimal = order.getTaxRate().divide(ONE_HUNDRED, 4, RoundingMode.HALF_UP);
+        BigDecimal taxTotal = subtotal.multiply(taxRateDecimal).setScale(2, RoundingMode.HALF_UP);
+        BigDecimal total = subtotal.add(taxTotal).setScale(2, RoundingMode.HALF_UP);
+
+        order.setMaterialCost(materialCost);
+        order.setLaborCost(laborCost);
+        order.setTax(taxTotal);
+        order.setTotal(total);
+    }
+}
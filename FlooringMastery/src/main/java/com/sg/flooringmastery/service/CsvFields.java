@@ -0,0 +1,43 @@
+package com.sg.flooringmastery.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Field splitting shared by the order importer and batch mode, whose input files are both CSV.
+ */
+public final class CsvFields {
+
+    private CsvFields() {
+    }
+
+    // Splits one CSV line, honouring "quoted, fields" and "" as an escaped quote inside them.
+    public static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,125 @@
+package com.sg.flooringmastery.service;
+
+import com.sg.flooringmastery.model.Orders;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+/**
+ * Prices orders with scaled long arithmetic instead of a chain of BigDecimal operations.
+ * Every number is held as an unscaled long plus its scale (1251.45 is 125145 with scale 2), and each step
+ * rounds HALF_UP to exactly the scale BigDecimalPricingEngine uses, so the results are identical:
+ * material and labour to 2 places, the tax rate divided by 100 to 4 places, tax to 2 places.
+ * If any value is too large for a long the order is passed to BigDecimalPricingEngine instead.
+ */
+@Component
+@Primary
+@Profile("!bigdecimal-pricing")
+public class FixedPointPricingEngine implements PricingEngine {
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    // Index of each result in the array filled by priceScaled().
+    static final int MATERIAL = 0;
+    static final int LABOUR = 1;
+    static final int TAX = 2;
+    static final int TOTAL = 3;
+
+    private final BigDecimalPricingEngine fallback;
+
+    @Autowired
+    public FixedPointPricingEngine(BigDecimalPricingEngine fallback) {
+        this.fallback = fallback;
+    }
+
+    @Override
+    public void price(Orders order) {
+        BigDecimal area = order.getArea();
+        BigDecimal cost = order.getCostPerSquareFoot();
+        BigDecimal labour = order.getLaborCostPerSquareFoot();
+        BigDecimal rate = order.getTaxRate();
+
+        long[] cents = new long[4];
+        if (!fitsInLong(area) || !fitsInLong(cost) || !fitsInLong(labour) || !fitsInLong(rate)
+                || !priceScaled(area.unscaledValue().longValue(), area.scale(),
+                cost.unscaledValue().longValue(), cost.scale(),
+                labour.unscaledValue().longValue(), labour.scale(),
+                rate.unscaledValue().longValue(), rate.scale(), cents)) {
+            fallback.price(order);
+            return;
+        }
+
+        order.setMaterialCost(BigDecimal.valueOf(cents[MATERIAL], 2));
+        order.setLaborCost(BigDecimal.valueOf(cents[LABOUR], 2));
+        order.setTax(BigDecimal.valueOf(cents[TAX], 2));
+        order.setTotal(BigDecimal.valueOf(cents[TOTAL], 2));
+    }
+
+    /**
+     * Prices one order from unscaled values and their scales, writing material, labour, tax and total in
+     * cents into out. Allocates nothing. Returns false, leaving out incomplete, if a step would overflow.
+     */
+    static boolean priceScaled(long area, int areaScale, long cost, int costScale, long labour, int labourScale,
+                               long taxRate, int taxRateScale, long[] out) {
+        try {
+            long material = multiplyAndRound(area, areaScale, cost, costScale, 2);
+            long labourCost = multiplyAndRound(area, areaScale, labour, labourScale, 2);
+            long subtotal = Math.addExact(material, labourCost);
+            // rate / 100 at scale 4 is the rate's own digits at scale 2, rounded or padded to fit.
+            long rateFraction = rescale(taxRate, taxRateScale + 2, 4);
+            long tax = multiplyAndRound(subtotal, 2, rateFraction, 4, 2);
+
+            out[MATERIAL] = material;
+            out[LABOUR] = labourCost;
+            out[TAX] = tax;
+            out[TOTAL] = Math.addExact(subtotal, tax);
+            return true;
+        } catch (ArithmeticException e) {
+            return false;
+        }
+    }
+
+    // x * y rounded HALF_UP to the target scale.
+    private static long multiplyAndRound(long x, int xScale, long y, int yScale, int targetScale) {
+        return rescale(Math.multiplyExact(x, y), xScale + yScale, targetScale);
+    }
+
+    // Changes the scale of an unscaled value, rounding HALF_UP (away from zero on a tie) when digits are dropped.
+    private static long rescale(long value, int scale, int targetScale) {
+        if (scale == targetScale) {
+            return value;
+        }
+        if (scale < targetScale) {
+            return Math.multiplyExact(value, powerOfTen(targetScale - scale));
+        }
+
+        long divisor = powerOfTen(scale - targetScale);
+        long quotient = value / divisor;
+        long remainder = Math.abs(value % divisor);
+        if (remainder >= divisor - remainder) {
+            quotient += Long.signum(value);
+        }
+        return quotient;
+    }
+
+    private static long powerOfTen(int exponent) {
+        if (exponent >= POWERS_OF_TEN.length) {
+            throw new ArithmeticException("10^" + exponent + " does not fit in a long");
+        }
+        return POWERS_OF_TEN[exponent];
+    }
+
+    private static boolean fitsInLong(BigDecimal value) {
+        return value.precision() <= 18;
+    }
+}
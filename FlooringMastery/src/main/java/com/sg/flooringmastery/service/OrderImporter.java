@@ -0,0 +1,299 @@
+package com.sg.flooringmastery.service;
+
+import com.sg.flooringmastery.dao.OrderDao;
+import com.sg.flooringmastery.dao.OrderNumberAllocator;
+import com.sg.flooringmastery.model.ImportReport;
+import com.sg.flooringmastery.model.ImportReport.RowError;
+import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Imports a CSV file of new orders, one per line as Date,CustomerName,State,ProductType,Area with the date
+ * written as yyyy-MM-dd. A header line starting with Date is skipped.
+ *
+ * The work runs as a pipeline. One thread reads the file into batches of lines, a pool of workers validates
+ * and prices each batch, and the calling thread saves the priced orders as they arrive. Both hand-offs are
+ * bounded queues, so a slow stage holds back the stages before it instead of letting batches pile up in memory.
+ * Each batch takes a block of order numbers in one call to the allocator.
+ *
+ * Priced orders wait per date until that date has a batch's worth, and then go to the Dao in one addOrders
+ * call, so a date's file is written once per thousand orders rather than once per batch. Once
+ * -Dflooring.import.maxPending orders (10000 by default) are waiting across all dates, every date is saved,
+ * which bounds the memory an import uses however many dates the file spans. What is left is saved at the end.
+ *
+ * Rows are checked by OrderInput, apart from the date, which may be in the past so older orders can be
+ * imported. A bad row is reported and skipped. A failure reading the file or the tax and product data, or a
+ * stage that dies, stops the import: orders from batches saved before it are kept, and the exception says how
+ * many there were. The calling thread never waits on a stage that has died, as every stage records what it
+ * died of and the calling thread checks for that each time it waits for a batch.
+ */
+final class OrderImporter {
+
+    private static final int BATCH_SIZE = 1_000;
+    private static final int FIELD_COUNT = 5;
+    // How long the calling thread waits for a batch before checking whether a stage has failed.
+    private static final long POLL_MILLIS = 100;
+    private static final int MAX_PENDING = Integer.getInteger("flooring.import.maxPending", 10_000);
+
+    // Markers sent through the queues when the reader, or a worker, has finished.
+    private static final List<Line> END_OF_FILE = new ArrayList<>();
+    private static final Batch WORKER_DONE = new Batch(Map.of(), List.of());
+
+    private record Line(long number, String text) {
+    }
+
+    private record Row(LocalDate date, String customerName, String state, String productType, BigDecimal area) {
+    }
+
+    private record Batch(Map<LocalDate, List<Orders>> ordersByDate, List<RowError> errors) {
+    }
+
+    private final ServiceLayer service;
+    private final OrderInput input;
+    private final OrderDao orderDao;
+    private final OrderNumberAllocator orderNumbers;
+    private final int workers;
+
+    private final BlockingQueue<List<Line>> lines;
+    private final BlockingQueue<Batch> priced;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private volatile long rowsRead;
+
+    // Priced orders not yet saved, and what has been saved so far. Only used by the calling thread.
+    private final Map<LocalDate, List<Orders>> pending = new TreeMap<>();
+    private int pendingOrders;
+    private final Set<LocalDate> datesWritten = new HashSet<>();
+    private long imported;
+    private long writeNanos;
+
+    OrderImporter(ServiceLayer service, OrderDao orderDao, OrderNumberAllocator orderNumbers, int workers) {
+        this.service = service;
+        this.input = new OrderInput(service);
+        this.orderDao = orderDao;
+        this.orderNumbers = orderNumbers;
+        this.workers = Math.max(1, workers);
+        this.lines = new ArrayBlockingQueue<>(this.workers * 2);
+        this.priced = new ArrayBlockingQueue<>(this.workers * 2);
+    }
+
+    ImportReport importFile(Path file) throws PersistenceException {
+        long start = System.nanoTime();
+        List<RowError> errors = new ArrayList<>();
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers + 1, r -> {
+            Thread thread = new Thread(r, "order-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            pool.execute(guarded(() -> readLines(file)));
+            for (int i = 0; i < workers; i++) {
+                pool.execute(guarded(this::priceLines));
+            }
+
+            int finished = 0;
+            while (finished < workers && failure.get() == null) {
+                Batch batch = priced.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (batch == null) {
+                    continue;
+                }
+                if (batch == WORKER_DONE) {
+                    finished++;
+                    continue;
+                }
+                errors.addAll(batch.errors());
+                hold(batch);
+            }
+            if (failure.get() == null) {
+                saveAll();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new PersistenceException("Order import was interrupted after " + imported + " orders were saved.",
+                    e);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Throwable cause = failure.get();
+        if (cause != null) {
+            throw new PersistenceException("Order import stopped after " + imported + " orders were saved: "
+                    + cause.getMessage(), cause);
+        }
+
+        errors.sort(Comparator.comparingLong(RowError::lineNumber));
+        return new ImportReport(rowsRead, imported, datesWritten.size(), errors, System.nanoTime() - start,
+                writeNanos);
+    }
+
+    // ----------------------- SAVING ------------------------
+
+    // Adds a batch to the waiting orders, saving any date that now has a batch's worth, or every date if too
+    // many orders are waiting.
+    private void hold(Batch batch) throws PersistenceException {
+        for (Map.Entry<LocalDate, List<Orders>> date : batch.ordersByDate().entrySet()) {
+            List<Orders> waiting = pending.computeIfAbsent(date.getKey(), d -> new ArrayList<>());
+            waiting.addAll(date.getValue());
+            pendingOrders += date.getValue().size();
+            if (waiting.size() >= BATCH_SIZE) {
+                save(date.getKey());
+            }
+        }
+        if (pendingOrders >= MAX_PENDING) {
+            saveAll();
+        }
+    }
+
+    private void saveAll() throws PersistenceException {
+        for (LocalDate date : new ArrayList<>(pending.keySet())) {
+            save(date);
+        }
+    }
+
+    private void save(LocalDate date) throws PersistenceException {
+        List<Orders> orders = pending.remove(date);
+        pendingOrders -= orders.size();
+        long writeStart = System.nanoTime();
+        orderDao.addOrders(date, orders);
+        writeNanos += System.nanoTime() - writeStart;
+        datesWritten.add(date);
+        imported += orders.size();
+    }
+
+    // ----------------------- PIPELINE STAGES ------------------------
+
+    // Runs a stage, recording anything it dies of so the calling thread stops instead of waiting for it.
+    private Runnable guarded(Runnable stage) {
+        return () -> {
+            try {
+                stage.run();
+            } catch (Throwable e) {
+                failure.compareAndSet(null, e);
+            }
+        };
+    }
+
+    // Reads the file into batches of lines. Always ends with one end marker per worker unless interrupted.
+    private void readLines(Path file) {
+        long lineNumber = 0;
+        long rows = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            List<Line> batch = new ArrayList<>(BATCH_SIZE);
+            String text;
+            while (failure.get() == null && (text = reader.readLine()) != null) {
+                lineNumber++;
+                if (text.isBlank() || (lineNumber == 1 && isHeader(text))) {
+                    continue;
+                }
+                rows++;
+                batch.add(new Line(lineNumber, text));
+                if (batch.size() == BATCH_SIZE) {
+                    lines.put(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                lines.put(batch);
+            }
+        } catch (IOException e) {
+            failure.compareAndSet(null, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+
+        rowsRead = rows;
+        try {
+            for (int i = 0; i < workers; i++) {
+                lines.put(END_OF_FILE);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Validates and prices batches until the end of the file. After a failure batches are drained unread.
+    private void priceLines() {
+        try {
+            while (true) {
+                List<Line> batch = lines.take();
+                if (batch == END_OF_FILE) {
+                    break;
+                }
+                if (failure.get() != null) {
+                    continue;
+                }
+                try {
+                    priced.put(priceBatch(batch));
+                } catch (PersistenceException | IOException | RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+            priced.put(WORKER_DONE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private Batch priceBatch(List<Line> batch) throws PersistenceException, IOException {
+        List<Row> rows = new ArrayList<>(batch.size());
+        List<RowError> errors = new ArrayList<>();
+        for (Line line : batch) {
+            try {
+                rows.add(validate(line));
+            } catch (IllegalArgumentException e) {
+                errors.add(new RowError(line.number(), e.getMessage()));
+            }
+        }
+        if (rows.isEmpty()) {
+            return new Batch(Map.of(), errors);
+        }
+
+        int orderNumber = orderNumbers.reserveBlock(rows.size());
+        Map<LocalDate, List<Orders>> ordersByDate = new TreeMap<>();
+        for (Row row : rows) {
+            Orders order = service.calculateOrder(row.date(), orderNumber++, row.customerName(), row.state(),
+                    row.productType(), row.area());
+            ordersByDate.computeIfAbsent(row.date(), date -> new ArrayList<>()).add(order);
+        }
+        return new Batch(ordersByDate, errors);
+    }
+
+    // ----------------------- VALIDATION ------------------------
+
+    // Parses and checks one line, throwing IllegalArgumentException with a message for the report if it is bad.
+    private Row validate(Line line) throws PersistenceException, IOException {
+        List<String> fields = CsvFields.split(line.text());
+        if (fields.size() != FIELD_COUNT) {
+            throw new IllegalArgumentException("Expected " + FIELD_COUNT + " fields but found " + fields.size() + ".");
+        }
+        return new Row(OrderInput.date(fields.get(0)), OrderInput.customerName(fields.get(1)),
+                input.state(fields.get(2)), input.productType(fields.get(3)), OrderInput.area(fields.get(4)));
+    }
+
+    private static boolean isHeader(String line) {
+        String first = CsvFields.split(line).get(0).trim();
+        return first.equalsIgnoreCase("Date") || first.equalsIgnoreCase("OrderDate");
+    }
+}
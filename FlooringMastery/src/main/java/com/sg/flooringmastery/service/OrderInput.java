@@ -0,0 +1,79 @@
+package com.sg.flooringmastery.service;
+
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Checks order values given as text by the importer, batch mode and the HTTP API, with the same rules as the
+ * menu apart from dates, which may be in the past so older orders can be entered. A bad value is thrown as
+ * IllegalArgumentException with a message that can be shown to whoever sent it.
+ */
+public final class OrderInput {
+
+    private static final String NAME_PATTERN = "[A-Za-z0-9., ]+";
+    private static final BigDecimal MINIMUM_AREA = new BigDecimal("100");
+
+    private final ServiceLayer service;
+
+    public OrderInput(ServiceLayer service) {
+        this.service = service;
+    }
+
+    public static LocalDate date(String field) {
+        try {
+            return LocalDate.parse(field.trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date '" + field + "', expected yyyy-MM-dd.");
+        }
+    }
+
+    public static int orderNumber(String field) {
+        try {
+            return Integer.parseInt(field.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid order number '" + field + "'.");
+        }
+    }
+
+    public static String customerName(String field) {
+        String customerName = field.trim();
+        if (!customerName.matches(NAME_PATTERN)) {
+            throw new IllegalArgumentException("Customer name may only contain letters, numbers, periods, "
+                    + "commas and spaces.");
+        }
+        return customerName;
+    }
+
+    public String state(String field) throws PersistenceException, IOException {
+        String state = field.trim();
+        if (!service.isValidState(state)) {
+            throw new IllegalArgumentException("We do not sell in state '" + state + "'.");
+        }
+        return state;
+    }
+
+    public String productType(String field) throws PersistenceException, IOException {
+        String productType = field.trim();
+        if (!service.isValidProduct(productType)) {
+            throw new IllegalArgumentException("Unknown product type '" + productType + "'.");
+        }
+        return productType;
+    }
+
+    public static BigDecimal area(String field) {
+        BigDecimal area;
+        try {
+            area = new BigDecimal(field.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid area '" + field + "'.");
+        }
+        if (area.compareTo(MINIMUM_AREA) < 0) {
+            throw new IllegalArgumentException("Area must be at least 100 sq ft.");
+        }
+        return area;
+    }
+}
@@ -0,0 +1,12 @@
+package com.sg.flooringmastery.service;
+
+import com.sg.flooringmastery.model.Orders;
+
+/**
+ * Works out the costs of an order. The order must already hold its area, tax rate and per square foot costs;
+ * the engine fills in the material cost, labour cost, tax and total, each rounded HALF_UP to 2 decimal places.
+ */
+public interface PricingEngine {
+
+    void price(Orders order);
+}
@@ -1,14 +1,26 @@
 package com.sg.flooringmastery.service;
 
+import com.sg.flooringmastery.model.AggregateDrift;
+import com.sg.flooringmastery.model.ExportSummary;
+import com.sg.flooringmastery.model.ImportReport;
+import com.sg.flooringmastery.model.OrderRef;
+import com.sg.flooringmastery.model.OrderTotals;
 import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.model.PreloadProgress;
 import com.sg.flooringmastery.model.Products;
+import com.sg.flooringmastery.model.Taxes;
 import com.sg.flooringmastery.service.exceptions.NoSuchOrderException;
 import com.sg.flooringmastery.service.exceptions.PersistenceException;
 
 import java.io.FileNotFoundException;
 import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collection;
 import java.util.List;
+import java.util.NavigableMap;
+import java.util.SortedMap;
 
 /**
  * This file is the interface where the controller can speak to the Business Logic of the application to recieve required data.
@@ -23,12 +35,47 @@ public interface ServiceLayer {
 
     void removeOrder(LocalDate orderDate, int orderNumber) throws PersistenceException, NoSuchOrderException;
 
+    List<Orders> getOrdersBetween(LocalDate from, LocalDate to) throws PersistenceException;
+
+    List<OrderRef> searchCustomers(String customerName, boolean prefix) throws PersistenceException;
+
+    void rebuildCustomerIndex() throws PersistenceException;
+
+    NavigableMap<LocalDate, OrderTotals> getDailyTotals(LocalDate from, LocalDate to) throws PersistenceException;
+
+    NavigableMap<YearMonth, OrderTotals> getMonthlyTotals(LocalDate from, LocalDate to) throws PersistenceException;
+
+    SortedMap<String, OrderTotals> getTotalsByState(LocalDate from, LocalDate to) throws PersistenceException;
+
+    SortedMap<String, OrderTotals> getTotalsByProduct(LocalDate from, LocalDate to) throws PersistenceException;
+
+    List<AggregateDrift> verifyTotals(boolean repair) throws PersistenceException;
+
     List<Products> getProducts() throws PersistenceException;
 
+    List<Taxes> getTaxes() throws PersistenceException;
+
     Orders calculateOrder(LocalDate orderDate, String customerName, String state, String productType, BigDecimal area)
             throws PersistenceException, FileNotFoundException;
 
+    Orders calculateOrder(LocalDate orderDate, int orderNumber, String customerName, String state, String productType,
+                          BigDecimal area) throws PersistenceException, FileNotFoundException;
+
     boolean isValidState(String input) throws FileNotFoundException, PersistenceException;
 
     boolean isValidProduct(String input) throws FileNotFoundException, PersistenceException;
+
+    ExportSummary exportData() throws PersistenceException;
+
+    ImportReport importOrders(Path csvFile) throws PersistenceException;
+
+    void addOrders(LocalDate orderDate, Collection<Orders> orders) throws PersistenceException;
+
+    void setDeferredWrites(boolean deferred);
+
+    void saveOrders() throws PersistenceException;
+
+    void startPreload() throws PersistenceException;
+
+    PreloadProgress getPreloadProgress();
 }
@@ -1,9 +1,20 @@
 package com.sg.flooringmastery.service;
 
+import com.sg.flooringmastery.dao.AggregateDao;
+import com.sg.flooringmastery.dao.CustomerIndexDao;
 import com.sg.flooringmastery.dao.OrderDao;
+import com.sg.flooringmastery.dao.OrderNumberAllocator;
 import com.sg.flooringmastery.dao.ProductDao;
 import com.sg.flooringmastery.dao.TaxDao;
+import com.sg.flooringmastery.metrics.MetricsRegistry;
+import com.sg.flooringmastery.metrics.Timer;
+import com.sg.flooringmastery.model.AggregateDrift;
+import com.sg.flooringmastery.model.ExportSummary;
+import com.sg.flooringmastery.model.ImportReport;
+import com.sg.flooringmastery.model.OrderRef;
+import com.sg.flooringmastery.model.OrderTotals;
 import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.model.PreloadProgress;
 import com.sg.flooringmastery.model.Products;
 import com.sg.flooringmastery.model.Taxes;
 import com.sg.flooringmastery.service.exceptions.NoSuchOrderException;
@@ -13,9 +24,14 @@ import org.springframework.stereotype.Service;
 
 import java.io.FileNotFoundException;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.Collection;
 import java.util.List;
+import java.util.NavigableMap;
+import java.util.SortedMap;
 
 /**
  * This file handles all connections to Dao and calculation on behalf of the controller.
@@ -25,17 +41,42 @@ import java.util.List;
 @Service
 public class ServiceLayerImpl implements ServiceLayer {
 
+    // Where exportData() writes its backup of every order.
+    private static final Path EXPORT_FILE = Paths.get("SampleFileData/Backup/DataExport.txt");
+
+    // Worker threads used by importOrders(). Set with -Dflooring.import.workers=...
+    private static final int IMPORT_WORKERS = Integer.getInteger("flooring.import.workers",
+            Runtime.getRuntime().availableProcessors());
+
     //the classes access to the Data Access Objects where all data will be recieved.
     private final OrderDao orderDao;
     private final ProductDao productDao;
     private final TaxDao taxDao;
+    private final OrderNumberAllocator orderNumbers;
+    private final PricingEngine pricingEngine;
+    private final CustomerIndexDao customerIndex;
+    private final AggregateDao aggregates;
+
+    // Time taken to price each order, including the tax and product lookups.
+    private Timer calculateTimer = new Timer();
 
     //object constructor.
     @Autowired
-    public ServiceLayerImpl(OrderDao orderDao, ProductDao productDao, TaxDao taxDao) {
+    public ServiceLayerImpl(OrderDao orderDao, ProductDao productDao, TaxDao taxDao,
+                            OrderNumberAllocator orderNumbers, PricingEngine pricingEngine,
+                            CustomerIndexDao customerIndex, AggregateDao aggregates) {
         this.orderDao = orderDao;
         this.productDao = productDao;
         this.taxDao = taxDao;
+        this.orderNumbers = orderNumbers;
+        this.pricingEngine = pricingEngine;
+        this.customerIndex = customerIndex;
+        this.aggregates = aggregates;
+    }
+
+    @Autowired(required = false)
+    public void setMetrics(MetricsRegistry metrics) {
+        calculateTimer = metrics.timer("service.calculateOrder");
     }
 
     // -------------------- ORDER MANAGEMENT --------------------
@@ -92,6 +133,120 @@ public class ServiceLayerImpl implements ServiceLayer {
         }
     }
 
+    // Adds orders that have already been priced to one date, saving that date once rather than once per order.
+    @Override
+    public void addOrders(LocalDate orderDate, Collection<Orders> orders) throws PersistenceException {
+        orderDao.addOrders(orderDate, orders);
+    }
+
+    /**
+     * Returns every order dated between from and to inclusive, in date then order number order.
+     */
+    @Override
+    public List<Orders> getOrdersBetween(LocalDate from, LocalDate to) throws PersistenceException {
+        return orderDao.getOrdersBetween(from, to);
+    }
+
+    /**
+     * Finds every order placed under a customer name, or under any name starting with it when prefix is true.
+     * Case and extra spaces are ignored. Results are in date then order number order.
+     */
+    @Override
+    public List<OrderRef> searchCustomers(String customerName, boolean prefix) throws PersistenceException {
+        return prefix ? customerIndex.findByNamePrefix(customerName) : customerIndex.findByName(customerName);
+    }
+
+    /**
+     * Saves any pending order changes, then rebuilds the customer name index from every order.
+     */
+    @Override
+    public void rebuildCustomerIndex() throws PersistenceException {
+        orderDao.writeFile();
+        customerIndex.rebuild();
+    }
+
+    // -------------------- TOTALS --------------------
+    // Served from running totals kept up to date on every change, so no order file is read.
+
+    @Override
+    public NavigableMap<LocalDate, OrderTotals> getDailyTotals(LocalDate from, LocalDate to)
+            throws PersistenceException {
+        return aggregates.getDailyTotals(from, to);
+    }
+
+    @Override
+    public NavigableMap<YearMonth, OrderTotals> getMonthlyTotals(LocalDate from, LocalDate to)
+            throws PersistenceException {
+        return aggregates.getMonthlyTotals(from, to);
+    }
+
+    @Override
+    public SortedMap<String, OrderTotals> getTotalsByState(LocalDate from, LocalDate to) throws PersistenceException {
+        return aggregates.getTotalsByState(from, to);
+    }
+
+    @Override
+    public SortedMap<String, OrderTotals> getTotalsByProduct(LocalDate from, LocalDate to)
+            throws PersistenceException {
+        return aggregates.getTotalsByProduct(from, to);
+    }
+
+    /**
+     * Saves any pending order changes, then recounts every order and reports where the running totals
+     * have drifted from it. With repair the recount replaces the stored totals.
+     */
+    @Override
+    public List<AggregateDrift> verifyTotals(boolean repair) throws PersistenceException {
+        orderDao.writeFile();
+        return aggregates.verify(repair);
+    }
+
+    /**
+     * Backs up every order from every date into a single DataExport file.
+     */
+    @Override
+    public ExportSummary exportData() throws PersistenceException {
+        return orderDao.exportAll(EXPORT_FILE);
+    }
+
+    /**
+     * Keeps order changes in memory instead of saving each one as it is made, until saveOrders() is called.
+     * Used by batch mode so a run of changes to the same date writes its file once.
+     */
+    @Override
+    public void setDeferredWrites(boolean deferred) {
+        orderDao.setDeferredWrites(deferred);
+    }
+
+    // Saves every order change not yet on disk.
+    @Override
+    public void saveOrders() throws PersistenceException {
+        orderDao.writeFile();
+    }
+
+    /**
+     * Starts loading every date's orders into memory in the background, so the first look at a date does not
+     * have to wait for its file. The menu can be used while it runs.
+     */
+    @Override
+    public void startPreload() throws PersistenceException {
+        orderDao.startPreload();
+    }
+
+    @Override
+    public PreloadProgress getPreloadProgress() {
+        return orderDao.getPreloadProgress();
+    }
+
+    /**
+     * Imports a CSV file of new orders in bulk, writing each affected date's file once.
+     * Bad rows are skipped and listed in the report, see OrderImporter for the file format.
+     */
+    @Override
+    public ImportReport importOrders(Path csvFile) throws PersistenceException {
+        return new OrderImporter(this, orderDao, orderNumbers, IMPORT_WORKERS).importFile(csvFile);
+    }
+
     // -------------------- HELPERS --------------------
 
     // Returns all Products from the 'Products.txt' file, into List Objects.
@@ -104,6 +259,16 @@ public class ServiceLayerImpl implements ServiceLayer {
         }
     }
 
+    // Returns every state sold in, with its tax rate, from the 'Taxes.txt' file.
+    @Override
+    public List<Taxes> getTaxes() throws PersistenceException {
+        try {
+            return taxDao.getAllTaxes();
+        } catch (FileNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     // Checks whether the given American State exists within the 'Taxes.txt' File.
     public boolean isValidState(String state) throws FileNotFoundException, PersistenceException {
         Taxes tax = taxDao.getTaxByState(state);
@@ -127,27 +292,29 @@ public class ServiceLayerImpl implements ServiceLayer {
 
     // -------------------- ORDER CALCULATION --------------------
 
-    //In future version this should become its own class.
+    // Prices a new order and gives it the next unique order number.
     @Override
     public Orders calculateOrder(LocalDate orderDate, String customerName, String state,
                                  String productType, BigDecimal area)
             throws PersistenceException, FileNotFoundException {
+        return calculateOrder(orderDate, orderNumbers.nextOrderNumber(), customerName, state, productType, area);
+    }
+
+    //In future version this should become its own class.
+    // Prices an order that already has a number, e.g. one being edited.
+    @Override
+    public Orders calculateOrder(LocalDate orderDate, int orderNumber, String customerName, String state,
+                                 String productType, BigDecimal area)
+            throws PersistenceException, FileNotFoundException {
+        long start = calculateTimer.start();
 
         //recieve data from Tax and Product, thee are needed for the following calculations.
         Taxes tax = taxDao.getTaxByState(state);
         Products product = productDao.getProductByType(productType);
 
-        // Perform calculations with rounding
-        BigDecimal materialCost = area.multiply(product.getCostPerSquareFoot()).setScale(2, RoundingMode.HALF_UP);
-        BigDecimal laborCost = area.multiply(product.getLabourCostPerSquareFoot()).setScale(2, RoundingMode.HALF_UP);
-        BigDecimal subtotal = materialCost.add(laborCost).setScale(2, RoundingMode.HALF_UP);
-        BigDecimal taxRateDecimal = tax.getTaxRate().divide(new BigDecimal("100"), 4, RoundingMode.HALF_UP);
-        BigDecimal taxTotal = subtotal.multiply(taxRateDecimal).setScale(2, RoundingMode.HALF_UP);
-        BigDecimal total = subtotal.add(taxTotal).setScale(2, RoundingMode.HALF_UP);
-
         //Now the program has all the data needed to make a full Order.
         Orders order = new Orders();
-        order.setOrderNumber(orderDao.generateNextOrderNumber(orderDate));
+        order.setOrderNumber(orderNumber);
         order.setCustomerName(customerName);
         order.setState(state);
         order.setTaxRate(tax.getTaxRate());
@@ -155,11 +322,11 @@ public class ServiceLayerImpl implements ServiceLayer {
         order.setArea(area);
         order.setCostPerSquareFoot(product.getCostPerSquareFoot());
         order.setLaborCostPerSquareFoot(product.getLabourCostPerSquareFoot());
-        order.setMaterialCost(materialCost);
-        order.setLaborCost(laborCost);
-        order.setTax(taxTotal);
-        order.setTotal(total);
 
+        // Material, labour, tax and total, rounded HALF_UP to 2 places.
+        pricingEngine.price(order);
+
+        calculateTimer.stop(start);
         return order;
     }
 }
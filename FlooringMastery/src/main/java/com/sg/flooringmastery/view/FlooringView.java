@@ -2,7 +2,10 @@ package com.sg.flooringmastery.view;
 
 import com.sg.flooringmastery.dao.ProductDao;
 import com.sg.flooringmastery.dao.TaxDao;
+import com.sg.flooringmastery.metrics.MetricsSnapshot;
+import com.sg.flooringmastery.model.ExportSummary;
 import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.model.PreloadProgress;
 import com.sg.flooringmastery.model.Products;
 import com.sg.flooringmastery.model.Taxes;
 import com.sg.flooringmastery.service.ServiceLayer;
@@ -40,9 +43,10 @@ public class FlooringView {
         io.print("* 4. Remove an Order ");
         io.print("* 5. Export all Data ");
         io.print("* 6. Quit ");
+        io.print("* 7. Display Metrics ");
         io.print("***************");
 
-        return io.readInt("Please select an option 1-6 ", 1, 6);
+        return io.readInt("Please select an option 1-7 ", 1, 7);
     }
 
     public LocalDate getOrderDate() {
@@ -142,6 +146,38 @@ public class FlooringView {
         io.print("==========================\n");
     }
 
+    public void displayExportSummary(ExportSummary summary) {
+        io.print("Exported " + summary.rows() + " orders from " + summary.dates() + " dates in "
+                + summary.elapsedMillis() + " ms (" + summary.rowsPerSecond() + " rows/s).");
+    }
+
+    public void displayPreloadProgress(PreloadProgress progress) {
+        if (progress.finished()) {
+            io.print("Loaded " + progress.orders() + " orders from " + progress.datesRead() + " dates in "
+                    + progress.elapsedMillis() + " ms."
+                    + (progress.datesFailed() > 0 ? " " + progress.datesFailed() + " dates could not be read." : ""));
+        } else {
+            io.print("Loading orders in the background: " + (progress.datesRead() + progress.datesFailed())
+                    + " of " + progress.dates() + " dates (" + progress.percentComplete() + "%).");
+        }
+    }
+
+    // Counters and gauges as plain numbers, timers as call counts and latencies in milliseconds.
+    public void displayMetrics(MetricsSnapshot snapshot) {
+        io.print("\n=== Metrics ===");
+        snapshot.counters().forEach((name, value) -> io.print(name + ": " + value));
+        snapshot.gauges().forEach((name, value) -> io.print(name + ": " + value));
+        snapshot.timers().forEach((name, timer) -> io.print(String.format(
+                "%s: %d calls | mean %.3f ms | p50 %.3f ms | p95 %.3f ms | p99 %.3f ms | max %.3f ms",
+                name, timer.count(), millis(timer.meanNanos()), millis(timer.p50Nanos()), millis(timer.p95Nanos()),
+                millis(timer.p99Nanos()), millis(timer.maxNanos()))));
+        io.print("===============\n");
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
     public void displayErrorMessage(String s) {
         io.print(s);
     }
@@ -378,4 +414,8 @@ public class FlooringView {
     public void displayRemoveOrderBanner() {
         io.print("\n=== Remove Order ===");
     }
+
+    public void displayExportBanner() {
+        io.print("\n=== Export All Data ===");
+    }
 }
@@ -0,0 +1,83 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.model.Orders;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+
+/**
+ * ColumnarDayOrders must hand back every decimal exactly as it was stored, scale included, through every way
+ * of building and reading a day.
+ */
+class ColumnarDayOrdersTest {
+
+    private static final String[] DECIMALS = {"200", "200.00", "200.5", "4.45", "0", "-1.5", "2E+3", "0.125",
+        "123456789012345678", "-99999999999999.99"};
+
+    @Test
+    void decimalsKeepTheirScale() {
+        List<Orders> orders = new ArrayList<>();
+        for (int i = 0; i < DECIMALS.length; i++) {
+            orders.add(order(i + 1, new BigDecimal(DECIMALS[i])));
+        }
+        DayOrders day = ColumnarDayOrders.of(orders.subList(0, 5));
+        assertInstanceOf(ColumnarDayOrders.class, day);
+        day = day.withAll(orders.subList(5, 8));
+        day = day.with(orders.get(8)).with(orders.get(9));
+        day = day.with(order(99, BigDecimal.ONE)).without(99);
+        assertInstanceOf(ColumnarDayOrders.class, day);
+
+        for (Orders stored : orders) {
+            assertSameDecimals(stored, day.get(stored.getOrderNumber()));
+        }
+        List<Orders> listed = day.list();
+        assertEquals(orders.size(), listed.size());
+        for (int i = 0; i < orders.size(); i++) {
+            assertSameDecimals(orders.get(i), listed.get(i));
+        }
+    }
+
+    // A value longer than a long's digits cannot be stored exactly, so the day is kept as objects instead.
+    @Test
+    void tooLongDecimalFallsBackToObjects() {
+        BigDecimal huge = new BigDecimal("1234567890123456789.5");
+        DayOrders day = ColumnarDayOrders.of(List.of(order(1, huge)));
+        assertInstanceOf(ObjectDayOrders.class, day);
+        assertSameDecimals(order(1, huge), day.get(1));
+    }
+
+    private static void assertSameDecimals(Orders expected, Orders actual) {
+        // BigDecimal.equals compares scale as well as value.
+        assertEquals(expected.getTaxRate(), actual.getTaxRate());
+        assertEquals(expected.getArea(), actual.getArea());
+        assertEquals(expected.getCostPerSquareFoot(), actual.getCostPerSquareFoot());
+        assertEquals(expected.getLaborCostPerSquareFoot(), actual.getLaborCostPerSquareFoot());
+        assertEquals(expected.getMaterialCost(), actual.getMaterialCost());
+        assertEquals(expected.getLaborCost(), actual.getLaborCost());
+        assertEquals(expected.getTax(), actual.getTax());
+        assertEquals(expected.getTotal(), actual.getTotal());
+    }
+
+    // An order whose every decimal field is the given value, so each column sees each scale.
+    private static Orders order(int orderNumber, BigDecimal value) {
+        Orders order = new Orders();
+        order.setOrderNumber(orderNumber);
+        order.setCustomerName("Customer " + orderNumber);
+        order.setState("TX");
+        order.setProductType("Wood");
+        order.setTaxRate(value);
+        order.setArea(value);
+        order.setCostPerSquareFoot(value);
+        order.setLaborCostPerSquareFoot(value);
+        order.setMaterialCost(value);
+        order.setLaborCost(value);
+        order.setTax(value);
+        order.setTotal(value);
+        return order;
+    }
+}
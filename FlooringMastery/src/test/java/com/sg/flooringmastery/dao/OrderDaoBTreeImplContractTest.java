@@ -0,0 +1,29 @@
+package com.sg.flooringmastery.dao;
+
+import org.junit.jupiter.api.AfterEach;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Each Dao opened is built from the folder into a store beside it the first time, and closed after the test.
+class OrderDaoBTreeImplContractTest extends OrderDaoContractTest {
+
+    private final List<OrderDaoBTreeImpl> opened = new ArrayList<>();
+
+    @Override
+    protected OrderDao open(Path orderFolder, OrderChangeListener listener) {
+        OrderDaoBTreeImpl dao = new OrderDaoBTreeImpl(orderFolder.resolveSibling("orders.btree"), orderFolder, 64);
+        dao.setChangeListeners(List.of(listener));
+        opened.add(dao);
+        return dao;
+    }
+
+    @AfterEach
+    void closeStores() throws IOException {
+        for (OrderDaoBTreeImpl dao : opened) {
+            dao.destroy();
+        }
+    }
+}
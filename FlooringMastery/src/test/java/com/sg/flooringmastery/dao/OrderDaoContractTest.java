@@ -0,0 +1,230 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.model.DailyOrders;
+import com.sg.flooringmastery.model.ExportSummary;
+import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * What every OrderDao must do, whatever it stores orders in. Each implementation has a subclass that says how
+ * to open it over a folder of order files, which holds one order on SEEDED_DATE when the Dao is first opened.
+ */
+abstract class OrderDaoContractTest {
+
+    static final LocalDate SEEDED_DATE = LocalDate.of(2013, 6, 1);
+    private static final LocalDate DATE = LocalDate.of(2013, 6, 2);
+    private static final LocalDate LATER_DATE = LocalDate.of(2013, 6, 5);
+
+    @TempDir
+    Path folder;
+
+    private final List<String> changes = new CopyOnWriteArrayList<>();
+    private OrderDao dao;
+
+    /**
+     * Opens the Dao under test over orderFolder, reporting its changes to listener. Called again by
+     * changesSurviveReopening() to open the same store a second time, as a restart would.
+     */
+    protected abstract OrderDao open(Path orderFolder, OrderChangeListener listener) throws Exception;
+
+    @BeforeEach
+    void openDao() throws Throwable {
+        Path orderFolder = folder.resolve("Orders");
+        Files.createDirectories(orderFolder);
+        OrderFileFormat.CSV.write(orderFolder.resolve("Orders_06012013.txt"), List.of(order(1, "Seed")));
+        dao = open(orderFolder, (date, removed, added) -> changes.add(date + " -" + removed.size()
+                + " +" + added.size()));
+    }
+
+    @Test
+    void readsOrdersAlreadyInTheFolder() throws PersistenceException {
+        assertEquals(List.of(line(order(1, "Seed"))), lines(dao.getOrdersByDate(SEEDED_DATE)));
+    }
+
+    @Test
+    void dateWithoutOrdersIsEmpty() throws PersistenceException {
+        assertTrue(dao.getOrdersByDate(LocalDate.of(2020, 1, 1)).isEmpty());
+    }
+
+    @Test
+    void listsADatesOrdersByNumber() throws PersistenceException {
+        dao.addOrder(DATE, order(5, "B"));
+        dao.addOrders(DATE, List.of(order(3, "A"), order(7, "C")));
+
+        assertEquals(List.of(line(order(3, "A")), line(order(5, "B")), line(order(7, "C"))),
+                lines(dao.getOrdersByDate(DATE)));
+        assertEquals(List.of(DATE + " -0 +1", DATE + " -0 +2"), changes);
+    }
+
+    @Test
+    void addingAnExistingNumberReplacesTheOrder() throws PersistenceException {
+        dao.addOrders(DATE, List.of(order(3, "A"), order(5, "B")));
+        dao.addOrders(DATE, List.of(order(5, "B2"), order(9, "D")));
+
+        assertEquals(List.of(line(order(3, "A")), line(order(5, "B2")), line(order(9, "D"))),
+                lines(dao.getOrdersByDate(DATE)));
+        assertEquals(DATE + " -1 +2", changes.get(changes.size() - 1));
+    }
+
+    @Test
+    void editReplacesTheOrder() throws PersistenceException {
+        dao.addOrder(DATE, order(3, "A"));
+        Orders edited = order(3, "A edited");
+        edited.setArea(new BigDecimal("250.50"));
+        dao.editOrder(DATE, 3, edited);
+
+        assertEquals(List.of(line(edited)), lines(dao.getOrdersByDate(DATE)));
+        assertEquals(DATE + " -1 +1", changes.get(changes.size() - 1));
+    }
+
+    @Test
+    void editingAMissingOrderThrows() throws PersistenceException {
+        dao.addOrder(DATE, order(3, "A"));
+
+        assertThrows(PersistenceException.class, () -> dao.editOrder(DATE, 99, order(99, "Nobody")));
+        assertEquals(List.of(line(order(3, "A"))), lines(dao.getOrdersByDate(DATE)));
+    }
+
+    @Test
+    void removeDeletesOnlyThatOrder() throws PersistenceException {
+        dao.addOrders(DATE, List.of(order(3, "A"), order(5, "B")));
+        dao.removeOrder(DATE, 3);
+
+        assertEquals(List.of(line(order(5, "B"))), lines(dao.getOrdersByDate(DATE)));
+        assertEquals(DATE + " -1 +0", changes.get(changes.size() - 1));
+    }
+
+    @Test
+    void removingAMissingOrderChangesNothing() throws PersistenceException {
+        dao.addOrder(DATE, order(3, "A"));
+        int reported = changes.size();
+        dao.removeOrder(DATE, 99);
+
+        assertEquals(List.of(line(order(3, "A"))), lines(dao.getOrdersByDate(DATE)));
+        assertEquals(reported, changes.size());
+    }
+
+    @Test
+    void readsARangeOfDatesInOrder() throws PersistenceException {
+        dao.addOrders(DATE, List.of(order(5, "B"), order(3, "A")));
+        dao.addOrder(LATER_DATE, order(11, "E"));
+
+        assertEquals(List.of(line(order(1, "Seed")), line(order(3, "A")), line(order(5, "B")),
+                line(order(11, "E"))), lines(dao.getOrdersBetween(SEEDED_DATE, LATER_DATE)));
+        assertEquals(List.of(line(order(3, "A")), line(order(5, "B"))),
+                lines(dao.getOrdersBetween(DATE, LATER_DATE.minusDays(1))));
+        assertTrue(dao.getOrdersBetween(DATE, SEEDED_DATE).isEmpty());
+    }
+
+    @Test
+    void streamsOnlyDatesWithOrders() throws PersistenceException {
+        dao.addOrder(DATE, order(3, "A"));
+        dao.addOrder(LATER_DATE, order(11, "E"));
+
+        try (Stream<DailyOrders> days = dao.streamOrdersBetween(SEEDED_DATE, LocalDate.of(2013, 12, 31))) {
+            List<DailyOrders> found = days.toList();
+            assertEquals(List.of(SEEDED_DATE, DATE, LATER_DATE), found.stream().map(DailyOrders::date).toList());
+            assertEquals(List.of(line(order(11, "E"))), lines(found.get(2).orders()));
+        }
+    }
+
+    @Test
+    void streamsEveryOrderHeld() throws PersistenceException {
+        LocalDate early = LocalDate.of(1901, 1, 1);
+        LocalDate late = LocalDate.of(2199, 12, 31);
+        dao.addOrder(early, order(3, "A"));
+        dao.addOrder(late, order(11, "E"));
+        dao.removeOrder(SEEDED_DATE, 1);
+
+        try (Stream<DailyOrders> days = dao.streamAllOrders()) {
+            List<DailyOrders> found = days.toList();
+            assertEquals(List.of(early, late), found.stream().map(DailyOrders::date).toList());
+            assertEquals(List.of(line(order(11, "E"))), lines(found.get(1).orders()));
+        }
+    }
+
+    @Test
+    void exportCountsEveryDateAndOrder() throws PersistenceException {
+        dao.addOrders(DATE, List.of(order(3, "A"), order(5, "B")));
+        dao.addOrder(LATER_DATE, order(11, "E"));
+        dao.writeFile();
+
+        ExportSummary summary = dao.exportAll(folder.resolve("export.txt"));
+        assertEquals(3, summary.dates());
+        assertEquals(4, summary.rows());
+        assertTrue(Files.exists(folder.resolve("export.txt")));
+    }
+
+    @Test
+    void changesSurviveReopening() throws Throwable {
+        dao.addOrders(DATE, List.of(order(3, "A"), order(5, "B")));
+        dao.editOrder(DATE, 5, order(5, "B edited"));
+        dao.removeOrder(SEEDED_DATE, 1);
+        dao.writeFile();
+
+        OrderDao reopened = open(folder.resolve("Orders"), (date, removed, added) -> { });
+        assertTrue(reopened.getOrdersByDate(SEEDED_DATE).isEmpty());
+        assertEquals(List.of(line(order(3, "A")), line(order(5, "B edited"))),
+                lines(reopened.getOrdersByDate(DATE)));
+    }
+
+    @Test
+    void concurrentAddsToOneDateAreAllKept() throws Throwable {
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                int first = 1_000 * (thread + 1);
+                done.add(threads.submit(() -> {
+                    try {
+                        for (int i = 0; i < 50; i++) {
+                            dao.addOrder(LATER_DATE, order(first + i, "T" + first));
+                        }
+                    } catch (PersistenceException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            threads.shutdown();
+        }
+        assertEquals(400, dao.getOrdersByDate(LATER_DATE).size());
+        assertEquals(400, changes.size());
+    }
+
+    static Orders order(int orderNumber, String customerName) {
+        return OrderDaoFileImpl.unmarshallOrder(orderNumber + "," + customerName
+                + ",TX,4.45,Wood,100.00,5.15,4.75,515.00,475.00,44.06,1034.06");
+    }
+
+    // Orders have no equals, so they are compared as the lines the order files hold.
+    private static String line(Orders order) {
+        return OrderDaoFileImpl.marshallOrder(order);
+    }
+
+    private static List<String> lines(List<Orders> orders) {
+        return orders.stream().map(OrderDaoContractTest::line).toList();
+    }
+}
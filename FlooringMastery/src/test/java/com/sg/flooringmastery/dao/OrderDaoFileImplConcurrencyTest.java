@@ -0,0 +1,135 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.model.Orders;
+import com.sg.flooringmastery.service.exceptions.PersistenceException;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Stress test for the per-date lock striping in OrderDaoFileImpl. Several threads add, edit, remove and read
+ * orders at the same time, all on one shared date and each on a date of its own, and the order files left on
+ * disk must hold exactly the orders the threads meant to leave there.
+ */
+class OrderDaoFileImplConcurrencyTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS = 150;
+    private static final LocalDate SHARED_DATE = LocalDate.of(2030, 1, 1);
+
+    @TempDir
+    Path orderFolder;
+
+    // Each thread only touches its own order numbers, so what it expects does not depend on the others.
+    private final Map<LocalDate, Map<Integer, String>> expected = new ConcurrentHashMap<>();
+    private final Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+
+    @ParameterizedTest(name = "deferred writes {0}")
+    @ValueSource(booleans = {false, true})
+    void concurrentChangesLeaveExactlyTheExpectedFiles(boolean deferred) throws Throwable {
+        OrderDaoFileImpl dao = new OrderDaoFileImpl(orderFolder, ResidencyPolicy.UNLIMITED);
+        dao.setDeferredWrites(deferred);
+
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int thread = 0; thread < THREADS; thread++) {
+            int id = thread;
+            threads.execute(() -> {
+                try {
+                    start.await();
+                    work(dao, id);
+                } catch (Throwable e) {
+                    failures.add(e);
+                }
+            });
+        }
+        start.countDown();
+        threads.shutdown();
+        assertTrue(threads.awaitTermination(2, TimeUnit.MINUTES), "workers did not finish");
+        if (!failures.isEmpty()) {
+            throw failures.peek();
+        }
+        dao.writeFile();
+
+        OrderDaoFileImpl reread = new OrderDaoFileImpl(orderFolder, ResidencyPolicy.UNLIMITED);
+        assertEquals(THREADS + 1, expected.size());
+        for (Map.Entry<LocalDate, Map<Integer, String>> date : expected.entrySet()) {
+            assertEquals(new TreeMap<>(date.getValue()), names(dao.getOrdersByDate(date.getKey())),
+                    "in memory orders for " + date.getKey());
+            assertEquals(new TreeMap<>(date.getValue()), names(reread.getOrdersByDate(date.getKey())),
+                    "saved orders for " + date.getKey());
+        }
+    }
+
+    // Adds an order to the shared date and one to the thread's own date each round, edits every third and
+    // removes every fifth, reading the shared date in between.
+    private void work(OrderDaoFileImpl dao, int thread) throws PersistenceException {
+        LocalDate ownDate = SHARED_DATE.plusDays(1 + thread);
+        List<Integer> mine = new ArrayList<>();
+        for (int i = 0; i < OPERATIONS; i++) {
+            int number = thread * 100_000 + i;
+            for (LocalDate date : List.of(SHARED_DATE, ownDate)) {
+                int orderNumber = date.equals(SHARED_DATE) ? number : number + 50_000;
+                String name = "T" + thread + "-" + i;
+                dao.addOrder(date, order(orderNumber, name));
+                expect(date).put(orderNumber, name);
+
+                if (i % 3 == 2) {
+                    dao.editOrder(date, orderNumber, order(orderNumber, name + "-edited"));
+                    expect(date).put(orderNumber, name + "-edited");
+                }
+                if (i % 5 == 4) {
+                    dao.removeOrder(date, orderNumber);
+                    expect(date).remove(orderNumber);
+                }
+            }
+            mine.add(number);
+
+            List<Orders> shared = dao.getOrdersByDate(SHARED_DATE);
+            Set<Integer> seen = new HashSet<>();
+            for (Orders order : shared) {
+                assertTrue(seen.add(order.getOrderNumber()), "order listed twice: " + order.getOrderNumber());
+            }
+            // This thread's own changes are always visible to it.
+            for (int own : mine) {
+                assertEquals(expect(SHARED_DATE).containsKey(own), seen.contains(own), "order " + own);
+            }
+        }
+    }
+
+    private Map<Integer, String> expect(LocalDate date) {
+        return expected.computeIfAbsent(date, d -> new ConcurrentHashMap<>());
+    }
+
+    private static Map<Integer, String> names(List<Orders> orders) {
+        Map<Integer, String> names = new TreeMap<>();
+        for (Orders order : orders) {
+            names.put(order.getOrderNumber(), order.getCustomerName());
+        }
+        return names;
+    }
+
+    private static Orders order(int orderNumber, String customerName) {
+        return OrderDaoFileImpl.unmarshallOrder(orderNumber + "," + customerName
+                + ",TX,4.45,Wood,100.00,5.15,4.75,515.00,475.00,44.06,1034.06");
+    }
+}
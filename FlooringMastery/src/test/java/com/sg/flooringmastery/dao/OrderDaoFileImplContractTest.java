@@ -0,0 +1,14 @@
+package com.sg.flooringmastery.dao;
+
+import java.nio.file.Path;
+import java.util.List;
+
+class OrderDaoFileImplContractTest extends OrderDaoContractTest {
+
+    @Override
+    protected OrderDao open(Path orderFolder, OrderChangeListener listener) {
+        OrderDaoFileImpl dao = new OrderDaoFileImpl(orderFolder, ResidencyPolicy.UNLIMITED);
+        dao.setChangeListeners(List.of(listener));
+        return dao;
+    }
+}
@@ -0,0 +1,57 @@
+package com.sg.flooringmastery.dao;
+
+import com.sg.flooringmastery.model.Orders;
+import org.h2.jdbcx.JdbcConnectionPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Runs against an in-memory H2 database, kept until the test shuts it down so reopening finds the same table.
+class OrderDaoJdbcImplContractTest extends OrderDaoContractTest {
+
+    private final JdbcConnectionPool pool = JdbcConnectionPool.create(
+            "jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1", "sa", "");
+
+    @Override
+    protected OrderDao open(Path orderFolder, OrderChangeListener listener) {
+        OrderDaoJdbcImpl dao = new OrderDaoJdbcImpl(pool, orderFolder);
+        dao.setChangeListeners(List.of(listener));
+        return dao;
+    }
+
+    // The columns hold two decimal places, so amounts are rounded half up as the order files round them.
+    @Test
+    void amountsAreRoundedHalfUpToTwoPlaces() throws Throwable {
+        LocalDate date = LocalDate.of(2013, 6, 2);
+        Orders order = order(3, "A");
+        order.setArea(new BigDecimal("100.125"));
+        order.setTaxRate(new BigDecimal("4.4449"));
+        order.setTotal(new BigDecimal("-0.005"));
+        OrderDao dao = open(folder.resolve("Orders"), (changed, removed, added) -> { });
+        dao.addOrder(date, order);
+
+        Orders read = dao.getOrdersByDate(date).get(0);
+        assertEquals(new BigDecimal("100.13"), read.getArea());
+        assertEquals(new BigDecimal("4.44"), read.getTaxRate());
+        assertEquals(new BigDecimal("-0.01"), read.getTotal());
+        assertEquals(OrderDaoFileImpl.marshallOrder(order), OrderDaoFileImpl.marshallOrder(read));
+    }
+
+    @AfterEach
+    void dropDatabase() throws SQLException {
+        try (Connection connection = pool.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+        pool.dispose();
+    }
+}
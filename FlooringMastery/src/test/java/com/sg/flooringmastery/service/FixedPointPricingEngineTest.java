@@ -0,0 +1,129 @@
+package com.sg.flooringmastery.service;
+
+import com.sg.flooringmastery.model.Orders;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * FixedPointPricingEngine must give exactly the results of BigDecimalPricingEngine, value and scale, for any
+ * order. Inputs are generated from a fixed seed, so a failure names the case and repeats on every run.
+ */
+class FixedPointPricingEngineTest {
+
+    private static final long SEED = 20261017L;
+
+    private final BigDecimalPricingEngine reference = new BigDecimalPricingEngine();
+    private final FixedPointPricingEngine engine = new FixedPointPricingEngine(reference);
+
+    @Test
+    void randomOrdersPriceExactlyAsBigDecimal() {
+        Random random = new Random(SEED);
+        for (int i = 0; i < 200_000; i++) {
+            assertSamePrice(decimal(random, 9, 4), decimal(random, 6, 4), decimal(random, 6, 4),
+                    decimal(random, 5, 3));
+        }
+    }
+
+    // Up to 18 digits, so some orders overflow a long part way and go through the fallback.
+    @Test
+    void hugeOrdersPriceExactlyAsBigDecimal() {
+        Random random = new Random(SEED + 1);
+        for (int i = 0; i < 50_000; i++) {
+            assertSamePrice(decimal(random, 18, 6), decimal(random, 18, 6), decimal(random, 18, 6),
+                    decimal(random, 18, 6));
+        }
+    }
+
+    // Material, labour and tax that land exactly half way between two cents, where HALF_UP rounds away from zero.
+    @Test
+    void halfCentTiesRoundAsBigDecimal() {
+        int ties = 0;
+        for (int area = -2_000; area <= 2_000; area += 5) {
+            for (int cost = 1; cost <= 99; cost += 2) {
+                BigDecimal areaValue = BigDecimal.valueOf(area, 3);
+                BigDecimal costValue = BigDecimal.valueOf(cost, 2);
+                if (areaValue.multiply(costValue).movePointRight(2).stripTrailingZeros().scale() == 1) {
+                    ties++;
+                }
+                assertSamePrice(areaValue, costValue, costValue, new BigDecimal("4.45"));
+                assertSamePrice(areaValue, costValue, BigDecimal.ZERO, BigDecimal.valueOf(cost, 1));
+            }
+        }
+        assertTrue(ties > 1_000, "only " + ties + " half cent ties were generated");
+
+        // Tax rates whose fraction of a subtotal is exactly half a cent.
+        assertSamePrice(new BigDecimal("1"), new BigDecimal("0.10"), BigDecimal.ZERO, new BigDecimal("5"));
+        assertSamePrice(new BigDecimal("1"), new BigDecimal("0.30"), BigDecimal.ZERO, new BigDecimal("5"));
+        assertSamePrice(new BigDecimal("-1"), new BigDecimal("0.10"), BigDecimal.ZERO, new BigDecimal("5"));
+        assertSamePrice(new BigDecimal("1"), new BigDecimal("0.01"), BigDecimal.ZERO, new BigDecimal("0.005"));
+    }
+
+    // The largest area the long arithmetic takes, found by bisection, and one unit more, which must fall back.
+    @Test
+    void largestOrdersBeforeOverflowPriceAsBigDecimal() {
+        long[] out = new long[4];
+        long[][] catalogue = {{515, 475, 445}, {99_999_999, 99_999_999, 9_999}, {1, 1, 10_000}};
+        for (long[] prices : catalogue) {
+            long fits = 1;
+            long overflows = Long.MAX_VALUE;
+            while (overflows - fits > 1) {
+                long area = fits + (overflows - fits) / 2;
+                if (FixedPointPricingEngine.priceScaled(area, 2, prices[0], 2, prices[1], 2, prices[2], 2, out)) {
+                    fits = area;
+                } else {
+                    overflows = area;
+                }
+            }
+            assertTrue(overflows < Long.MAX_VALUE, "no overflow for " + prices[0]);
+            assertTrue(FixedPointPricingEngine.priceScaled(fits, 2, prices[0], 2, prices[1], 2, prices[2], 2, out));
+            assertFalse(FixedPointPricingEngine.priceScaled(overflows, 2, prices[0], 2, prices[1], 2, prices[2], 2,
+                    out));
+            for (long area : new long[]{fits - 1, fits, overflows, overflows + 1}) {
+                assertSamePrice(BigDecimal.valueOf(area, 2), BigDecimal.valueOf(prices[0], 2),
+                        BigDecimal.valueOf(prices[1], 2), BigDecimal.valueOf(prices[2], 2));
+            }
+        }
+    }
+
+    private void assertSamePrice(BigDecimal area, BigDecimal cost, BigDecimal labour, BigDecimal taxRate) {
+        Orders expected = order(area, cost, labour, taxRate);
+        Orders actual = order(area, cost, labour, taxRate);
+        reference.price(expected);
+        engine.price(actual);
+
+        String inputs = "area " + area + ", cost " + cost + ", labour " + labour + ", tax rate " + taxRate;
+        assertEquals(expected.getMaterialCost(), actual.getMaterialCost(), "material cost for " + inputs);
+        assertEquals(expected.getLaborCost(), actual.getLaborCost(), "labour cost for " + inputs);
+        assertEquals(expected.getTax(), actual.getTax(), "tax for " + inputs);
+        assertEquals(expected.getTotal(), actual.getTotal(), "total for " + inputs);
+    }
+
+    // A decimal of up to maxDigits digits and up to maxScale places, a tenth of them negative.
+    private static BigDecimal decimal(Random random, int maxDigits, int maxScale) {
+        int digits = 1 + random.nextInt(maxDigits);
+        long bound = 1;
+        for (int i = 0; i < digits; i++) {
+            bound *= 10;
+        }
+        long unscaled = random.nextLong(bound);
+        if (random.nextInt(10) == 0) {
+            unscaled = -unscaled;
+        }
+        return BigDecimal.valueOf(unscaled, random.nextInt(maxScale + 1));
+    }
+
+    private static Orders order(BigDecimal area, BigDecimal cost, BigDecimal labour, BigDecimal taxRate) {
+        Orders order = new Orders();
+        order.setArea(area);
+        order.setCostPerSquareFoot(cost);
+        order.setLaborCostPerSquareFoot(labour);
+        order.setTaxRate(taxRate);
+        return order;
+    }
+}